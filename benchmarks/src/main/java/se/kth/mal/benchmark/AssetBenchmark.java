@@ -0,0 +1,94 @@
+package se.kth.mal.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import core.Asset;
+import core.ConstraintChecker;
+import core.Model;
+
+/**
+ * The model traversals tests and constraint checks lean on. Closures and
+ * collections start from a fixed, seeded sample of assets that the
+ * benchmark cycles through.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class AssetBenchmark {
+
+   // From a machine to the software run by its root accounts, as checked by
+   // ConstraintChecker.
+   private static final List<String> NAVIGATION_PATH = Arrays.asList("rootAccount", "assignedSoftwares");
+
+   @Param({"1000", "10000", "100000", "1000000"})
+   public int                        assets;
+
+   private Model                     model;
+   private Asset[]                   sample;
+   private Asset[]                   machines;
+   private int                       next;
+
+   @Setup
+   public void setUp() throws ClassNotFoundException {
+      SyntheticModels.silence();
+      model = SyntheticModels.build(assets, 42);
+      Random random = new Random(42);
+      sample = new Asset[64];
+      for (int i = 0; i < sample.length; i++) {
+         sample[i] = model.assets.get(random.nextInt(model.assets.size()));
+      }
+      Class<?> machine = Class.forName(SyntheticModels.LANGUAGE_PACKAGE + ".Machine");
+      List<Asset> allMachines = new ArrayList<>();
+      for (Asset asset : model.assets) {
+         if (machine.isInstance(asset)) {
+            allMachines.add(asset);
+         }
+      }
+      machines = new Asset[Math.min(64, allMachines.size())];
+      for (int i = 0; i < machines.length; i++) {
+         machines[i] = allMachines.get(random.nextInt(allMachines.size()));
+      }
+   }
+
+   @Benchmark
+   public int getClosure() {
+      return sample[next++ & 63].getClosure().size();
+   }
+
+   @Benchmark
+   public int getCollection() {
+      return machines[next++ % machines.length].getCollection(NAVIGATION_PATH).size();
+   }
+
+   // Constraint messages are not enforced, but the Account cycle rule always
+   // is, so a violation of it fails the check once all assets are checked.
+   @Benchmark
+   public Object constraintChecker() {
+      try {
+         return new ConstraintChecker(model, false);
+      }
+      catch (AssertionError e) {
+         return e;
+      }
+   }
+
+}
@@ -0,0 +1,67 @@
+package se.kth.mal.benchmark;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import core.AttackStep;
+import core.Attacker;
+import core.Frontier;
+import core.Model;
+
+/**
+ * A full attack of a synthetic model from a single attack point, with either
+ * engine. Resetting the ttcs of the previous attack is part of the measured
+ * work.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class AttackBenchmark {
+
+   @Param({"1000", "10000", "100000", "1000000"})
+   public int             assets;
+
+   @Param({"OBJECTS", "COMPILED"})
+   public Attacker.Engine engine;
+
+   @Param({"BINARY_HEAP"})
+   public Frontier.Type   frontier;
+
+   private Model          model;
+   private Properties     profile;
+   private AttackStep     attackPoint;
+
+   @Setup
+   public void setUp() {
+      SyntheticModels.silence();
+      model = SyntheticModels.build(assets, 42);
+      profile = SyntheticModels.profile();
+      attackPoint = model.attackSteps.get(0);
+   }
+
+   @Benchmark
+   public int attack() {
+      Attacker attacker = new Attacker(model, false, frontier);
+      attacker.setEngine(engine);
+      attacker.reset();
+      attacker.addAttackPoint(attackPoint);
+      attacker.attack(profile);
+      return attacker.statistics().getSettled();
+   }
+
+}
@@ -0,0 +1,28 @@
+package se.kth.mal.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler, which adds the allocation rate
+ * next to the throughput, and writes the results to jmh-result.json for
+ * comparison with a baseline run. Takes the usual JMH arguments, e.g.
+ * "AttackBenchmark -p assets=1000,10000" to run a subset.
+ */
+public class Benchmarks {
+
+   public static void main(String[] args) throws Exception {
+      Options options = new OptionsBuilder()
+            .parent(new CommandLineOptions(args))
+            .addProfiler(GCProfiler.class)
+            .resultFormat(ResultFormatType.JSON)
+            .result("jmh-result.json")
+            .build();
+      new Runner(options).run();
+   }
+
+}
@@ -0,0 +1,54 @@
+package se.kth.mal.benchmark;
+
+import java.io.PrintStream;
+import java.util.Properties;
+
+import core.Attacker;
+import core.Model;
+
+/**
+ * Reports the heap that synthetic models take, per attack step, once built
+ * and once attacked with the object engine, which leaves its state on the
+ * steps. Run before and after a change to the step layout to compare:
+ * <p>
+ * java -Xmx8g -cp target/benchmarks.jar se.kth.mal.benchmark.Footprint [assets]...
+ */
+public class Footprint {
+
+   public static void main(String[] args) {
+      PrintStream out = System.out;
+      SyntheticModels.silence();
+      Properties profile = SyntheticModels.profile();
+      out.printf("%10s %12s %12s %14s %12s %14s%n", "assets", "steps", "built MB", "built B/step", "attacked MB", "attacked B/step");
+      for (String size : args.length == 0 ? new String[] { "10000", "100000" } : args) {
+         long before = usedHeap();
+         Model model = SyntheticModels.build(Integer.parseInt(size), 42);
+         long built = usedHeap() - before;
+         Attacker attacker = new Attacker(model);
+         attacker.setEngine(Attacker.Engine.OBJECTS);
+         attacker.addAttackPoint(model.attackSteps.get(0));
+         attacker.attack(profile);
+         attacker = null;
+         long attacked = usedHeap() - before;
+         int steps = model.attackSteps.size();
+         out.printf("%10s %12d %12.1f %14.1f %12.1f %14.1f%n", size, steps, built / 1e6, (double) built / steps, attacked / 1e6, (double) attacked / steps);
+         model = null;
+      }
+   }
+
+   private static long usedHeap() {
+      Runtime runtime = Runtime.getRuntime();
+      long used = Long.MAX_VALUE;
+      // Collect until the heap stops shrinking.
+      for (int i = 0; i < 10; i++) {
+         System.gc();
+         long now = runtime.totalMemory() - runtime.freeMemory();
+         if (now >= used) {
+            break;
+         }
+         used = now;
+      }
+      return used;
+   }
+
+}
@@ -0,0 +1,179 @@
+package se.kth.mal.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.jar.JarEntry;
+
+import core.Asset;
+import core.Model;
+
+/**
+ * Seeded random instances of the benchmarked language, found in the package
+ * the language was generated into. Assets are spread evenly over the
+ * concrete asset types, and every asset fills each of its roles with a
+ * random asset of the right type with probability one half.
+ */
+public class SyntheticModels {
+
+   public static final String LANGUAGE_PACKAGE = "auto";
+
+   public static Model build(int assets, long seed) {
+      Random random = new Random(seed);
+      List<Class<? extends Asset>> types = assetTypes();
+      Model model = new Model();
+      List<Asset> instances = model.call(() -> {
+         List<Asset> created = new ArrayList<>(assets);
+         for (int i = 0; i < assets; i++) {
+            Class<? extends Asset> type = types.get(i % types.size());
+            try {
+               created.add(type.getConstructor(String.class).newInstance(type.getSimpleName() + i));
+            }
+            catch (ReflectiveOperationException e) {
+               throw new IllegalStateException("Could not instantiate " + type.getName(), e);
+            }
+         }
+         return created;
+      });
+
+      Map<Class<?>, List<Asset>> candidates = new HashMap<>();
+      Map<Class<?>, List<Method>> roles = new HashMap<>();
+      for (Asset asset : instances) {
+         for (Method addRole : roles.computeIfAbsent(asset.getClass(), SyntheticModels::roleAdders)) {
+            if (random.nextBoolean()) {
+               continue;
+            }
+            List<Asset> targets = candidates.computeIfAbsent(addRole.getParameterTypes()[0], type -> ofType(instances, type));
+            if (!targets.isEmpty()) {
+               try {
+                  addRole.invoke(asset, targets.get(random.nextInt(targets.size())));
+               }
+               catch (ReflectiveOperationException e) {
+                  throw new IllegalStateException("Could not call " + addRole, e);
+               }
+            }
+         }
+      }
+      return model;
+   }
+
+   public static Properties profile() {
+      Properties profile = new Properties();
+      try (InputStream in = SyntheticModels.class.getResourceAsStream("/attackerProfile.ttc")) {
+         profile.load(in);
+      }
+      catch (IOException | NullPointerException e) {
+         throw new IllegalStateException("No attackerProfile.ttc on the classpath", e);
+      }
+      return profile;
+   }
+
+   // Keeps warnings and constraint messages out of the measurements.
+   public static void silence() {
+      PrintStream nowhere = new PrintStream(new OutputStream() {
+         @Override
+         public void write(int b) {
+         }
+
+         @Override
+         public void write(byte[] b, int off, int len) {
+         }
+      });
+      System.setOut(nowhere);
+      System.setErr(nowhere);
+   }
+
+   private static List<Asset> ofType(List<Asset> assets, Class<?> type) {
+      List<Asset> ofType = new ArrayList<>();
+      for (Asset asset : assets) {
+         if (type.isInstance(asset)) {
+            ofType.add(asset);
+         }
+      }
+      return ofType;
+   }
+
+   // The add<Role> methods of type, in a fixed order.
+   private static List<Method> roleAdders(Class<?> type) {
+      List<Method> adders = new ArrayList<>();
+      for (Method method : type.getMethods()) {
+         if (method.getName().startsWith("add") && method.getParameterCount() == 1 && Asset.class.isAssignableFrom(method.getParameterTypes()[0])) {
+            adders.add(method);
+         }
+      }
+      adders.sort(Comparator.comparing(Method::toString));
+      return adders;
+   }
+
+   private static List<Class<? extends Asset>> assetTypes() {
+      List<Class<? extends Asset>> types = new ArrayList<>();
+      for (String className : classNames()) {
+         try {
+            Class<?> type = Class.forName(LANGUAGE_PACKAGE + "." + className);
+            if (Asset.class.isAssignableFrom(type) && !Modifier.isAbstract(type.getModifiers())) {
+               types.add(type.asSubclass(Asset.class));
+            }
+         }
+         catch (ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+         }
+      }
+      if (types.isEmpty()) {
+         throw new IllegalStateException("No asset types in package " + LANGUAGE_PACKAGE);
+      }
+      types.sort(Comparator.comparing(Class::getName));
+      return types;
+   }
+
+   // The top level classes of the language package, from a directory or from
+   // the benchmark jar.
+   private static List<String> classNames() {
+      String path = LANGUAGE_PACKAGE.replace('.', '/');
+      URL url = SyntheticModels.class.getClassLoader().getResource(path);
+      if (url == null) {
+         throw new IllegalStateException("Package " + LANGUAGE_PACKAGE + " is not on the classpath");
+      }
+      List<String> names = new ArrayList<>();
+      try {
+         if (url.getProtocol().equals("jar")) {
+            Enumeration<JarEntry> entries = ((JarURLConnection) url.openConnection()).getJarFile().entries();
+            while (entries.hasMoreElements()) {
+               String name = entries.nextElement().getName();
+               if (name.startsWith(path + "/") && name.endsWith(".class") && name.indexOf('/', path.length() + 1) < 0) {
+                  names.add(name.substring(path.length() + 1));
+               }
+            }
+         }
+         else {
+            names.addAll(Arrays.asList(new File(url.toURI()).list()));
+         }
+      }
+      catch (IOException | URISyntaxException e) {
+         throw new IllegalStateException("Could not list package " + LANGUAGE_PACKAGE, e);
+      }
+      List<String> classNames = new ArrayList<>();
+      for (String name : names) {
+         if (name.endsWith(".class") && !name.contains("$")) {
+            classNames.add(name.substring(0, name.length() - ".class".length()));
+         }
+      }
+      return classNames;
+   }
+
+}
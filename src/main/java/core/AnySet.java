@@ -1,26 +1,153 @@
 package core;
 
-import java.util.HashSet;
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Random;
 
-public class AnySet<E> extends HashSet<E> {
-    
-   private static final long serialVersionUID = 4652143016700815479L;
-   Random random = new Random();
+/**
+ * A set that picks a uniformly random element in constant time. The elements
+ * are kept in a list, with the position of each in a map, and removing one
+ * moves the last element into its place, so iteration order is that of
+ * insertion only until something is removed.
+ */
+public class AnySet<E> extends AbstractSet<E> implements Serializable {
 
+   private static final long     serialVersionUID = 2L;
+   private final List<E>         elements         = new ArrayList<>();
+   private final Map<E, Integer> positions        = new HashMap<>();
+   private Random                random;
+   private int                   modifications;
+
+   public AnySet() {
+      this(new Random());
+   }
+
+   // Picks the same elements for the same seed and the same changes.
+   public AnySet(long seed) {
+      this(new Random(seed));
+   }
+
+   public AnySet(Random random) {
+      this.random = random;
+   }
+
+   public AnySet(Collection<? extends E> elements) {
+      this();
+      addAll(elements);
+   }
+
+   public void setSeed(long seed) {
+      random = new Random(seed);
+   }
+
+   // A uniformly random element, null if the set is empty.
    public E any() {
-      int i = 0;
-      int iSelectedObject = random.nextInt(this.size());
-      for (E object : this) {
-         // System.out.println("i = " + Integer.toString(i) + " of " +
-         // Integer.toString(this.size()) + ". Stopping at " +
-         // Integer.toString(iSelectedObject));
-         if (i <= iSelectedObject) {
-            return object;
-         }
-         i++;
+      if (elements.isEmpty()) {
+         return null;
       }
-      return null;
+      return elements.get(random.nextInt(elements.size()));
+   }
+
+   // The element at position i, see the class comment for the order.
+   public E get(int i) {
+      return elements.get(i);
+   }
+
+   @Override
+   public boolean add(E element) {
+      if (positions.putIfAbsent(element, elements.size()) != null) {
+         return false;
+      }
+      elements.add(element);
+      modifications++;
+      return true;
+   }
+
+   @Override
+   public boolean remove(Object element) {
+      Integer i = positions.remove(element);
+      if (i == null) {
+         return false;
+      }
+      removeAt(i);
+      return true;
+   }
+
+   private void removeAt(int i) {
+      E last = elements.remove(elements.size() - 1);
+      if (i < elements.size()) {
+         elements.set(i, last);
+         positions.put(last, i);
+      }
+      modifications++;
+   }
+
+   @Override
+   public boolean contains(Object element) {
+      return positions.containsKey(element);
+   }
+
+   @Override
+   public int size() {
+      return elements.size();
+   }
+
+   @Override
+   public void clear() {
+      elements.clear();
+      positions.clear();
+      modifications++;
+   }
+
+   @Override
+   public Iterator<E> iterator() {
+      return new Iterator<E>() {
+         private int next;
+         private int last     = -1;
+         private int expected = modifications;
+
+         @Override
+         public boolean hasNext() {
+            return next < elements.size();
+         }
+
+         @Override
+         public E next() {
+            if (expected != modifications) {
+               throw new ConcurrentModificationException();
+            }
+            if (next >= elements.size()) {
+               throw new NoSuchElementException();
+            }
+            last = next++;
+            return elements.get(last);
+         }
+
+         // The last element takes the place of the removed one, so it is
+         // visited next.
+         @Override
+         public void remove() {
+            if (last < 0) {
+               throw new IllegalStateException();
+            }
+            if (expected != modifications) {
+               throw new ConcurrentModificationException();
+            }
+            positions.remove(elements.get(last));
+            removeAt(last);
+            next = last;
+            last = -1;
+            expected = modifications;
+         }
+      };
    }
 
 }
@@ -2,17 +2,23 @@ package core;
 
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Random;
 import java.util.Set;
+import java.util.function.Consumer;
 
 public class Asset {
 
    public String             name;
    public String             assetClassName;
-   public static List<Asset> allAssets = new ArrayList<>();
+   // The assets of the default model, see Model.
+   public static List<Asset> allAssets = Model.getDefault().assets;
+   private Model             model;
+   // The component of this asset while the component index of its model is
+   // valid, see Model.setComponentIndex().
+   int                       component;
 
    public Asset() {
       this("Anonymous");
@@ -20,28 +26,20 @@ public class Asset {
 
    public Asset(String name) {
       this.name = name;
-      allAssets.add(this);
+      this.model = Model.current();
+      model.register(this);
+   }
+
+   public Model getModel() {
+      return model;
    }
 
    public static Asset getAsset(String assetName) {
-      for (Asset asset : allAssets) {
-         if (asset.name.equals(assetName)) {
-            return asset;
-         }
-      }
-      return null;
+      return Model.current().getAsset(assetName);
    }
 
    public static Asset getRandomAsset() {
-      int size = allAssets.size();
-      int item = new Random().nextInt(size);
-      int i = 0;
-      for (Asset obj : allAssets) {
-         if (i == item)
-            return obj;
-         i++;
-      }
-      return null;
+      return Model.current().randomAsset();
    }
 
    public void prohibitAssociation(String sourceClassName, String roleName, Boolean enforce) {
@@ -176,24 +174,38 @@ public class Asset {
    }
 
    public static List<Asset> getAssets(String className) {
-      List<Asset> allAssetsOfClass = new ArrayList<>();
-      try {
-         Class<?> cls = Class.forName("auto." + className);
-         for (Asset asset : Asset.allAssets) {
-            if (cls.isAssignableFrom(asset.getClass())) {
-               allAssetsOfClass.add(asset);
-            }
-         }
-      }
-      catch (Exception e) {
-         assertTrue("Can't find asset called " + className + ".", false);
+      return Model.current().getAssets(className);
+   }
+
+   // Reports every asset associated with this one, possibly more than once.
+   public void forEachAssociatedAsset(Consumer<Asset> action) {
+      Set<Asset> assets = getAllAssociatedAssets();
+      if (assets != null) {
+         assets.forEach(action);
       }
-      return allAssetsOfClass;
    }
 
    public boolean isConnected(Asset target) {
-      Set<Asset> closure = getClosure();
-      return closure.contains(target);
+      if (model.hasComponentIndex()) {
+         return model.isConnected(this, target);
+      }
+      if (target == this) {
+         return true;
+      }
+      Set<Asset> closure = new HashSet<>();
+      closure.add(this);
+      ArrayDeque<Asset> frontier = new ArrayDeque<>();
+      frontier.add(this);
+      boolean[] found = new boolean[1];
+      while (!frontier.isEmpty() && !found[0]) {
+         frontier.poll().forEachAssociatedAsset(neighbor -> {
+            if (closure.add(neighbor)) {
+               frontier.add(neighbor);
+               found[0] |= neighbor == target;
+            }
+         });
+      }
+      return found[0];
    }
 
    public Set<Asset> getClosure() {
@@ -202,19 +214,18 @@ public class Asset {
       return getClosure(thisInASet);
    }
 
+   // Breadth first, expanding each asset once.
    public Set<Asset> getClosure(Set<Asset> sourceSet) {
-      Set<Asset> baseTargetSet = new HashSet<>();
-      baseTargetSet.addAll(sourceSet);
-      Set<Asset> expandedTargetSet;
-      boolean foundNewNeighbors = true;
-      while (foundNewNeighbors) {
-         expandedTargetSet = expandWithNeighbors(baseTargetSet);
-         if (baseTargetSet.containsAll(expandedTargetSet)) {
-            foundNewNeighbors = false;
-         }
-         baseTargetSet = expandedTargetSet;
+      Set<Asset> closure = new HashSet<>(sourceSet);
+      ArrayDeque<Asset> frontier = new ArrayDeque<>(sourceSet);
+      while (!frontier.isEmpty()) {
+         frontier.poll().forEachAssociatedAsset(neighbor -> {
+            if (closure.add(neighbor)) {
+               frontier.add(neighbor);
+            }
+         });
       }
-      return baseTargetSet;
+      return closure;
    }
 
    public Set<Asset> expandWithNeighbors(Set<Asset> sourceSet) {
@@ -0,0 +1,19 @@
+package core;
+
+/**
+ * Builds the assets of a language by name, without reflection. The compiler
+ * generates one per language, as ModelFactory in the language package. See
+ * ModelLoader.
+ */
+public interface AssetFactory {
+
+   // A new asset of the concrete asset type typeName in the current model.
+   Asset create(String typeName, String name);
+
+   // asset.add<Role>(target).
+   void link(Asset asset, String roleName, Asset target);
+
+   // Sets the default value of a configurable defense of asset.
+   void setDefense(Asset asset, String defenseName, boolean enabled);
+
+}
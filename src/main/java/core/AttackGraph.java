@@ -0,0 +1,688 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+/**
+ * A frozen copy of the attack step topology, stored as flat arrays so that it
+ * can be searched many times, and from many threads, without touching the
+ * AttackStep objects. Children are kept in compressed sparse row form: the
+ * children of step i are children[childOffsets[i]] up to
+ * children[childOffsets[i + 1]]. Children are those every step hands to
+ * forEachChild(), so the graph follows exactly what a regular attack would
+ * visit. AND steps wait for the number of
+ * expected parents given by setExpectedParents(). Building a graph finds
+ * those on the model unless they are up to date, which is synchronized on the
+ * model, so graphs of one model may be built from many threads as long as no
+ * thread changes the model, or attacks it with the object engine, meanwhile.
+ */
+public class AttackGraph {
+
+   public final AttackStep[]        attackSteps;
+   private Map<AttackStep, Integer> indices = new HashMap<>();
+   final int[]                      childOffsets;
+   final int[]                      children;
+   final boolean[]                  and;
+   final boolean[]                  counts;
+   final int[]                      parentCounts;
+   // The same edges grouped by child: the parents of step i are
+   // parents[parentOffsets[i]] up to parents[parentOffsets[i + 1]], and
+   // parentEdges holds the index of each edge in children.
+   final int[]                      parentOffsets;
+   final int[]                      parents;
+   final int[]                      parentEdges;
+
+   public AttackGraph(List<AttackStep> attackSteps) {
+      this.attackSteps = attackSteps.toArray(new AttackStep[0]);
+      int n = this.attackSteps.length;
+      for (int i = 0; i < n; i++) {
+         indices.put(this.attackSteps[i], i);
+      }
+      and = new boolean[n];
+      parentCounts = new int[n];
+      Model model = null;
+      for (int i = 0; i < n; i++) {
+         AttackStep attackStep = this.attackSteps[i];
+         and[i] = attackStep instanceof AttackStepMax;
+         if (attackStep.model != model) {
+            model = attackStep.model;
+            model.setExpectedParents();
+         }
+         for (AttackStep parent : attackStep.expectedParents.all()) {
+            if (indices.containsKey(parent)) {
+               parentCounts[i]++;
+            }
+         }
+      }
+
+      childOffsets = new int[n + 1];
+      int[] childList = new int[n];
+      boolean[] countList = new boolean[n];
+      int[] lastParent = new int[n];
+      Arrays.fill(lastParent, -1);
+      List<AttackStep> childSteps = new ArrayList<>();
+      int m = 0;
+      for (int i = 0; i < n; i++) {
+         AttackStep parent = this.attackSteps[i];
+         childSteps.clear();
+         parent.forEachChild(childSteps::add);
+         for (AttackStep child : childSteps) {
+            Integer c = indices.get(child);
+            if (c == null || lastParent[c] == i) {
+               continue;
+            }
+            lastParent[c] = i;
+            if (m == childList.length) {
+               childList = Arrays.copyOf(childList, 2 * m);
+               countList = Arrays.copyOf(countList, 2 * m);
+            }
+            childList[m] = c;
+            // An AND step only counts down for parents it expects.
+            countList[m++] = child.expectedParents.expects(parent);
+         }
+         childOffsets[i + 1] = m;
+      }
+      children = Arrays.copyOf(childList, m);
+      counts = Arrays.copyOf(countList, m);
+
+      parentOffsets = new int[n + 1];
+      for (int k = 0; k < m; k++) {
+         parentOffsets[children[k] + 1]++;
+      }
+      for (int i = 0; i < n; i++) {
+         parentOffsets[i + 1] += parentOffsets[i];
+      }
+      parents = new int[m];
+      parentEdges = new int[m];
+      int[] next = Arrays.copyOf(parentOffsets, n);
+      for (int i = 0; i < n; i++) {
+         for (int k = childOffsets[i]; k < childOffsets[i + 1]; k++) {
+            parents[next[children[k]]] = i;
+            parentEdges[next[children[k]]++] = k;
+         }
+      }
+   }
+
+   public AttackGraph(Model model) {
+      this(model.attackSteps);
+   }
+
+   public AttackGraph() {
+      this(Model.current());
+   }
+
+   public int size() {
+      return attackSteps.length;
+   }
+
+   public int indexOf(AttackStep attackStep) {
+      Integer i = indices.get(attackStep);
+      return i == null ? -1 : i;
+   }
+
+   // The steps attackStep relaxes, in the graph.
+   public List<AttackStep> childrenOf(AttackStep attackStep) {
+      List<AttackStep> childSteps = new ArrayList<>();
+      int i = indexOf(attackStep);
+      if (i >= 0) {
+         for (int k = childOffsets[i]; k < childOffsets[i + 1]; k++) {
+            childSteps.add(attackSteps[children[k]]);
+         }
+      }
+      return childSteps;
+   }
+
+   public int[] indicesOf(List<AttackStep> attackSteps) {
+      int[] stepIndices = new int[attackSteps.size()];
+      int n = 0;
+      for (AttackStep attackStep : attackSteps) {
+         int i = indexOf(attackStep);
+         if (i >= 0) {
+            stepIndices[n++] = i;
+         }
+      }
+      return Arrays.copyOf(stepIndices, n);
+   }
+
+   /**
+    * The local ttc of every step, resolved once under the attacker profile
+    * currently loaded into the model.
+    */
+   public double[] localTtcs() {
+      double[] localTtc = new double[attackSteps.length];
+      for (int i = 0; i < attackSteps.length; i++) {
+         localTtc[i] = attackSteps[i].localTtc();
+      }
+      return localTtc;
+   }
+
+   /**
+    * The local ttc of every step resolved from ttcs, indexed by TtcSymbols
+    * id as Attacker.readProfile() returns them, without binding them to the
+    * steps.
+    */
+   public double[] localTtcs(double[] ttcs) {
+      double[] localTtc = new double[attackSteps.length];
+      for (int i = 0; i < attackSteps.length; i++) {
+         localTtc[i] = attackSteps[i].localTtc(ttcs);
+      }
+      return localTtc;
+   }
+
+   /**
+    * Copies the result of a search onto the attack steps, along with the
+    * visited and still expected parents that explain() reports, so that the
+    * assertions behave as after a regular attack.
+    */
+   public void writeBack(double[] ttc) {
+      for (int i = 0; i < attackSteps.length; i++) {
+         attackSteps[i].ttc = ttc[i];
+         attackSteps[i].expectedParents.reset();
+         if (i == 0 || attackSteps[i].model != attackSteps[i - 1].model) {
+            attackSteps[i].model.touchAll();
+            attackSteps[i].model.pastHorizon.clear();
+         }
+      }
+
+      for (int parent = 0; parent < attackSteps.length; parent++) {
+         if (ttc[parent] < AttackStep.infinity) {
+            for (int k = childOffsets[parent]; k < childOffsets[parent + 1]; k++) {
+               AttackStep child = attackSteps[children[k]];
+               child.expectedParents.visit(attackSteps[parent]);
+            }
+         }
+      }
+   }
+
+   // As writeBack(double[]), plus the predecessors if search tracked them
+   // and the steps it stopped short of at its horizon.
+   public void writeBack(Search search) {
+      writeBack(search.ttc);
+      if (search.pastHorizon != null) {
+         for (int i = 0; i < attackSteps.length; i++) {
+            if (search.pastHorizon[i]) {
+               attackSteps[i].model.pastHorizon.add(attackSteps[i]);
+            }
+         }
+      }
+      if (search.trackPredecessors) {
+         for (int i = 0; i < attackSteps.length; i++) {
+            attackSteps[i].predecessor = search.predecessor[i] < 0 ? null : attackSteps[search.predecessor[i]];
+         }
+      }
+   }
+
+   // As writeBack(double[], int[], int) for the steps search changed last.
+   public void writeBackChanges(Search search) {
+      writeBack(search.ttc, search.changed, search.changedCount);
+      if (search.trackPredecessors) {
+         for (int j = 0; j < search.changedCount; j++) {
+            int i = search.changed[j];
+            attackSteps[i].predecessor = search.predecessor[i] < 0 ? null : attackSteps[search.predecessor[i]];
+         }
+      }
+   }
+
+   /**
+    * Like writeBack(double[]) for the first count steps of changed only,
+    * which must hold every step whose ttc differs from the one last written
+    * back. Parents that are no longer reached become expected again.
+    */
+   public void writeBack(double[] ttc, int[] changed, int count) {
+      for (int j = 0; j < count; j++) {
+         int parent = changed[j];
+         AttackStep parentStep = attackSteps[parent];
+         parentStep.touch();
+         parentStep.ttc = ttc[parent];
+         for (int k = childOffsets[parent]; k < childOffsets[parent + 1]; k++) {
+            AttackStep child = attackSteps[children[k]];
+            child.touch();
+            if (ttc[parent] < AttackStep.infinity) {
+               child.expectedParents.visit(parentStep);
+            }
+            else {
+               child.expectedParents.unvisit(parentStep);
+            }
+         }
+      }
+   }
+
+   public Search newSearch() {
+      return new Search();
+   }
+
+   /**
+    * Mutable state for one shortest path search over the graph. A search can
+    * be run any number of times without allocating, but must not be shared
+    * between threads. After a run, addEntry() and removeEntry() repair the
+    * result in place when a single entry step comes or goes.
+    */
+   public class Search {
+      private static final int SETTLED   = -2;
+      private static final int UNREACHED = -1;
+
+      public final double[]    ttc       = new double[attackSteps.length];
+      private final int[]      remaining = new int[attackSteps.length];
+      private final int[]      heap      = new int[attackSteps.length];
+      private final int[]      position  = new int[attackSteps.length];
+      private int              heapSize;
+      private double[]         localTtc;
+      private final boolean[]  entry     = new boolean[attackSteps.length];
+      // Steps whose ttc, or tracked predecessor, changed in the latest repair,
+      // in no particular order.
+      public final int[]       changed   = new int[attackSteps.length];
+      public int               changedCount;
+      // Steps stamped with the current epoch are in the repaired region.
+      private final int[]      stamp     = new int[attackSteps.length];
+      private int              epoch;
+      private final int[]      region    = new int[attackSteps.length];
+      private final double[]   previous  = new double[attackSteps.length];
+      private final int[]      previousPredecessor = new int[attackSteps.length];
+      // Steps popped off the heap by the latest run, the edges it relaxed,
+      // those into AND steps, and the largest its heap grew.
+      public int               expanded;
+      public long              relaxations;
+      public long              andRelaxations;
+      public int               maxHeapSize;
+      // When set, predecessor holds the parent that set the ttc of each step,
+      // -1 for entry and unreached steps.
+      public boolean           trackPredecessors;
+      public final int[]       predecessor = new int[attackSteps.length];
+      // run() and runTo() leave the steps not reached within horizon
+      // unreached.
+      public double            horizon   = AttackStep.infinity;
+      // The steps the latest run() or runTo() stopped short of at horizon:
+      // those it found a ttc beyond horizon for, and the unreached steps
+      // they lead to. Null until a run has a finite horizon.
+      public boolean[]         pastHorizon;
+      // When set, told about every step run() or runTo() settles, in order of
+      // ttc. The search stops when it returns false.
+      public IntPredicate      onSettled;
+      // The parent the latest evaluate() derived its ttc from.
+      private int              from;
+
+      /**
+       * Computes the ttc of every step given the entry steps, which are
+       * reached at time 0, and the local ttc of each step. Follows the
+       * AttackStepMin and AttackStepMax relaxation rules.
+       */
+      public double[] run(int[] entries, double[] localTtc) {
+         return run(entries, entries.length, localTtc);
+      }
+
+      // As run(int[], double[]) with only the first nEntries of entries.
+      public double[] run(int[] entries, int nEntries, double[] localTtc) {
+         search(entries, nEntries, localTtc, -1);
+         return ttc;
+      }
+
+      /**
+       * As run(), but stops as soon as the ttc of target is settled and only
+       * expands steps that can reach target, found by a backward sweep over
+       * the parents of target. Only the ttc of target is final afterwards.
+       */
+      public double runTo(int[] entries, int nEntries, double[] localTtc, int target) {
+         epoch++;
+         int regionSize = 0;
+         region[regionSize++] = target;
+         stamp[target] = epoch;
+         for (int j = 0; j < regionSize; j++) {
+            int child = region[j];
+            for (int k = parentOffsets[child]; k < parentOffsets[child + 1]; k++) {
+               if (stamp[parents[k]] != epoch) {
+                  stamp[parents[k]] = epoch;
+                  region[regionSize++] = parents[k];
+               }
+            }
+         }
+         search(entries, nEntries, localTtc, target);
+         return ttc[target];
+      }
+
+      // Dijkstra over the whole graph, or over the steps stamped by runTo()
+      // until target is settled.
+      private void search(int[] entries, int nEntries, double[] localTtc, int target) {
+         this.localTtc = localTtc;
+         Arrays.fill(ttc, AttackStep.infinity);
+         Arrays.fill(position, UNREACHED);
+         Arrays.fill(this.entry, false);
+         System.arraycopy(parentCounts, 0, remaining, 0, remaining.length);
+         heapSize = 0;
+         expanded = 0;
+         relaxations = 0;
+         andRelaxations = 0;
+         maxHeapSize = 0;
+         if (trackPredecessors) {
+            Arrays.fill(predecessor, -1);
+         }
+         for (int j = 0; j < nEntries; j++) {
+            int entry = entries[j];
+            this.entry[entry] = true;
+            ttc[entry] = 0;
+            if (target >= 0 && stamp[entry] != epoch) {
+               continue;
+            }
+            if (position[entry] == UNREACHED) {
+               push(entry);
+            }
+            else {
+               siftUp(position[entry]);
+            }
+         }
+         boolean stopped = false;
+         while (heapSize > 0 && ttc[heap[0]] <= horizon) {
+            int parent = pop();
+            expanded++;
+            if ((onSettled != null && !onSettled.test(parent)) || parent == target) {
+               stopped = true;
+               break;
+            }
+            double parentTtc = ttc[parent];
+            for (int k = childOffsets[parent]; k < childOffsets[parent + 1]; k++) {
+               int child = children[k];
+               if (target >= 0 && stamp[child] != epoch) {
+                  continue;
+               }
+               relaxations++;
+               if (and[child]) {
+                  andRelaxations++;
+                  if ((counts[k] ? --remaining[child] : remaining[child]) > 0) {
+                     continue;
+                  }
+               }
+               double childTtc = parentTtc + localTtc[child];
+               if (childTtc < ttc[child]) {
+                  ttc[child] = childTtc;
+                  if (trackPredecessors) {
+                     predecessor[child] = parent;
+                  }
+                  if (position[child] == UNREACHED) {
+                     push(child);
+                  }
+                  else if (position[child] != SETTLED) {
+                     siftUp(position[child]);
+                  }
+               }
+            }
+         }
+         boolean cutOff = !stopped && heapSize > 0;
+         for (; heapSize > 0; heapSize--) {
+            position[heap[heapSize - 1]] = UNREACHED;
+         }
+         if (horizon < AttackStep.infinity) {
+            if (pastHorizon == null) {
+               pastHorizon = new boolean[ttc.length];
+            }
+            else {
+               Arrays.fill(pastHorizon, false);
+            }
+            int regionSize = 0;
+            for (int i = 0; i < ttc.length; i++) {
+               if (ttc[i] > horizon) {
+                  if (cutOff && ttc[i] < AttackStep.infinity) {
+                     pastHorizon[i] = true;
+                     region[regionSize++] = i;
+                  }
+                  ttc[i] = AttackStep.infinity;
+                  if (trackPredecessors) {
+                     predecessor[i] = -1;
+                  }
+               }
+            }
+            for (int j = 0; j < regionSize; j++) {
+               for (int k = childOffsets[region[j]]; k < childOffsets[region[j] + 1]; k++) {
+                  int child = children[k];
+                  if (ttc[child] == AttackStep.infinity && !pastHorizon[child]) {
+                     pastHorizon[child] = true;
+                     region[regionSize++] = child;
+                  }
+               }
+            }
+         }
+      }
+
+      public boolean isEntry(int step) {
+         return entry[step];
+      }
+
+      /**
+       * Makes step an entry step of the latest run and lowers the ttcs that
+       * now start earlier, visiting only the steps that improve. The steps
+       * that changed are left in changed.
+       */
+      public void addEntry(int step) {
+         changedCount = 0;
+         epoch++;
+         entry[step] = true;
+         if (ttc[step] == 0) {
+            return;
+         }
+         from = -1;
+         lower(step, 0);
+         while (heapSize > 0) {
+            int parent = pop();
+            for (int k = childOffsets[parent]; k < childOffsets[parent + 1]; k++) {
+               int child = children[k];
+               double childTtc = evaluate(child, parent);
+               if (childTtc < ttc[child]) {
+                  lower(child, childTtc);
+               }
+            }
+         }
+      }
+
+      /**
+       * Stops step from being an entry step of the latest run. Every step
+       * whose ttc may have depended on it, i.e. reachable from it over edges
+       * an OR step was reached through or over edges an AND step waited for,
+       * is reset and searched again from the unaffected steps around it. The
+       * steps that changed are left in changed.
+       */
+      public void removeEntry(int step) {
+         changedCount = 0;
+         epoch++;
+         entry[step] = false;
+         if (ttc[step] == AttackStep.infinity) {
+            return;
+         }
+         int regionSize = 0;
+         region[regionSize++] = step;
+         stamp[step] = epoch;
+         for (int j = 0; j < regionSize; j++) {
+            int parent = region[j];
+            for (int k = childOffsets[parent]; k < childOffsets[parent + 1]; k++) {
+               int child = children[k];
+               if (stamp[child] == epoch || entry[child] || ttc[child] == AttackStep.infinity) {
+                  continue;
+               }
+               boolean waits = and[child] && parentCounts[child] > 0;
+               if (waits ? counts[k] : ttc[parent] + localTtc[child] == ttc[child]) {
+                  region[regionSize++] = child;
+                  stamp[child] = epoch;
+               }
+            }
+         }
+         for (int j = 0; j < regionSize; j++) {
+            previous[region[j]] = ttc[region[j]];
+            ttc[region[j]] = AttackStep.infinity;
+            position[region[j]] = UNREACHED;
+            if (trackPredecessors) {
+               previousPredecessor[region[j]] = predecessor[region[j]];
+               predecessor[region[j]] = -1;
+            }
+         }
+         // Seed the region from the parents that kept their ttc.
+         for (int j = 0; j < regionSize; j++) {
+            int child = region[j];
+            double childTtc = evaluate(child, -1);
+            if (childTtc < AttackStep.infinity) {
+               ttc[child] = childTtc;
+               if (trackPredecessors) {
+                  predecessor[child] = from;
+               }
+               push(child);
+            }
+         }
+         while (heapSize > 0) {
+            int parent = pop();
+            for (int k = childOffsets[parent]; k < childOffsets[parent + 1]; k++) {
+               int child = children[k];
+               if (stamp[child] != epoch || position[child] == SETTLED) {
+                  continue;
+               }
+               double childTtc = evaluate(child, parent);
+               if (childTtc < ttc[child]) {
+                  ttc[child] = childTtc;
+                  if (trackPredecessors) {
+                     predecessor[child] = from;
+                  }
+                  if (position[child] >= 0) {
+                     siftUp(position[child]);
+                  }
+                  else {
+                     push(child);
+                  }
+               }
+            }
+         }
+         for (int j = 0; j < regionSize; j++) {
+            int child = region[j];
+            position[child] = SETTLED;
+            if (ttc[child] != previous[child] || (trackPredecessors && predecessor[child] != previousPredecessor[child])) {
+               changed[changedCount++] = child;
+            }
+         }
+      }
+
+      // Lowers the ttc of step during addEntry(), reached from the latest
+      // evaluated parent, and queues it.
+      private void lower(int step, double stepTtc) {
+         if (stamp[step] != epoch) {
+            stamp[step] = epoch;
+            changed[changedCount++] = step;
+         }
+         ttc[step] = stepTtc;
+         if (trackPredecessors) {
+            predecessor[step] = from;
+         }
+         if (position[step] >= 0) {
+            siftUp(position[step]);
+         }
+         else {
+            push(step);
+         }
+      }
+
+      /**
+       * The ttc of step given the current ttcs of its parents. An OR step, or
+       * an AND step that expects no parents, is only re-derived from parent
+       * when one is given, as the earliest parent is all that matters there.
+       */
+      private double evaluate(int step, int parent) {
+         from = -1;
+         if (entry[step]) {
+            return 0;
+         }
+         double stepTtc;
+         if (and[step] && parentCounts[step] > 0) {
+            int reached = 0;
+            stepTtc = 0;
+            for (int k = parentOffsets[step]; k < parentOffsets[step + 1]; k++) {
+               if (counts[parentEdges[k]]) {
+                  if (ttc[parents[k]] == AttackStep.infinity) {
+                     return AttackStep.infinity;
+                  }
+                  if (from < 0 || ttc[parents[k]] > stepTtc) {
+                     stepTtc = ttc[parents[k]];
+                     from = parents[k];
+                  }
+                  reached++;
+               }
+            }
+            if (reached < parentCounts[step]) {
+               return AttackStep.infinity;
+            }
+         }
+         else if (parent >= 0) {
+            stepTtc = ttc[parent];
+            from = parent;
+         }
+         else {
+            stepTtc = AttackStep.infinity;
+            for (int k = parentOffsets[step]; k < parentOffsets[step + 1]; k++) {
+               if (ttc[parents[k]] < stepTtc) {
+                  stepTtc = ttc[parents[k]];
+                  from = parents[k];
+               }
+            }
+         }
+         if (stepTtc == AttackStep.infinity) {
+            return AttackStep.infinity;
+         }
+         stepTtc += localTtc[step];
+         return stepTtc < AttackStep.infinity ? stepTtc : AttackStep.infinity;
+      }
+
+      private void push(int step) {
+         heap[heapSize] = step;
+         position[step] = heapSize;
+         siftUp(heapSize++);
+         if (heapSize > maxHeapSize) {
+            maxHeapSize = heapSize;
+         }
+      }
+
+      private int pop() {
+         int min = heap[0];
+         position[min] = SETTLED;
+         heapSize--;
+         if (heapSize > 0) {
+            heap[0] = heap[heapSize];
+            position[heap[0]] = 0;
+            siftDown(0);
+         }
+         return min;
+      }
+
+      private void siftUp(int i) {
+         int step = heap[i];
+         double key = ttc[step];
+         while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (ttc[heap[parent]] <= key) {
+               break;
+            }
+            heap[i] = heap[parent];
+            position[heap[i]] = i;
+            i = parent;
+         }
+         heap[i] = step;
+         position[step] = i;
+      }
+
+      private void siftDown(int i) {
+         int step = heap[i];
+         double key = ttc[step];
+         int half = heapSize >>> 1;
+         while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < heapSize && ttc[heap[child + 1]] < ttc[heap[child]]) {
+               child++;
+            }
+            if (key <= ttc[heap[child]]) {
+               break;
+            }
+            heap[i] = heap[child];
+            position[heap[i]] = i;
+            i = child;
+         }
+         heap[i] = step;
+         position[step] = i;
+      }
+   }
+
+}
@@ -0,0 +1,14 @@
+package core;
+
+/**
+ * Follows an attack as it runs. Steps are reported as their ttc is settled,
+ * i.e. in order of ttc, so the first compromises are known long before the
+ * attack ends. Call Attacker.cancel() to stop the attack early.
+ */
+public interface AttackListener {
+
+   // attackStep is reached at ttc through parent, which is null for the
+   // attack points and the disable steps of disabled defenses.
+   void compromised(AttackStep attackStep, double ttc, AttackStep parent);
+
+}
@@ -0,0 +1,11 @@
+package core;
+
+/**
+ * Receives the cost of every attack of the attackers it is set on, see
+ * Attacker.setMetrics(). Attackers on several threads may share one.
+ */
+public interface AttackMetrics {
+
+   void attackFinished(AttackStatistics statistics);
+
+}
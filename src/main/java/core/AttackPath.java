@@ -0,0 +1,42 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A loop-free chain of attack steps from an entry step to a target, each step
+ * a child of the one before, with the time at which the attack reaches each
+ * step along it. See PathAttacker.
+ */
+public class AttackPath {
+
+   public final List<AttackStep> attackSteps;
+   public final double           ttc;
+   private final double[]        ttcs;
+
+   AttackPath(List<AttackStep> attackSteps, double[] ttcs) {
+      this.attackSteps = Collections.unmodifiableList(new ArrayList<>(attackSteps));
+      this.ttcs = ttcs;
+      this.ttc = ttcs[ttcs.length - 1];
+   }
+
+   public int size() {
+      return ttcs.length;
+   }
+
+   // The time at which the i:th step of the path is reached along it.
+   public double ttc(int i) {
+      return ttcs[i];
+   }
+
+   @Override
+   public String toString() {
+      StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < ttcs.length; i++) {
+         sb.append(i == 0 ? "" : " -> ").append(attackSteps.get(i).fullName()).append(" [").append(ttcs[i]).append("]");
+      }
+      return sb.toString();
+   }
+
+}
@@ -0,0 +1,73 @@
+package core;
+
+/**
+ * What one attack cost, filled in by the attacker as it runs and handed to
+ * its AttackMetrics when it ends. Times are in nanoseconds.
+ */
+public class AttackStatistics {
+
+   final Attacker.Engine engine;
+   final int             attackSteps;
+   // Steps taken off the frontier to update their children.
+   int                   settled;
+   // Parent to child updates into OR and AND steps.
+   long                  orRelaxations;
+   long                  andRelaxations;
+   // Largest frontier size seen, -1 if not tracked.
+   int                   frontierHighWaterMark = -1;
+   // Setting the expected parents, and with the compiled engine building the
+   // AttackGraph along with them.
+   long                  expectedParentsNanos;
+   // Reading the distributions of the attacker profile.
+   long                  profileNanos;
+   long                  totalNanos;
+
+   public AttackStatistics(Attacker.Engine engine, int attackSteps) {
+      this.engine = engine;
+      this.attackSteps = attackSteps;
+   }
+
+   public Attacker.Engine getEngine() {
+      return engine;
+   }
+
+   public int getAttackSteps() {
+      return attackSteps;
+   }
+
+   public int getSettled() {
+      return settled;
+   }
+
+   public long getOrRelaxations() {
+      return orRelaxations;
+   }
+
+   public long getAndRelaxations() {
+      return andRelaxations;
+   }
+
+   // -1 unless the attacker had metrics, see Attacker.setMetrics().
+   public int getFrontierHighWaterMark() {
+      return frontierHighWaterMark;
+   }
+
+   public long getExpectedParentsNanos() {
+      return expectedParentsNanos;
+   }
+
+   public long getProfileNanos() {
+      return profileNanos;
+   }
+
+   public long getTotalNanos() {
+      return totalNanos;
+   }
+
+   @Override
+   public String toString() {
+      return String.format("%s attack of %d steps: %d settled, %d OR and %d AND relaxations, frontier high-water mark %d, expected parents %.3f ms, profile %.3f ms, total %.3f ms", engine, attackSteps, settled,
+            orRelaxations, andRelaxations, frontierHighWaterMark, expectedParentsNanos / 1e6, profileNanos / 1e6, totalNanos / 1e6);
+   }
+
+}
@@ -4,12 +4,10 @@ import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import static java.lang.Math.abs;
 
@@ -20,14 +18,15 @@ public class AttackStep {
    public final static double           oneSecond        = 0.00001157407;
    public final static double           infinity         = Double.MAX_VALUE;
    public double                        ttc              = Double.MAX_VALUE;
-   public Set<AttackStep>               expectedParents  = new HashSet<>();
-   Set<AttackStep>                      visitedParents   = new HashSet<>();
-   public static List<AttackStep>       allAttackSteps   = new ArrayList<>();
+   public final ParentSet               expectedParents  = new ParentSet();
+   // The parent that set ttc, null for attack points and unreached steps.
+   public AttackStep                    predecessor;
+   // The attack steps of the default model, see Model.
+   public static List<AttackStep>       allAttackSteps   = Model.getDefault().attackSteps;
    public String                        assetName;
-   public String                        assetClassName;
-   private int                          explanationDepth = 10;
-   private boolean                      explained        = false;
-   protected static Map<String, Double> ttcHashMap       = new HashMap<>();
+   Model                                model;
+   // The local ttc bound from the attacker profile, see bindTtc().
+   double                               boundTtc         = oneSecond;
 
    public AttackStep() {
       this("Anonymous");
@@ -35,7 +34,12 @@ public class AttackStep {
 
    public AttackStep(String name) {
       this.assetName = name;
-      allAttackSteps.add(this);
+      this.model = Model.current();
+      model.attackSteps.add(this);
+   }
+
+   public Model getModel() {
+      return model;
    }
 
    protected void setExpectedParents() {
@@ -44,6 +48,11 @@ public class AttackStep {
    public void updateChildren(Set<AttackStep> activeAttackSteps) {
    }
 
+   // Hands action every step updateChildren() would update, leaving them as
+   // they are.
+   public void forEachChild(Consumer<AttackStep> action) {
+   }
+
    public void updateTtc(AttackStep parent, double parentTtc, Set<AttackStep> activeAttackSteps) {
    }
 
@@ -51,12 +60,62 @@ public class AttackStep {
       expectedParents.add(parent);
    }
 
+   // The parents that reached this step, see ParentSet.
+   List<AttackStep> visitedParents() {
+      return expectedParents.visited();
+   }
+
    public double localTtc() {
-      return oneSecond;
+      return boundTtc;
+   }
+
+   // Id of the attacker profile entry of this step in the TtcSymbols of its
+   // language, or -1 if the step has none and takes oneSecond.
+   public int ttcId() {
+      return -1;
+   }
+
+   // Attacker profile entry of this step, or null if the step has none.
+   public String ttcName() {
+      return null;
    }
 
+   // Resolves the local ttc of this step once per attack, from ttcs indexed by
+   // ttcId(), so relaxing an edge reads a field instead of the profile.
+   void bindTtc(double[] ttcs) {
+      boundTtc = localTtc(ttcs);
+   }
+
+   // The local ttc bindTtc(ttcs) would bind, leaving this step as it is.
+   double localTtc(double[] ttcs) {
+      int id = ttcId();
+      return id < 0 ? oneSecond : ttcs[id];
+   }
+
+   // The names of the generated step classes, looked up once per class
+   // instead of kept on every step.
+   private static final ClassValue<String[]> classNames = new ClassValue<String[]>() {
+      @Override
+      protected String[] computeValue(Class<?> type) {
+         String assetClassName = null;
+         for (Class<?> c = type.getEnclosingClass(); c != null; c = c.getEnclosingClass()) {
+            if (Asset.class.isAssignableFrom(c)) {
+               assetClassName = c.getSimpleName();
+               break;
+            }
+         }
+         String name = type.getSimpleName();
+         return new String[] { name.isEmpty() ? name : Character.toLowerCase(name.charAt(0)) + name.substring(1), assetClassName };
+      }
+   };
+
    public String attackStepName() {
-      return decapitalize(this.toString().substring(this.toString().lastIndexOf('$') + 1, this.toString().lastIndexOf('@')));
+      return classNames.get(getClass())[0];
+   }
+
+   // The asset class that declares this step, null for steps outside assets.
+   public String assetClassName() {
+      return classNames.get(getClass())[1];
    }
 
    public String fullName() {
@@ -64,10 +123,9 @@ public class AttackStep {
    }
 
    public Asset asset() {
-      for (Asset asset : Asset.allAssets) {
-         if (asset.name.equals(assetName)) {
-            return asset;
-         }
+      Asset asset = model.getAsset(assetName);
+      if (asset != null) {
+         return asset;
       }
       assertTrue("Asset name of " + fullName() + " does not correspond to any existing asset.", false);
       return null;
@@ -79,9 +137,10 @@ public class AttackStep {
          assertTrue(true);
       }
       else {
-         System.out.println(fullName() + ".ttc was supposed to be small, but was " + Double.toString(ttc) + ".");
+         String message = fullName() + ".ttc was supposed to be small, but was " + Double.toString(ttc) + ".";
+         System.out.println(message);
          explain();
-         assertTrue(false);
+         assertTrue(withCriticalPath(message), false);
       }
    }
 
@@ -91,9 +150,10 @@ public class AttackStep {
          assertTrue(true);
       }
       else {
-         System.out.println(fullName() + ".ttc was supposed to be between 1/1440 and 1000, but was " + Double.toString(ttc) + ".");
+         String message = fullName() + ".ttc was supposed to be between 1/1440 and 1000, but was " + Double.toString(ttc) + ".";
+         System.out.println(message);
          explain();
-         assertTrue(false);
+         assertTrue(withCriticalPath(message), false);
       }
    }
 
@@ -103,35 +163,36 @@ public class AttackStep {
          assertTrue(true);
       }
       else {
-         System.out.println(fullName() + ".ttc was supposed to be between " + nDays.toString() + " and " + Double.toString(nDays + 1) + ", but was " + Double.toString(ttc) + ".");
+         String message = fullName() + ".ttc was supposed to be between " + nDays.toString() + " and " + Double.toString(nDays + 1) + ", but was " + Double.toString(ttc) + ".";
+         System.out.println(message);
          explain();
-         assertTrue(false);
+         assertTrue(withCriticalPath(message), false);
       }
    }
 
    public void assertUncompromised() {
-      if (ttc == Double.MAX_VALUE) {
+      if (ttc == Double.MAX_VALUE && !isPastHorizon()) {
          System.out.println("+ " + fullName() + " was not reached, as expected.");
          assertTrue(true);
       }
       else {
-         System.out.println(fullName() + ".ttc was supposed to be infinite, but was " + Double.toString(ttc) + ".");
-         System.out.println("\nExplaining compromise:");
-         explainCompromise("", explanationDepth);
-         assertTrue(false);
+         String message = fullName() + ".ttc was supposed to be infinite, but was " + Double.toString(ttc) + ".";
+         System.out.println(message);
+         Explanation.write(this, false, true);
+         assertTrue(withCriticalPath(message), false);
       }
    }
 
    public void assertUncompromisedFrom(AttackStep expectedParent) {
-      if ((abs(ttc - expectedParent.ttc) == Double.MAX_VALUE) || (ttc == Double.MAX_VALUE && expectedParent.ttc == Double.MAX_VALUE)) {
+      if (!isPastHorizon() && ((abs(ttc - expectedParent.ttc) == Double.MAX_VALUE) || (ttc == Double.MAX_VALUE && expectedParent.ttc == Double.MAX_VALUE))) {
          System.out.println("+ " + fullName() + " (" + Double.toString(ttc) + ")" + " was not reached from " + expectedParent.fullName() + " (" + Double.toString(expectedParent.ttc) + ")" + " as expected.");
          assertTrue(true);
       }
       else {
-         System.out.println(fullName() + ".ttc was supposed to be infinite, but was " + Double.toString(ttc) + ", while " + expectedParent.fullName() + ".ttc was " + Double.toString(expectedParent.ttc) + ".");
-         System.out.println("\nExplaining compromise:");
-         explainCompromise("", explanationDepth);
-         assertTrue(false);
+         String message = fullName() + ".ttc was supposed to be infinite, but was " + Double.toString(ttc) + ", while " + expectedParent.fullName() + ".ttc was " + Double.toString(expectedParent.ttc) + ".";
+         System.out.println(message);
+         Explanation.write(this, false, true);
+         assertTrue(withCriticalPath(message), false);
       }
    }
 
@@ -141,13 +202,13 @@ public class AttackStep {
          assertTrue(true);
       }
       else {
-         System.out.println(
-               fullName() + ".ttc (" + Double.toString(ttc) + ") was supposed to follow " + expectedParent.fullName() + ".ttc (" + Double.toString(expectedParent.ttc) + ") immediately, but didn't.");
+         String message = fullName() + ".ttc (" + Double.toString(ttc) + ") was supposed to follow " + expectedParent.fullName() + ".ttc (" + Double.toString(expectedParent.ttc) + ") immediately, but didn't.";
+         System.out.println(message);
          if (ttc - expectedParent.ttc < 0) {
             System.out.println("In fact, " + fullName() + " preceded " + expectedParent.fullName() + ".");
          }
          explain();
-         assertTrue(false);
+         assertTrue(withCriticalPath(message), false);
       }
    }
 
@@ -157,106 +218,92 @@ public class AttackStep {
          assertTrue(true);
       }
       else {
-         System.out.println(fullName() + ".ttc (" + Double.toString(ttc) + ") was supposed to follow " + expectedParent.getClass().getName() + ".ttc (" + Double.toString(expectedParent.ttc)
-               + ") with some effort, but didn't.");
+         String message = fullName() + ".ttc (" + Double.toString(ttc) + ") was supposed to follow " + expectedParent.getClass().getName() + ".ttc (" + Double.toString(expectedParent.ttc)
+               + ") with some effort, but didn't.";
+         System.out.println(message);
          if (ttc - expectedParent.ttc < 0) {
             System.out.println("In fact, " + fullName() + " preceded " + expectedParent.fullName() + ".");
          }
-         explainCompromise("", explanationDepth);
-         explainUncompromise("", explanationDepth);
-         assertTrue(false);
+         explain();
+         assertTrue(withCriticalPath(message), false);
       }
    }
 
+   // Whether the latest attack stopped at its horizon without reaching this
+   // step although it may still be reached later, i.e. the step had a ttc
+   // beyond the horizon or follows from a step that had. Steps that cannot
+   // be reached at all are not past the horizon.
+   public boolean isPastHorizon() {
+      return ttc == infinity && model.pastHorizon.contains(this);
+   }
+
    void reset() {
       ttc = Double.MAX_VALUE;
+      predecessor = null;
+      expectedParents.reset();
    }
 
-   private void explainCompromise(String indent, int remainingExplanationSteps) {
-      if (remainingExplanationSteps >= 0) {
-         if (ttc != AttackStep.infinity) {
-            System.out.print(indent + " reached " + fullName() + " [" + Double.toString(this.ttc) + "] (");
-            if (this instanceof AttackStepMax) {
-               System.out.print("AND");
-            }
-            if (this instanceof AttackStepMin) {
-               System.out.print("OR");
-            }
-            System.out.print(") because ");
-            // if (!explained) {
-            explained = true;
-            for (AttackStep parent : this.visitedParents) {
-               System.out.print(" parent: " + parent.fullName() + " [" + Double.toString(parent.ttc) + "], ");
-            }
-            System.out.println("");
-            for (AttackStep parent : this.visitedParents) {
-               if (parent.ttc <= this.ttc) {
-                  parent.explainCompromise(indent + "  ", remainingExplanationSteps - 1);
-               }
-            }
-            // }
-         }
+   // Reports this step to its model the first time an attack changes it
+   // after a reset, see Model.resetAttack().
+   void touch() {
+      if (ttc == infinity && expectedParents.isReset()) {
+         model.touch(this);
       }
    }
 
-   private void explainUncompromise(String indent, int remainingExplanationSteps) {
-      System.out.print(Integer.toString(remainingExplanationSteps) + " remaining explanation steps.");
-      if (remainingExplanationSteps >= 0) {
-         if (ttc == AttackStep.infinity) {
-            if (this instanceof AttackStepMax) {
-               System.out.println(indent + " didn't reach " + fullName() + " [" + Double.toString(this.ttc) + "] (AND) because ");
-               for (AttackStep parent : this.expectedParents) {
-                  // System.out.println(indent + " " + parent.fullName() + " was
-                  // not reached.");
-                  parent.explainUncompromise(indent + "  ", remainingExplanationSteps - 1);
-               }
-            }
-            if (this instanceof AttackStepMin) {
-               System.out.println(indent + "  didn't reach " + fullName() + " [" + Double.toString(this.ttc) + "] (OR), because");
-               if (visitedParents.isEmpty()) {
-                  for (AttackStep parent : this.expectedParents) {
-                     // System.out.println(indent + " " + parent.fullName() + "
-                     // was not reached.");
-                     parent.explainUncompromise(indent + "  ", remainingExplanationSteps - 1);
-                  }
-               }
-            }
-            if (this.expectedParents.isEmpty() && visitedParents.isEmpty()) {
-               System.out.println(indent + "  parents were neither expected nor visited, so this step is unreachable.");
-            }
-            for (AttackStep parent : this.visitedParents) {
-               parent.explainUncompromise(indent + "  ", remainingExplanationSteps - 1);
-            }
-         }
-         else {
-            System.out.println(indent + "  but did reach " + fullName() + " [" + Double.toString(this.ttc) + "].");
-         }
+   /**
+    * The cheapest way to this step according to the latest attack, from the
+    * attack point it starts at to this step, following the parent that set
+    * each ttc. Empty if this step was not reached.
+    */
+   public List<AttackStep> criticalPath() {
+      List<AttackStep> path = new ArrayList<>();
+      if (ttc == infinity) {
+         return path;
+      }
+      for (AttackStep attackStep = this; attackStep != null && path.size() <= model.attackSteps.size(); attackStep = attackStep.predecessor) {
+         path.add(attackStep);
       }
+      Collections.reverse(path);
+      return path;
    }
 
-   public void explain() {
-      System.out.println("\nExplaining uncompromise:");
-      explainUncompromise("", explanationDepth);
-      System.out.println("\nExplaining compromise:");
-      explainCompromise("", explanationDepth);
+   // Every step this step needed, see AttackTree, or null if it was not reached.
+   public AttackTree attackTree() {
+      return AttackTree.of(this);
    }
 
-   private String capitalize(final String line) {
-      return Character.toUpperCase(line.charAt(0)) + line.substring(1);
+   // message, followed by the critical path when this step was reached, or
+   // by a note when it lies past the horizon of the latest attack.
+   private String withCriticalPath(String message) {
+      if (isPastHorizon()) {
+         return message + " The latest attack stopped at its horizon of " + Double.toString(model.horizon) + " days before reaching it.";
+      }
+      List<AttackStep> path = criticalPath();
+      if (path.isEmpty()) {
+         return message;
+      }
+      StringBuilder sb = new StringBuilder(message).append(" Critical path:");
+      for (AttackStep attackStep : path) {
+         sb.append("\n   ").append(attackStep.fullName()).append(" [").append(Double.toString(attackStep.ttc)).append("]");
+      }
+      return sb.toString();
    }
 
-   private String decapitalize(final String line) {
-      return Character.toLowerCase(line.charAt(0)) + line.substring(1);
+   // Why this step was or was not reached, see Explanation.
+   public void explain() {
+      Explanation.write(this, true, true);
    }
 
    public static AttackStep randomAttackStep(long randomSeed) {
+      List<AttackStep> attackSteps = Model.current().attackSteps;
       Random random = new Random(randomSeed);
-      return allAttackSteps.get(random.nextInt(allAttackSteps.size()));
+      return attackSteps.get(random.nextInt(attackSteps.size()));
    }
 
    public static void printAllDefenseSettings() {
       List<String> defenseNames = new ArrayList<>();
-      for (AttackStep attackStep : allAttackSteps) {
+      for (AttackStep attackStep : Model.current().attackSteps) {
          if (attackStep.assetName.equals("Disable")) {
             defenseNames.add(attackStep.fullName());
          }
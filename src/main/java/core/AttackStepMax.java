@@ -9,11 +9,15 @@ public class AttackStepMax extends AttackStep {
 
    @Override
    public void updateTtc(AttackStep parent, double parentTtc, Set<AttackStep> activeAttackSteps) {
-      expectedParents.remove(parent);
-      visitedParents.add(parent);
+      if (activeAttackSteps instanceof Frontier) {
+         ((Frontier) activeAttackSteps).andRelaxations++;
+      }
+      touch();
+      expectedParents.visit(parent);
       if (expectedParents.isEmpty()) {
          if (parentTtc + localTtc() < ttc) {
             ttc = parentTtc + localTtc();
+            predecessor = parent;
             activeAttackSteps.add(this);
          }
       }
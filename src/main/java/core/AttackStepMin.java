@@ -9,10 +9,17 @@ public class AttackStepMin extends AttackStep {
 
    @Override
    public void updateTtc(AttackStep parent, double parentTtc, Set<AttackStep> activeAttackSteps) {
-      expectedParents.remove(parent);
-      visitedParents.add(parent);
+      if (activeAttackSteps instanceof Frontier) {
+         ((Frontier) activeAttackSteps).orRelaxations++;
+      }
+      touch();
+      // Only explanations ask which parents reached an OR step.
+      if (model.isExplained()) {
+         expectedParents.visit(parent);
+      }
       if (parentTtc + localTtc() < ttc) {
          ttc = parentTtc + localTtc();
+         predecessor = parent;
          activeAttackSteps.add(this);
       }
       // System.out.println("Reached OR AttackStep" + this.fullName() + " at
@@ -0,0 +1,123 @@
+package core;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * How an attack step was reached according to the latest attack: an OR step
+ * through the predecessor that set its ttc, an AND step through every parent
+ * it had to wait for. Each step appears once, so parents shared by several
+ * branches are shared nodes and the tree is really a DAG with one node per
+ * step on it.
+ */
+public class AttackTree {
+
+   public final AttackStep        attackStep;
+   public final double            ttc;
+   private final List<AttackTree> parents = new ArrayList<>();
+
+   private AttackTree(AttackStep attackStep) {
+      this.attackStep = attackStep;
+      this.ttc = attackStep.ttc;
+   }
+
+   // The tree of attackStep, or null if it was not reached. Takes time
+   // linear in the size of the tree.
+   public static AttackTree of(AttackStep attackStep) {
+      if (attackStep.ttc == AttackStep.infinity) {
+         return null;
+      }
+      Map<AttackStep, AttackTree> nodes = new HashMap<>();
+      Deque<AttackTree> pending = new ArrayDeque<>();
+      AttackTree root = new AttackTree(attackStep);
+      nodes.put(attackStep, root);
+      pending.push(root);
+      while (!pending.isEmpty()) {
+         AttackTree node = pending.pop();
+         for (AttackStep parent : reachedFrom(node.attackStep)) {
+            AttackTree parentNode = nodes.get(parent);
+            if (parentNode == null) {
+               parentNode = new AttackTree(parent);
+               nodes.put(parent, parentNode);
+               pending.push(parentNode);
+            }
+            node.parents.add(parentNode);
+         }
+      }
+      return root;
+   }
+
+   private static List<AttackStep> reachedFrom(AttackStep attackStep) {
+      if (attackStep.predecessor == null) {
+         return Collections.emptyList();
+      }
+      if (attackStep instanceof AttackStepMax) {
+         List<AttackStep> parents = new ArrayList<>();
+         for (AttackStep parent : attackStep.visitedParents()) {
+            if (parent.ttc <= attackStep.ttc) {
+               parents.add(parent);
+            }
+         }
+         return parents;
+      }
+      return Collections.singletonList(attackStep.predecessor);
+   }
+
+   public List<AttackTree> getParents() {
+      return Collections.unmodifiableList(parents);
+   }
+
+   public boolean isAnd() {
+      return attackStep instanceof AttackStepMax;
+   }
+
+   // Every node of the tree once, parents before the steps they lead to.
+   public List<AttackTree> nodes() {
+      List<AttackTree> nodes = new ArrayList<>();
+      Set<AttackTree> seen = new HashSet<>();
+      Deque<AttackTree> path = new ArrayDeque<>();
+      Deque<Integer> next = new ArrayDeque<>();
+      seen.add(this);
+      path.push(this);
+      next.push(0);
+      while (!path.isEmpty()) {
+         AttackTree node = path.peek();
+         int i = next.pop();
+         if (i == node.parents.size()) {
+            nodes.add(path.pop());
+            continue;
+         }
+         next.push(i + 1);
+         AttackTree parent = node.parents.get(i);
+         if (seen.add(parent)) {
+            path.push(parent);
+            next.push(0);
+         }
+      }
+      return nodes;
+   }
+
+   @Override
+   public String toString() {
+      StringBuilder sb = new StringBuilder();
+      for (AttackTree node : nodes()) {
+         sb.append(node.attackStep.fullName()).append(" [").append(node.ttc).append("]");
+         if (!node.parents.isEmpty()) {
+            sb.append(node.isAnd() ? " (AND) from " : " (OR) from ");
+            for (int i = 0; i < node.parents.size(); i++) {
+               sb.append(i == 0 ? "" : ", ").append(node.parents.get(i).attackStep.fullName());
+            }
+         }
+         sb.append("\n");
+      }
+      return sb.toString();
+   }
+
+}
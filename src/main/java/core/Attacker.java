@@ -2,56 +2,142 @@ package core;
 
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
-import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class Attacker {
 
-   protected Set<AttackStep> activeAttackSteps  = new HashSet<>();
-   Boolean                   verbose            = false;
-   public static String      defaultProfilePath = "./target/generated-sources/attackerProfile.ttc";
-   protected static Map<String, Double> ttcHashMap       = new HashMap<>();
+   // OBJECTS lets every attack step object relax its own children, COMPILED
+   // freezes the model into an AttackGraph and searches its arrays.
+   public enum Engine {
+      OBJECTS, COMPILED
+   }
+
+   protected Model                model;
+   protected Frontier             activeAttackSteps;
+   Boolean                        verbose            = false;
+   public static String           defaultProfilePath = "./target/generated-sources/attackerProfile.ttc";
+   // Select with -Dmal.frontier=LINEAR|BINARY_HEAP|PAIRING_HEAP|RADIX_HEAP
+   public static Frontier.Type    defaultFrontier    = Frontier.Type.valueOf(System.getProperty("mal.frontier", "BINARY_HEAP"));
+   protected Map<String, Double>  ttcHashMap         = new HashMap<>();
+   // Select with -Dmal.engine=OBJECTS|COMPILED
+   public static Engine           defaultEngine      = Engine.valueOf(System.getProperty("mal.engine", "OBJECTS"));
+   protected Engine               engine             = defaultEngine;
+   protected AttackStep           target;
+   protected int                  expanded;
+   protected List<AttackListener> listeners          = new CopyOnWriteArrayList<>();
+   protected double               horizon            = AttackStep.infinity;
+   protected AttackMetrics        metrics;
+   protected AttackStatistics     statistics;
+   // Set by cancel() until an attack stops for it.
+   private final AtomicBoolean    cancelRequested    = new AtomicBoolean();
+   // Whether the latest attack stopped for cancel().
+   private volatile boolean       cancelled;
 
    public Attacker() {
-      verbose = false;
+      this(false);
    }
 
    public Attacker(boolean verbose) {
+      this(verbose, defaultFrontier);
+   }
+
+   public Attacker(boolean verbose, Frontier.Type frontierType) {
+      this(Model.current(), verbose, frontierType);
+   }
+
+   public Attacker(Model model) {
+      this(model, false, defaultFrontier);
+   }
+
+   public Attacker(Model model, boolean verbose, Frontier.Type frontierType) {
+      this.model = model;
       this.verbose = verbose;
+      this.activeAttackSteps = Frontier.create(frontierType);
+   }
+
+   public void setEngine(Engine engine) {
+      this.engine = engine;
+   }
+
+   // Makes attacks stop as soon as the ttc of target is settled, only that ttc
+   // is final afterwards. With the compiled engine, steps that cannot reach
+   // target are not expanded either. Null attacks the whole model again.
+   public void setTarget(AttackStep target) {
+      this.target = target;
+   }
+
+   // The number of attack steps the latest attack took off the frontier to
+   // update their children.
+   public int expandedCount() {
+      return expanded;
+   }
+
+   // Hands the statistics of every attack to metrics, null stops it. Only
+   // the frontier high-water mark costs anything while attacking.
+   public void setMetrics(AttackMetrics metrics) {
+      this.metrics = metrics;
+   }
+
+   // What the latest attack cost.
+   public AttackStatistics statistics() {
+      return statistics;
+   }
+
+   public void addListener(AttackListener listener) {
+      listeners.add(listener);
+   }
+
+   public void removeListener(AttackListener listener) {
+      listeners.remove(listener);
+   }
+
+   // Stops the running attack after the step being settled, from any thread,
+   // or the next attack if none is settling steps. Only the ttcs reported so
+   // far are final then.
+   public void cancel() {
+      cancelRequested.set(true);
+   }
+
+   // Whether the latest attack stopped for cancel().
+   public boolean wasCancelled() {
+      return cancelled;
+   }
+
+   // Reports attackStep to the listeners, returns false once cancelled.
+   protected boolean settled(AttackStep attackStep, double ttc, AttackStep parent) {
+      for (AttackListener listener : listeners) {
+         listener.compromised(attackStep, ttc, parent);
+      }
+      if (cancelRequested.compareAndSet(true, false)) {
+         cancelled = true;
+         return false;
+      }
+      return true;
    }
 
    public void addAttackPoint(AttackStep attackPoint) {
+      attackPoint.touch();
       attackPoint.ttc = 0;
+      attackPoint.predecessor = null;
       activeAttackSteps.add(attackPoint);
    }
 
    public void addRandomAttackPoint(long randomSeed) {
-      AttackStep attackPoint = AttackStep.randomAttackStep(randomSeed);
+      AttackStep attackPoint = model.attackSteps.get(new Random(randomSeed).nextInt(model.attackSteps.size()));
       System.out.println("Attack point: " + attackPoint.fullName());
       addAttackPoint(attackPoint);
    }
 
-   private AttackStep getShortestActiveStep() {
-      AttackStep shortestStep = null;
-      double shortestTtc = Double.MAX_VALUE;
-      for (AttackStep attackStep : activeAttackSteps) {
-         if (attackStep.ttc < shortestTtc) {
-            shortestTtc = attackStep.ttc;
-            shortestStep = attackStep;
-         }
-      }
-      return shortestStep;
-   }
-
+   // Forgets the latest attack, at the cost of the steps it changed.
    public void reset() {
-      for (AttackStep attackStep : AttackStep.allAttackSteps) {
-         attackStep.ttc = Double.MAX_VALUE;
-      }
+      model.resetAttack();
    }
 
    private void debugPrint(String str) {
@@ -65,71 +151,42 @@ public class Attacker {
    }
 
    public static double parseDistribution(String dist, boolean defense) {
-      Pattern pattern = Pattern.compile("([a-z]+)\\(*([0-9.]+)*,*([0-9.]+)*\\)*", Pattern.CASE_INSENSITIVE);
-      Matcher matcher = pattern.matcher(dist);
-      matcher.matches();
-      double a = 0;
-      double b = 0;
-      try {
-         a = Double.valueOf(matcher.group(2));
-         b = Double.valueOf(matcher.group(3));
-      } catch(Exception e) {
-      }
-      switch (matcher.group(1)) {
-         case "BernoulliDistribution":
-            if(defense) {
-               return a < 0.5 ? 0 : Double.MAX_VALUE;
-            } else {
-               return a < 0.5 ? Double.MAX_VALUE : 0;
-            }
-         case "BinomialDistribution":
-            return a*b;
-         case "ExponentialDistribution":
-            return 1/a;
-         case "GammaDistribution":
-            return a/b;
-         case "Infinity":
-            return Double.MAX_VALUE;
-         case "LogNormalDistribution":
-            return Math.exp(a + b/2);
-         case "NormalDistribution":
-            return a;
-         case "ParetoDistribution":
-            return a <= 1 ? Double.MAX_VALUE : a*b / (a-1);
-         case "TruncatedNormalDistribution":
-            return a;
-         case "UniformDistribution":
-            return (a+b)/2;
-         case "Zero":
-            return 0;
-         default:
-            System.err.printf("No matching distribution for: %s\n", dist);
-            return 0;
-      }
+      return TtcDistribution.parse(dist).mean(defense);
    }
 
    private boolean isDefense(String name) {
-      name = Character.toLowerCase(name.charAt(0)) + name.substring(1);
-      for (Defense defense : Defense.allDefenses) {
-         if(defense.disable.fullName().equals(name)) {
-            return true;
-         }
-      }
-      return false;
+      SymbolTable symbols = model.ttcSymbols();
+      int id = symbols.id(name);
+      return id >= 0 && symbols.isDefense(id);
    }
 
-   private Map<String, Double> readProfile(Properties profile) {
-      Map<String, Double> profileMap = new HashMap<>();
-      for (String name : profile.stringPropertyNames()) {
+   // The local ttc of every profile entry of the language, indexed by its
+   // TtcSymbols id.
+   protected double[] readProfile(Properties profile) {
+      SymbolTable symbols = model.ttcSymbols();
+      double[] ttcs = new double[symbols.size()];
+      for (int id = 0; id < symbols.size(); id++) {
+         String name = symbols.name(id);
          // Local ttc overrides ttcfile
-         if(ttcHashMap.containsKey(name) ) {
-            profileMap.put(name, ttcHashMap.get(name));
-         } else {
-            profileMap.put(name, parseDistribution(profile.getProperty(name), isDefense(name)));
+         if (ttcHashMap.containsKey(name)) {
+            ttcs[id] = ttcHashMap.get(name);
+         }
+         else if (profile.getProperty(name) != null) {
+            ttcs[id] = parseDistribution(profile.getProperty(name), symbols.isDefense(id));
+         }
+         else {
+            System.err.printf("No ttc distribution for: %s\n", name);
+            ttcs[id] = AttackStep.oneSecond;
          }
       }
       ttcHashMap.clear();
-      return profileMap;
+      return ttcs;
+   }
+
+   protected void bindTtcs(double[] ttcs) {
+      for (AttackStep attackStep : model.attackSteps) {
+         attackStep.bindTtc(ttcs);
+      }
    }
 
    public void attack() {
@@ -138,6 +195,10 @@ public class Attacker {
    }
 
    public void attack(String profilePath) {
+      attack(loadProfile(profilePath));
+   }
+
+   protected static Properties loadProfile(String profilePath) {
       Properties profile = new Properties();
       try {
          profile.load(new FileInputStream(profilePath));
@@ -146,33 +207,185 @@ public class Attacker {
          System.err.printf("Could not open profile: %s\n", profilePath);
          System.exit(1);
       }
-      attack(profile);
+      return profile;
+   }
+
+   // The attack points added so far and the disable steps of all disabled
+   // defenses, all reached at time 0. Empties the frontier.
+   protected List<AttackStep> takeEntrySteps() {
+      List<AttackStep> entrySteps = new ArrayList<>(activeAttackSteps);
+      activeAttackSteps.clear();
+      for (Defense defense : model.defenses) {
+         if (!defense.isEnabled()) {
+            entrySteps.add(defense.disable);
+         }
+      }
+      return entrySteps;
+   }
+
+   public List<AttackStep> attack(String profilePath, double horizon) {
+      return attack(loadProfile(profilePath), horizon);
+   }
+
+   /**
+    * Attacks as attack() does, but stops once every step reached within
+    * horizon days is settled, and returns those steps. The other steps are
+    * left unreached, and AttackStep.isPastHorizon() tells them apart from
+    * steps that cannot be reached at all.
+    */
+   public List<AttackStep> attack(Properties profile, double horizon) {
+      this.horizon = horizon;
+      try {
+         attack(profile);
+      }
+      finally {
+         this.horizon = AttackStep.infinity;
+      }
+      List<AttackStep> settled = new ArrayList<>();
+      for (AttackStep attackStep : model.attackSteps) {
+         if (attackStep.ttc <= horizon) {
+            settled.add(attackStep);
+         }
+      }
+      return settled;
    }
 
+   // Attacks from the attack points added since the latest attack, after
+   // forgetting that attack.
    public void attack(Properties profile) {
-      AttackStep.ttcHashMap = readProfile(profile);
+      long start = System.nanoTime();
+      cancelled = false;
+      List<AttackStep> attackPoints = new ArrayList<>(activeAttackSteps);
+      activeAttackSteps.clear();
+      model.resetAttack();
+      for (AttackStep attackPoint : attackPoints) {
+         addAttackPoint(attackPoint);
+      }
+      model.horizon = horizon;
+      statistics = new AttackStatistics(engine, model.attackSteps.size());
+      bindTtcs(readProfile(profile));
+      statistics.profileNanos = System.nanoTime() - start;
+      if (engine == Engine.COMPILED) {
+         attackCompiled();
+      }
+      else {
+         attackObjects();
+      }
+      statistics.totalNanos = System.nanoTime() - start;
+      if (metrics != null) {
+         metrics.attackFinished(statistics);
+      }
+   }
 
-      debugPrint("The model contains " + Integer.toString(Asset.allAssets.size()) + " assets and " + Integer.toString(AttackStep.allAttackSteps.size()) + " attack steps.");
+   protected void attackObjects() {
+      debugPrint("The model contains " + Integer.toString(model.assets.size()) + " assets and " + Integer.toString(model.attackSteps.size()) + " attack steps.");
       AttackStep currentAttackStep = null;
-      debugPrint("AttackStep.allAttackSteps = " + AttackStep.allAttackSteps);
+      debugPrint("AttackStep.allAttackSteps = " + model.attackSteps);
 
-      for (AttackStep attackStep : AttackStep.allAttackSteps) {
-         attackStep.setExpectedParents();
-         debugPrint("The expected parents of " + attackStep.fullName() + " are " + attackStep.expectedParents);
+      long start = System.nanoTime();
+      model.setExpectedParents();
+      statistics.expectedParentsNanos = System.nanoTime() - start;
+      if (verbose) {
+         for (AttackStep attackStep : model.attackSteps) {
+            debugPrint("The expected parents of " + attackStep.fullName() + " are " + attackStep.expectedParents);
+         }
       }
 
-      for (Defense defense : Defense.allDefenses) {
+      for (Defense defense : model.defenses) {
          if (!defense.isEnabled()) {
             addAttackPoint(defense.disable);
          }
       }
 
+      expanded = 0;
+      activeAttackSteps.orRelaxations = 0;
+      activeAttackSteps.andRelaxations = 0;
+      boolean trackFrontier = metrics != null;
+      if (trackFrontier) {
+         statistics.frontierHighWaterMark = activeAttackSteps.size();
+      }
       while (!activeAttackSteps.isEmpty()) {
-         debugPrint("activeAttackSteps = " + activeAttackSteps);
-         currentAttackStep = getShortestActiveStep();
-         debugPrint("Updating children of " + currentAttackStep.fullName());
+         // Printing the frontier is linear in its size, so only build the
+         // message when it is printed.
+         if (verbose) {
+            debugPrint("activeAttackSteps = " + activeAttackSteps);
+         }
+         currentAttackStep = activeAttackSteps.poll();
+         if (currentAttackStep.ttc > horizon) {
+            activeAttackSteps.clear();
+            forgetPastHorizon();
+            break;
+         }
+         expanded++;
+         if (!settled(currentAttackStep, currentAttackStep.ttc, currentAttackStep.predecessor) || currentAttackStep == target) {
+            activeAttackSteps.clear();
+            break;
+         }
+         if (verbose) {
+            debugPrint("Updating children of " + currentAttackStep.fullName());
+         }
          currentAttackStep.updateChildren(activeAttackSteps);
-         activeAttackSteps.remove(currentAttackStep);
+         if (trackFrontier && activeAttackSteps.size() > statistics.frontierHighWaterMark) {
+            statistics.frontierHighWaterMark = activeAttackSteps.size();
+         }
+      }
+      statistics.settled = expanded;
+      statistics.orRelaxations = activeAttackSteps.orRelaxations;
+      statistics.andRelaxations = activeAttackSteps.andRelaxations;
+      debugPrint("Expanded " + expanded + " attack steps.");
+   }
+
+   // Unreaches the steps whose ttc was only an estimate beyond the horizon,
+   // and marks them, and the unreached steps they lead to, as past it.
+   private void forgetPastHorizon() {
+      List<AttackStep> pastHorizon = new ArrayList<>();
+      for (AttackStep attackStep : model.attackSteps) {
+         if (attackStep.ttc > horizon && attackStep.ttc < AttackStep.infinity) {
+            attackStep.ttc = AttackStep.infinity;
+            attackStep.predecessor = null;
+            model.pastHorizon.add(attackStep);
+            pastHorizon.add(attackStep);
+         }
+      }
+      for (int j = 0; j < pastHorizon.size(); j++) {
+         pastHorizon.get(j).forEachChild(child -> {
+            if (child.ttc == AttackStep.infinity && model.pastHorizon.add(child)) {
+               pastHorizon.add(child);
+            }
+         });
+      }
+   }
+
+   protected void attackCompiled() {
+      debugPrint("The model contains " + Integer.toString(model.assets.size()) + " assets and " + Integer.toString(model.attackSteps.size()) + " attack steps.");
+      long start = System.nanoTime();
+      AttackGraph graph = new AttackGraph(model);
+      statistics.expectedParentsNanos = System.nanoTime() - start;
+      debugPrint("The compiled attack graph has " + Integer.toString(graph.children.length) + " edges.");
+      int[] entries = graph.indicesOf(takeEntrySteps());
+      AttackGraph.Search search = graph.newSearch();
+      search.trackPredecessors = true;
+      search.horizon = horizon;
+      search.onSettled = step -> settled(graph.attackSteps[step], search.ttc[step], search.predecessor[step] < 0 ? null : graph.attackSteps[search.predecessor[step]]);
+      int targetIndex = target == null ? -1 : graph.indexOf(target);
+      if (targetIndex >= 0) {
+         search.runTo(entries, entries.length, graph.localTtcs(), targetIndex);
+      }
+      else {
+         search.run(entries, graph.localTtcs());
+      }
+      expanded = search.expanded;
+      record(search);
+      debugPrint("Expanded " + expanded + " attack steps.");
+      graph.writeBack(search);
+   }
+
+   protected void record(AttackGraph.Search search) {
+      statistics.settled = search.expanded;
+      statistics.orRelaxations = search.relaxations - search.andRelaxations;
+      statistics.andRelaxations = search.andRelaxations;
+      if (metrics != null) {
+         statistics.frontierHighWaterMark = search.maxHeapSize;
       }
    }
 
@@ -0,0 +1,219 @@
+package core;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.stream.IntStream;
+
+/**
+ * Evaluates many defense configurations of one model at once. A
+ * configuration is a BitSet over defenses(), where a set bit enables the
+ * defense. All configurations share one read-only AttackGraph and are spread
+ * over the cores, each worker searching with its own ttc state and local
+ * ttcs, so the attack step and defense objects are left as they are, apart
+ * from finding the expected parents of the steps if the associations changed
+ * since they were last found.
+ */
+public class BatchAttacker extends Attacker {
+
+   private List<Defense> defenses;
+
+   public BatchAttacker() {
+      super();
+   }
+
+   public BatchAttacker(boolean verbose) {
+      super(verbose);
+   }
+
+   public BatchAttacker(Model model) {
+      super(model);
+   }
+
+   // The defenses of the model in bit order, sorted by defenseName(), and
+   // defenses of the same name in the order they were registered, so that
+   // the order is the same whenever the model is built the same way.
+   public List<Defense> defenses() {
+      if (defenses == null) {
+         defenses = new ArrayList<>(model.defenses);
+         defenses.sort(defenseOrder(model));
+      }
+      return defenses;
+   }
+
+   // The order of defenses().
+   static Comparator<Defense> defenseOrder(Model model) {
+      Map<AttackStep, Integer> registered = new HashMap<>();
+      for (int i = 0; i < model.attackSteps.size(); i++) {
+         registered.put(model.attackSteps.get(i), i);
+      }
+      return Comparator.comparing(BatchAttacker::defenseName).thenComparing(defense -> registered.getOrDefault(defense.disable, -1));
+   }
+
+   // E.g. "Product0.unprivilegedConfidentialityExploitNotPublicallyAvailable".
+   public static String defenseName(Defense defense) {
+      String disableName = defense.disable.fullName();
+      return defense.assetName + disableName.substring(disableName.indexOf('.'));
+   }
+
+   public double[][] evaluate(String profilePath, List<BitSet> configurations, List<AttackStep> targets) {
+      return evaluate(loadProfile(profilePath), configurations, targets);
+   }
+
+   /**
+    * Attacks from the attack points added so far under every configuration
+    * and returns the ttcs of the targets, one row per configuration.
+    * Defenses given by existence requirements do not depend on their bit.
+    */
+   public double[][] evaluate(Properties profile, List<BitSet> configurations, List<AttackStep> targets) {
+      AttackGraph graph = new AttackGraph(model);
+      double[] localTtc = graph.localTtcs(readProfile(profile));
+
+      List<AttackStep> fixedEntrySteps = new ArrayList<>(activeAttackSteps);
+      activeAttackSteps.clear();
+      List<Defense> defenses = defenses();
+      int[] disables = new int[defenses.size()];
+      for (int d = 0; d < defenses.size(); d++) {
+         Defense defense = defenses.get(d);
+         disables[d] = -1;
+         if (defense.isConfigurable()) {
+            disables[d] = graph.indexOf(defense.disable);
+         }
+         else if (!defense.isEnabled()) {
+            fixedEntrySteps.add(defense.disable);
+         }
+      }
+      int[] fixedEntries = graph.indicesOf(fixedEntrySteps);
+      int[] targetIndices = new int[targets.size()];
+      for (int t = 0; t < targets.size(); t++) {
+         targetIndices[t] = graph.indexOf(targets.get(t));
+      }
+
+      double[][] results = new double[configurations.size()][];
+      IntStream.range(0, configurations.size()).parallel().collect(() -> new Worker(graph, fixedEntries, disables.length), (worker, i) -> {
+         double[] ttc = worker.run(configurations.get(i), disables, localTtc);
+         results[i] = new double[targetIndices.length];
+         for (int t = 0; t < targetIndices.length; t++) {
+            results[i][t] = targetIndices[t] < 0 ? AttackStep.infinity : ttc[targetIndices[t]];
+         }
+      }, (first, second) -> {
+      });
+      return results;
+   }
+
+   private static class Worker {
+      AttackGraph.Search search;
+      int[]              entries;
+      int                nFixed;
+
+      Worker(AttackGraph graph, int[] fixedEntries, int nDefenses) {
+         search = graph.newSearch();
+         nFixed = fixedEntries.length;
+         entries = new int[nFixed + nDefenses];
+         System.arraycopy(fixedEntries, 0, entries, 0, nFixed);
+      }
+
+      double[] run(BitSet configuration, int[] disables, double[] localTtc) {
+         int nEntries = nFixed;
+         for (int d = 0; d < disables.length; d++) {
+            if (disables[d] >= 0 && !configuration.get(d)) {
+               entries[nEntries++] = disables[d];
+            }
+         }
+         return search.run(entries, nEntries, localTtc);
+      }
+   }
+
+   /**
+    * Parses one configuration per line, as a string of 0s and 1s in the
+    * order of defenses(). Blank lines and lines starting with # are skipped.
+    */
+   public static List<BitSet> readConfigurations(String path) throws IOException {
+      List<BitSet> configurations = new ArrayList<>();
+      for (String line : Files.readAllLines(Paths.get(path))) {
+         line = line.trim();
+         if (line.isEmpty() || line.startsWith("#")) {
+            continue;
+         }
+         BitSet configuration = new BitSet(line.length());
+         for (int d = 0; d < line.length(); d++) {
+            if (line.charAt(d) == '1') {
+               configuration.set(d);
+            }
+            else if (line.charAt(d) != '0') {
+               throw new IllegalArgumentException("Configurations are strings of 0s and 1s, got: " + line);
+            }
+         }
+         configurations.add(configuration);
+      }
+      return configurations;
+   }
+
+   private static AttackStep findAttackStep(Model model, String fullName) {
+      for (AttackStep attackStep : model.attackSteps) {
+         if (attackStep.fullName().equals(fullName)) {
+            return attackStep;
+         }
+      }
+      System.err.printf("No attack step called %s\n", fullName);
+      System.exit(1);
+      return null;
+   }
+
+   /**
+    * Usage: BatchAttacker modelClass profile configurations [-a attackPoint]...
+    * target...
+    * <p>
+    * modelClass is instantiated with its no-argument constructor to build the
+    * model, attack steps are given by their full names, e.g.
+    * "Machine0.compromise". Prints the defense order as a comment, then one
+    * comma separated row of target ttcs per configuration.
+    */
+   public static void main(String[] args) throws Exception {
+      if (args.length < 4) {
+         System.err.println("usage: BatchAttacker <model class> <profile> <configurations> [-a <attack point>]... <target>...");
+         System.exit(1);
+      }
+      Model model = new Model();
+      Class<?> modelClass = Class.forName(args[0]);
+      model.run(() -> {
+         try {
+            modelClass.getConstructor().newInstance();
+         }
+         catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not build the model with " + args[0], e);
+         }
+      });
+      BatchAttacker attacker = new BatchAttacker(model);
+      List<AttackStep> targets = new ArrayList<>();
+      for (int i = 3; i < args.length; i++) {
+         if (args[i].equals("-a") && i + 1 < args.length) {
+            attacker.addAttackPoint(findAttackStep(model, args[++i]));
+         }
+         else {
+            targets.add(findAttackStep(model, args[i]));
+         }
+      }
+      List<String> defenseNames = new ArrayList<>();
+      for (Defense defense : attacker.defenses()) {
+         defenseNames.add(defenseName(defense));
+      }
+      System.out.println("# " + String.join(",", defenseNames));
+      double[][] results = attacker.evaluate(args[1], readConfigurations(args[2]), targets);
+      for (double[] row : results) {
+         StringBuilder line = new StringBuilder();
+         for (int t = 0; t < row.length; t++) {
+            line.append(t == 0 ? "" : ",").append(row[t]);
+         }
+         System.out.println(line);
+      }
+   }
+
+}
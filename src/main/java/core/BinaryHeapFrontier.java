@@ -0,0 +1,140 @@
+package core;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Indexed binary min-heap keyed on ttc. The position of every step is kept in
+ * a map so that a lowered ttc is handled by sifting the step up in place
+ * rather than inserting it twice.
+ */
+public class BinaryHeapFrontier extends Frontier {
+
+   private AttackStep[]             heap  = new AttackStep[16];
+   private double[]                 keys  = new double[16];
+   private int                      size  = 0;
+   private Map<AttackStep, Integer> index = new HashMap<>();
+
+   @Override
+   public boolean add(AttackStep attackStep) {
+      Integer i = index.get(attackStep);
+      if (i != null) {
+         if (attackStep.ttc < keys[i]) {
+            keys[i] = attackStep.ttc;
+            siftUp(i);
+         }
+         return false;
+      }
+      if (size == heap.length) {
+         heap = Arrays.copyOf(heap, size * 2);
+         keys = Arrays.copyOf(keys, size * 2);
+      }
+      heap[size] = attackStep;
+      keys[size] = attackStep.ttc;
+      index.put(attackStep, size);
+      siftUp(size++);
+      return true;
+   }
+
+   @Override
+   public AttackStep poll() {
+      if (size == 0) {
+         return null;
+      }
+      AttackStep min = heap[0];
+      removeAt(0);
+      return min;
+   }
+
+   @Override
+   public boolean remove(Object o) {
+      Integer i = index.get(o);
+      if (i == null) {
+         return false;
+      }
+      removeAt(i);
+      return true;
+   }
+
+   private void removeAt(int i) {
+      index.remove(heap[i]);
+      size--;
+      if (i != size) {
+         move(size, i);
+         heap[size] = null;
+         siftDown(i);
+         siftUp(i);
+      }
+      else {
+         heap[size] = null;
+      }
+   }
+
+   private void siftUp(int i) {
+      AttackStep attackStep = heap[i];
+      double key = keys[i];
+      while (i > 0) {
+         int parent = (i - 1) >>> 1;
+         if (keys[parent] <= key) {
+            break;
+         }
+         move(parent, i);
+         i = parent;
+      }
+      place(attackStep, key, i);
+   }
+
+   private void siftDown(int i) {
+      AttackStep attackStep = heap[i];
+      double key = keys[i];
+      int half = size >>> 1;
+      while (i < half) {
+         int child = 2 * i + 1;
+         if (child + 1 < size && keys[child + 1] < keys[child]) {
+            child++;
+         }
+         if (key <= keys[child]) {
+            break;
+         }
+         move(child, i);
+         i = child;
+      }
+      place(attackStep, key, i);
+   }
+
+   private void move(int from, int to) {
+      place(heap[from], keys[from], to);
+   }
+
+   private void place(AttackStep attackStep, double key, int i) {
+      heap[i] = attackStep;
+      keys[i] = key;
+      index.put(attackStep, i);
+   }
+
+   @Override
+   public boolean contains(Object o) {
+      return index.containsKey(o);
+   }
+
+   @Override
+   public Iterator<AttackStep> iterator() {
+      return Collections.unmodifiableList(Arrays.asList(heap).subList(0, size)).iterator();
+   }
+
+   @Override
+   public int size() {
+      return size;
+   }
+
+   @Override
+   public void clear() {
+      Arrays.fill(heap, 0, size, null);
+      index.clear();
+      size = 0;
+   }
+
+}
@@ -9,11 +9,12 @@ public class Component {
    public List<Component>        subComponents = new ArrayList<>();
    public List<Asset>            assets        = new ArrayList<>();
    public String                 name          = "Anonymous";
-   public static List<Component> allComponents = new ArrayList<>();
+   // The components of the default model, see Model.
+   public static List<Component> allComponents = Model.getDefault().components;
 
    public Component(String name) {
       this.name = name;
-      allComponents.add(this);
+      Model.current().components.add(this);
    }
 
    public Component() {
@@ -25,7 +26,7 @@ public class Component {
       try {
          Class<?> cls = Class.forName("oldComponentsOnlyGoodForExistingTestCases." + className);
          
-         for (Component component : Component.allComponents) {
+         for (Component component : Model.current().components) {
             if (cls.isAssignableFrom(component.getClass())) {
                allComponentsOfClass.add(component);
             }
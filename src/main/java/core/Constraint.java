@@ -0,0 +1,235 @@
+package core;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * A rule the assets of one type must satisfy, checked by ConstraintChecker.
+ * Types are the simple names of the asset classes. The role fields and the
+ * class hierarchy of each asset class are looked up once, the first time an
+ * asset of that class is checked. A violation fails the check only when the
+ * checker enforces constraints, unless the constraint is enforced(), see
+ * ConstraintChecker.
+ */
+public abstract class Constraint {
+
+   // The simple names of an asset class and its superclasses up to Asset.
+   static final ClassValue<Set<String>> typeNames = new ClassValue<Set<String>>() {
+      @Override
+      protected Set<String> computeValue(Class<?> type) {
+         Set<String> names = new HashSet<>();
+         for (Class<?> c = type; c != null && Asset.class.isAssignableFrom(c) && c != Asset.class; c = c.getSuperclass()) {
+            names.add(c.getSimpleName());
+         }
+         return Collections.unmodifiableSet(names);
+      }
+   };
+
+   final String  assetType;
+   // Whether the subclasses of assetType must satisfy it too.
+   final boolean inherited;
+
+   Constraint(String assetType, boolean inherited) {
+      this.assetType = assetType;
+      this.inherited = inherited;
+   }
+
+   // The violation of asset, or null.
+   abstract String check(Asset asset);
+
+   // Whether a violation fails the check even when the checker does not
+   // enforce constraints.
+   boolean isEnforced() {
+      return false;
+   }
+
+   // This constraint, failing the check whether the checker enforces
+   // constraints or not.
+   public Constraint enforced() {
+      return new Enforced(this);
+   }
+
+   /**
+    * Every assetType (not its subclasses) must have a role association, and
+    * only to assets of one of targetTypes or their subclasses.
+    */
+   public static Constraint requireCounterpart(String assetType, String role, String... targetTypes) {
+      return new Counterpart(assetType, new Role(role), new HashSet<>(Arrays.asList(targetTypes)));
+   }
+
+   // No assetType (not its subclasses) may have a role association.
+   public static Constraint prohibit(String assetType, String role) {
+      return new Prohibition(assetType, new Role(role));
+   }
+
+   /**
+    * Every assetType, or subclass, with an association through one of the
+    * roles of the first step of path must be among the assets reached by
+    * following all of path, one step of alternative roles at a time.
+    */
+   @SafeVarargs
+   public static Constraint requireCycle(String assetType, Set<String>... path) {
+      Role[][] steps = new Role[path.length][];
+      for (int i = 0; i < path.length; i++) {
+         steps[i] = path[i].stream().sorted().map(Role::new).toArray(Role[]::new);
+      }
+      return new Cycle(assetType, steps);
+   }
+
+   // A role field of whatever asset class, found once per class.
+   static class Role extends ClassValue<Field> {
+      final String name;
+
+      Role(String name) {
+         this.name = name;
+      }
+
+      @Override
+      protected Field computeValue(Class<?> type) {
+         try {
+            Field field = type.getField(name);
+            return Asset.class.isAssignableFrom(field.getType()) || Set.class.isAssignableFrom(field.getType()) ? field : null;
+         }
+         catch (NoSuchFieldException e) {
+            return null;
+         }
+      }
+
+      // Roles the class of asset does not have are empty.
+      void forEach(Asset asset, Consumer<Asset> action) {
+         Field field = get(asset.getClass());
+         if (field == null) {
+            return;
+         }
+         Object value;
+         try {
+            value = field.get(asset);
+         }
+         catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+         }
+         if (value instanceof Set) {
+            for (Object target : (Set<?>) value) {
+               action.accept((Asset) target);
+            }
+         }
+         else if (value != null) {
+            action.accept((Asset) value);
+         }
+      }
+
+      boolean isEmpty(Asset asset) {
+         boolean[] empty = { true };
+         forEach(asset, target -> empty[0] = false);
+         return empty[0];
+      }
+
+      @Override
+      public String toString() {
+         return name;
+      }
+   }
+
+   private static class Enforced extends Constraint {
+      final Constraint constraint;
+
+      Enforced(Constraint constraint) {
+         super(constraint.assetType, constraint.inherited);
+         this.constraint = constraint;
+      }
+
+      @Override
+      String check(Asset asset) {
+         return constraint.check(asset);
+      }
+
+      @Override
+      boolean isEnforced() {
+         return true;
+      }
+   }
+
+   private static class Counterpart extends Constraint {
+      final Role        role;
+      final Set<String> targetTypes;
+
+      Counterpart(String assetType, Role role, Set<String> targetTypes) {
+         super(assetType, false);
+         this.role = role;
+         this.targetTypes = targetTypes;
+      }
+
+      @Override
+      String check(Asset asset) {
+         List<Asset> targets = new ArrayList<>(1);
+         role.forEach(asset, targets::add);
+         if (targets.isEmpty()) {
+            return "Constraint violation: " + asset + " required a " + role + " among " + targetTypes + " but found none.";
+         }
+         for (Asset target : targets) {
+            if (Collections.disjoint(typeNames.get(target.getClass()), targetTypes)) {
+               return "Constraint violation: " + asset + " required a " + role + " among " + targetTypes + " but found " + target + ".";
+            }
+         }
+         return null;
+      }
+   }
+
+   private static class Prohibition extends Constraint {
+      final Role role;
+
+      Prohibition(String assetType, Role role) {
+         super(assetType, false);
+         this.role = role;
+      }
+
+      @Override
+      String check(Asset asset) {
+         if (!role.isEmpty(asset)) {
+            return "Constraint violation: " + assetType + " is not allowed a " + role + " association, but " + asset + " has one.";
+         }
+         return null;
+      }
+   }
+
+   private static class Cycle extends Constraint {
+      final Role[][] path;
+
+      Cycle(String assetType, Role[][] path) {
+         super(assetType, true);
+         this.path = path;
+      }
+
+      @Override
+      String check(Asset asset) {
+         Set<Asset> reached = Collections.singleton(asset);
+         for (Role[] step : path) {
+            Set<Asset> next = new HashSet<>();
+            for (Asset source : reached) {
+               for (Role role : step) {
+                  role.forEach(source, next::add);
+               }
+            }
+            if (step == path[0] && next.isEmpty()) {
+               return null;
+            }
+            reached = next;
+         }
+         if (reached.contains(asset)) {
+            return null;
+         }
+         StringBuilder message = new StringBuilder("Constraint violation: ").append(asset);
+         for (Role[] step : path) {
+            message.append('.').append(step.length == 1 ? step[0].toString() : Arrays.toString(step));
+         }
+         return message.append(" should contain ").append(asset).append(", thus creating a cycle.").toString();
+      }
+   }
+
+}
@@ -1,64 +1,119 @@
 package core;
 
+import static org.junit.Assert.assertTrue;
+
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+/**
+ * Checks every asset of a model against the constraints of its language,
+ * in parallel, and collects all violations. The constraints that apply to
+ * each asset class are found once per class.
+ */
 public class ConstraintChecker {
 
-   public ConstraintChecker(Boolean enforce) {
-      for (Asset asset : Asset.allAssets) {
-
-         Set<String> conditionalRoles = new HashSet<>();
-         Set<String> secondRoles = new HashSet<>();
-         Set<String> thirdRoles = new HashSet<>();
+   // The constraints of securiLang. The Account cycle is always enforced.
+   public static final List<Constraint> securiLang = Collections.unmodifiableList(Arrays.asList(
+         Constraint.requireCycle("Software", roles("executor"), roles("rootAccount"), roles("assignedSoftwares")),
+         Constraint.requireCycle("Account", roles("readData"), roles("machines"), roles("rootAccounts", "userAccounts")).enforced(),
+         Constraint.requireCounterpart("OperatingSystem", "executor", "PhysicalMachine", "VirtualMachine"),
+         Constraint.requireCounterpart("HypervisorTypeI", "executor", "PhysicalMachine"),
+         Constraint.prohibit("Wifi", "trafficRouters"),
+         Constraint.prohibit("WifiRouter", "trafficNetworks"),
+         Constraint.requireCounterpart("VirtualMachine", "executor", "HypervisorTypeI", "HypervisorTypeII"),
+         Constraint.requireCounterpart("Application", "executor", "OperatingSystem", "Container"),
+         Constraint.requireCounterpart("WebApplicationClient", "executor", "Browser"),
+         Constraint.requireCounterpart("WebApplicationService", "executor", "WebServer")));
 
-         List<String> navigationPath = new ArrayList<>();
-         conditionalRoles.add("executor");
-         navigationPath.add("rootAccount");
-         navigationPath.add("assignedSoftwares");
-         asset.cycleRequirement("Software", conditionalRoles, navigationPath, enforce);
-
-         conditionalRoles.clear();
-         secondRoles.clear();
-         thirdRoles.clear();
-         conditionalRoles.add("readData");
-         secondRoles.add("machines");
-         thirdRoles.add("rootAccounts");
-         thirdRoles.add("userAccounts");
-         asset.cycleRequirement("Account", conditionalRoles, secondRoles, thirdRoles, true);
+   private static Set<String> roles(String... names) {
+      return new HashSet<>(Arrays.asList(names));
+   }
 
-         Set<String> requiredTargetAssets = new HashSet<>();
-         requiredTargetAssets.add("PhysicalMachine");
-         requiredTargetAssets.add("VirtualMachine");
-         asset.counterPartTypeRequirement("OperatingSystem", "executor", requiredTargetAssets, enforce);
+   private final Map<String, List<Constraint>> constraintsByType = new HashMap<>();
+   private final ClassValue<Constraint[]>      constraintsByClass;
+   private final List<String>                  violations;
 
-         requiredTargetAssets.clear();
-         requiredTargetAssets.add("PhysicalMachine");
-         asset.counterPartTypeRequirement("HypervisorTypeI", "executor", requiredTargetAssets, enforce);
+   public ConstraintChecker(Boolean enforce) {
+      this(Model.current(), enforce);
+   }
 
-         asset.prohibitAssociation("Wifi", "trafficRouters", enforce);
-         asset.prohibitAssociation("WifiRouter", "trafficNetworks", enforce);
+   public ConstraintChecker(Model model, Boolean enforce) {
+      this(model, securiLang, enforce);
+   }
 
-         requiredTargetAssets.clear();
-         requiredTargetAssets.add("HypervisorTypeI");
-         requiredTargetAssets.add("HypervisorTypeII");
-         asset.counterPartTypeRequirement("VirtualMachine", "executor", requiredTargetAssets, enforce);
+   /**
+    * Checks the assets of model against constraints. If enforce, fails with
+    * all violations, otherwise prints them, and fails with the violations of
+    * the enforced constraints if there are any, see Constraint.enforced().
+    */
+   public ConstraintChecker(Model model, List<Constraint> constraints, Boolean enforce) {
+      for (Constraint constraint : constraints) {
+         constraintsByType.computeIfAbsent(constraint.assetType, type -> new ArrayList<>()).add(constraint);
+      }
+      constraintsByClass = new ClassValue<Constraint[]>() {
+         @Override
+         protected Constraint[] computeValue(Class<?> type) {
+            List<Constraint> found = new ArrayList<>();
+            for (Class<?> c = type; c != null && c != Asset.class; c = c.getSuperclass()) {
+               for (Constraint constraint : constraintsByType.getOrDefault(c.getSimpleName(), Collections.emptyList())) {
+                  if (c == type || constraint.inherited) {
+                     found.add(constraint);
+                  }
+               }
+            }
+            return found.toArray(new Constraint[0]);
+         }
+      };
+      List<Violation> found = model.assets.parallelStream().flatMap(this::check).collect(Collectors.toList());
+      violations = Collections.unmodifiableList(found.stream().map(violation -> violation.message).collect(Collectors.toList()));
+      List<String> enforcedViolations = found.stream().filter(violation -> violation.enforced).map(violation -> violation.message).collect(Collectors.toList());
+      if (enforce && !violations.isEmpty()) {
+         assertTrue(String.join("\n", violations), false);
+      }
+      for (String violation : violations) {
+         System.out.println(violation);
+      }
+      if (!enforcedViolations.isEmpty()) {
+         assertTrue(String.join("\n", enforcedViolations), false);
+      }
+   }
 
-         requiredTargetAssets.clear();
-         requiredTargetAssets.add("OperatingSystem");
-         requiredTargetAssets.add("Container");
-         asset.counterPartTypeRequirement("Application", "executor", requiredTargetAssets, enforce);
+   private static class Violation {
+      final String  message;
+      final boolean enforced;
 
-         requiredTargetAssets.clear();
-         requiredTargetAssets.add("Browser");
-         asset.counterPartTypeRequirement("WebApplicationClient", "executor", requiredTargetAssets, enforce);
+      Violation(String message, boolean enforced) {
+         this.message = message;
+         this.enforced = enforced;
+      }
+   }
 
-         requiredTargetAssets.clear();
-         requiredTargetAssets.add("WebServer");
-         asset.counterPartTypeRequirement("WebApplicationService", "executor", requiredTargetAssets, enforce);
+   private Stream<Violation> check(Asset asset) {
+      Constraint[] constraints = constraintsByClass.get(asset.getClass());
+      if (constraints.length == 0) {
+         return Stream.empty();
+      }
+      List<Violation> found = new ArrayList<>(0);
+      for (Constraint constraint : constraints) {
+         String violation = constraint.check(asset);
+         if (violation != null) {
+            found.add(new Violation(violation, constraint.isEnforced()));
+         }
       }
+      return found.stream();
+   }
+
+   // Every violation found, in the order of the assets.
+   public List<String> violations() {
+      return violations;
    }
 
-}
\ No newline at end of file
+}
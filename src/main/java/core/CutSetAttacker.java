@@ -0,0 +1,424 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Finds a smallest set of defenses to enable so that a target step can no
+ * longer be reached from the attack points. Only defenses that are disabled
+ * and follow their defaultValue are candidates; the disable steps of the
+ * candidates are the cuttable entry steps of the attack.
+ * <p>
+ * Where no AND step takes part, this is a minimum cut between the entry steps
+ * and the target, computed exactly with a max-flow. With AND steps the
+ * problem is NP-hard, so the cut of two relaxations is taken instead, one
+ * treating AND steps as OR steps and one keeping a single parent per AND
+ * step, and pruned of defenses the attack does not need. Either cut is
+ * always valid, but it may not be the smallest, which wasExact() reports.
+ * The search runs on an AttackGraph of its own, so the attack steps and
+ * defenses are left as they are.
+ */
+public class CutSetAttacker extends Attacker {
+
+   private static final int INF = Integer.MAX_VALUE / 2;
+
+   private boolean          exact;
+
+   public CutSetAttacker() {
+      super();
+   }
+
+   public CutSetAttacker(boolean verbose) {
+      super(verbose);
+   }
+
+   public CutSetAttacker(Model model) {
+      super(model);
+   }
+
+   // Whether the latest cut set is known to be a smallest one.
+   public boolean wasExact() {
+      return exact;
+   }
+
+   public List<Defense> minimalCutSet(String profilePath, AttackStep target) {
+      return minimalCutSet(loadProfile(profilePath), target);
+   }
+
+   /**
+    * The defenses to enable to keep the attack points added so far from
+    * reaching target, empty if target is not reached anyway, or null if no
+    * set of defenses can stop the attack.
+    */
+   public List<Defense> minimalCutSet(Properties profile, AttackStep target) {
+      AttackGraph graph = new AttackGraph(model);
+      double[] localTtc = graph.localTtcs(readProfile(profile));
+      int t = graph.indexOf(target);
+      exact = true;
+
+      List<AttackStep> fixedSteps = new ArrayList<>(activeAttackSteps);
+      activeAttackSteps.clear();
+      List<Defense> candidates = new ArrayList<>();
+      for (Defense defense : model.defenses) {
+         if (defense.isEnabled()) {
+            continue;
+         }
+         if (defense.isConfigurable() && graph.indexOf(defense.disable) >= 0) {
+            candidates.add(defense);
+         }
+         else {
+            fixedSteps.add(defense.disable);
+         }
+      }
+      candidates.sort(BatchAttacker.defenseOrder(model));
+      int[] fixed = graph.indicesOf(fixedSteps);
+      int[] disables = new int[candidates.size()];
+      for (int d = 0; d < disables.length; d++) {
+         disables[d] = graph.indexOf(candidates.get(d).disable);
+      }
+
+      Reachability reachability = new Reachability(graph, localTtc, fixed, disables, t);
+      if (t < 0 || !reachability.reaches(new boolean[disables.length])) {
+         return new ArrayList<>();
+      }
+      boolean[] all = new boolean[disables.length];
+      Arrays.fill(all, true);
+      if (reachability.reaches(all)) {
+         return null;
+      }
+
+      boolean[] relevant = ancestors(graph, localTtc, t, fixed);
+      boolean hasAnd = false;
+      for (int i = 0; i < graph.size(); i++) {
+         hasAnd |= relevant[i] && waits(graph, i);
+      }
+      boolean[] cut = minCut(graph, localTtc, relevant, fixed, disables, t, null);
+      if (!hasAnd && cut != null) {
+         return defenses(candidates, cut);
+      }
+
+      exact = false;
+      boolean[] best = cut == null ? null : reachability.prune(cut);
+      boolean[] reduced = minCut(graph, localTtc, relevant, fixed, disables, t, chooseParents(graph, relevant, reachability.ttcFromFixed()));
+      if (reduced != null) {
+         reduced = reachability.prune(reduced);
+         if (best == null || count(reduced) < count(best)) {
+            best = reduced;
+         }
+      }
+      if (best == null) {
+         best = reachability.prune(all);
+      }
+      debugCut(best);
+      return defenses(candidates, best);
+   }
+
+   private void debugCut(boolean[] cut) {
+      if (verbose) {
+         System.out.print("Cut set of " + count(cut) + " defenses, exact: " + exact + "\n");
+      }
+   }
+
+   private static List<Defense> defenses(List<Defense> candidates, boolean[] cut) {
+      List<Defense> defenses = new ArrayList<>();
+      for (int d = 0; d < cut.length; d++) {
+         if (cut[d]) {
+            defenses.add(candidates.get(d));
+         }
+      }
+      return defenses;
+   }
+
+   private static int count(boolean[] cut) {
+      int n = 0;
+      for (boolean b : cut) {
+         n += b ? 1 : 0;
+      }
+      return n;
+   }
+
+   // AND steps that wait for their expected parents.
+   private static boolean waits(AttackGraph graph, int step) {
+      return graph.and[step] && graph.parentCounts[step] > 0;
+   }
+
+   // Whether step can ever be reached over the edge k into it.
+   private static boolean usable(AttackGraph graph, double[] localTtc, int step, int k) {
+      return localTtc[step] < AttackStep.infinity && (!waits(graph, step) || graph.counts[k]);
+   }
+
+   // The steps that can reach target, up to the fixed entry steps.
+   private static boolean[] ancestors(AttackGraph graph, double[] localTtc, int target, int[] fixed) {
+      boolean[] entry = new boolean[graph.size()];
+      for (int i : fixed) {
+         entry[i] = true;
+      }
+      boolean[] relevant = new boolean[graph.size()];
+      int[] queue = new int[graph.size()];
+      int size = 0;
+      relevant[target] = true;
+      queue[size++] = target;
+      for (int j = 0; j < size; j++) {
+         int child = queue[j];
+         if (entry[child]) {
+            continue;
+         }
+         for (int k = graph.parentOffsets[child]; k < graph.parentOffsets[child + 1]; k++) {
+            int parent = graph.parents[k];
+            if (!relevant[parent] && usable(graph, localTtc, child, graph.parentEdges[k])) {
+               relevant[parent] = true;
+               queue[size++] = parent;
+            }
+         }
+      }
+      return relevant;
+   }
+
+   /**
+    * For every AND step, the one parent it keeps in the reduced relaxation:
+    * preferably one the fixed entry steps cannot reach on their own,
+    * otherwise the one they reach last.
+    */
+   private static int[] chooseParents(AttackGraph graph, boolean[] relevant, double[] ttcFromFixed) {
+      int[] chosen = new int[graph.size()];
+      Arrays.fill(chosen, -1);
+      for (int step = 0; step < graph.size(); step++) {
+         if (!relevant[step] || !waits(graph, step)) {
+            continue;
+         }
+         for (int k = graph.parentOffsets[step]; k < graph.parentOffsets[step + 1]; k++) {
+            int parent = graph.parents[k];
+            if (!graph.counts[graph.parentEdges[k]] || !relevant[parent]) {
+               continue;
+            }
+            if (chosen[step] < 0 || ttcFromFixed[parent] > ttcFromFixed[chosen[step]]) {
+               chosen[step] = parent;
+            }
+         }
+      }
+      return chosen;
+   }
+
+   /**
+    * A minimum cut between the entry steps and target over the relevant
+    * steps, where only the edges from the source to the candidate disable
+    * steps can be cut. AND steps act as OR steps over the parents they wait
+    * for, or, given chosen, over their chosen parent only. Null if the fixed
+    * entry steps reach target in this relaxation.
+    */
+   private static boolean[] minCut(AttackGraph graph, double[] localTtc, boolean[] relevant, int[] fixed, int[] disables, int target, int[] chosen) {
+      int n = graph.size();
+      FlowNetwork network = new FlowNetwork(n + 1);
+      int source = n;
+      for (int i : fixed) {
+         if (relevant[i]) {
+            network.addEdge(source, i, INF);
+         }
+      }
+      int[] sourceEdges = new int[disables.length];
+      for (int d = 0; d < disables.length; d++) {
+         sourceEdges[d] = relevant[disables[d]] ? network.addEdge(source, disables[d], 1) : -1;
+      }
+      for (int parent = 0; parent < n; parent++) {
+         if (!relevant[parent]) {
+            continue;
+         }
+         for (int k = graph.childOffsets[parent]; k < graph.childOffsets[parent + 1]; k++) {
+            int child = graph.children[k];
+            if (!relevant[child] || !usable(graph, localTtc, child, k)) {
+               continue;
+            }
+            if (chosen != null && chosen[child] >= 0 && chosen[child] != parent) {
+               continue;
+            }
+            network.addEdge(parent, child, INF);
+         }
+      }
+      if (network.maxFlow(source, target) >= INF) {
+         return null;
+      }
+      boolean[] sourceSide = network.reachableInResidual(source);
+      boolean[] cut = new boolean[disables.length];
+      for (int d = 0; d < disables.length; d++) {
+         cut[d] = sourceEdges[d] >= 0 && !sourceSide[disables[d]];
+      }
+      return cut;
+   }
+
+   /**
+    * Checks cut sets against the real attack semantics with an early
+    * terminating search towards the target.
+    */
+   private static class Reachability {
+      AttackGraph        graph;
+      AttackGraph.Search search;
+      double[]           localTtc;
+      int[]              fixed;
+      int[]              disables;
+      int                target;
+      int[]              entries;
+
+      Reachability(AttackGraph graph, double[] localTtc, int[] fixed, int[] disables, int target) {
+         this.graph = graph;
+         this.search = graph.newSearch();
+         this.localTtc = localTtc;
+         this.fixed = fixed;
+         this.disables = disables;
+         this.target = target;
+         entries = Arrays.copyOf(fixed, fixed.length + disables.length);
+      }
+
+      // Whether target is reached with the defenses in cut enabled.
+      boolean reaches(boolean[] cut) {
+         int n = fixed.length;
+         for (int d = 0; d < disables.length; d++) {
+            if (!cut[d]) {
+               entries[n++] = disables[d];
+            }
+         }
+         return search.runTo(entries, n, localTtc, target) < AttackStep.infinity;
+      }
+
+      double[] ttcFromFixed() {
+         return search.run(fixed, localTtc).clone();
+      }
+
+      // Drops the defenses of cut that target stays unreached without.
+      boolean[] prune(boolean[] cut) {
+         boolean[] pruned = cut.clone();
+         for (int d = 0; d < pruned.length; d++) {
+            if (pruned[d]) {
+               pruned[d] = false;
+               if (reaches(pruned)) {
+                  pruned[d] = true;
+               }
+            }
+         }
+         return pruned;
+      }
+   }
+
+   /**
+    * Dinic's max-flow over int capacities, with iterative augmenting so that
+    * long attack paths do not overflow the stack.
+    */
+   private static class FlowNetwork {
+      int   n;
+      int[] head;
+      int[] next = new int[16];
+      int[] to   = new int[16];
+      int[] cap  = new int[16];
+      int   m;
+      int[] level;
+      int[] current;
+
+      FlowNetwork(int n) {
+         this.n = n;
+         head = new int[n];
+         Arrays.fill(head, -1);
+         level = new int[n];
+         current = new int[n];
+      }
+
+      // Adds the edge and its residual, returns the index of the edge.
+      int addEdge(int from, int target, int capacity) {
+         if (m + 2 > to.length) {
+            next = Arrays.copyOf(next, 2 * to.length);
+            cap = Arrays.copyOf(cap, 2 * to.length);
+            to = Arrays.copyOf(to, 2 * to.length);
+         }
+         to[m] = target;
+         cap[m] = capacity;
+         next[m] = head[from];
+         head[from] = m++;
+         to[m] = from;
+         cap[m] = 0;
+         next[m] = head[target];
+         head[target] = m++;
+         return m - 2;
+      }
+
+      // Stops once the flow reaches INF, i.e. when no finite cut exists.
+      long maxFlow(int source, int sink) {
+         long flow = 0;
+         int[] path = new int[n];
+         while (flow < INF && levels(source, sink)) {
+            System.arraycopy(head, 0, current, 0, n);
+            int depth = 0;
+            int u = source;
+            while (true) {
+               if (u == sink) {
+                  int bottleneck = INF;
+                  for (int i = 0; i < depth; i++) {
+                     bottleneck = Math.min(bottleneck, cap[path[i]]);
+                  }
+                  int retreat = depth;
+                  for (int i = depth - 1; i >= 0; i--) {
+                     cap[path[i]] -= bottleneck;
+                     cap[path[i] ^ 1] += bottleneck;
+                     if (cap[path[i]] == 0) {
+                        retreat = i;
+                     }
+                  }
+                  flow += bottleneck;
+                  if (flow >= INF) {
+                     return flow;
+                  }
+                  depth = retreat;
+                  u = depth == 0 ? source : to[path[depth - 1]];
+                  continue;
+               }
+               int e = current[u];
+               while (e >= 0 && (cap[e] == 0 || level[to[e]] != level[u] + 1)) {
+                  e = next[e];
+               }
+               current[u] = e;
+               if (e >= 0) {
+                  path[depth++] = e;
+                  u = to[e];
+               }
+               else {
+                  if (depth == 0) {
+                     break;
+                  }
+                  level[u] = -1;
+                  depth--;
+                  u = to[path[depth] ^ 1];
+                  current[u] = next[current[u]];
+               }
+            }
+         }
+         return flow;
+      }
+
+      private boolean levels(int source, int sink) {
+         Arrays.fill(level, -1);
+         int[] queue = new int[n];
+         int size = 0;
+         level[source] = 0;
+         queue[size++] = source;
+         for (int j = 0; j < size; j++) {
+            int u = queue[j];
+            for (int e = head[u]; e >= 0; e = next[e]) {
+               if (cap[e] > 0 && level[to[e]] < 0) {
+                  level[to[e]] = level[u] + 1;
+                  queue[size++] = to[e];
+               }
+            }
+         }
+         return level[sink] >= 0;
+      }
+
+      boolean[] reachableInResidual(int source) {
+         levels(source, source);
+         boolean[] reachable = new boolean[n];
+         for (int i = 0; i < n; i++) {
+            reachable[i] = level[i] >= 0;
+         }
+         return reachable;
+      }
+   }
+
+}
@@ -1,20 +1,26 @@
 package core;
 
-import java.util.HashSet;
 import java.util.Set;
 
 public class Defense {
    public AttackStep          disable;
    public boolean             defaultValue;
-   public static Set<Defense> allDefenses = new HashSet<>();
+   // The defenses of the default model, see Model.
+   public static Set<Defense> allDefenses = Model.getDefault().defenses;
    String                     assetName   = "Anonymous";
 
    public Defense(String name) {
-      allDefenses.add(this);
+      Model.current().defenses.add(this);
       this.assetName = name;
    }
 
    public boolean isEnabled() {
       return defaultValue;
    }
+
+   // Whether isEnabled() follows defaultValue. The compiler overrides this
+   // for defenses given by existence requirements, which do not.
+   public boolean isConfigurable() {
+      return true;
+   }
 }
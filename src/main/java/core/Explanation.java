@@ -0,0 +1,148 @@
+package core;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Explains why attack steps were or were not reached, for failed
+ * assertions. Each step is explained once per explanation, with a number
+ * that later mentions of it refer back to, so an explanation stays linear in
+ * the size of the attack graph however many paths lead through a step. A
+ * step met again with more depth left than it was explained with, which cut
+ * its explanation short, is explained again, at most maxDepth + 1 times.
+ */
+public class Explanation {
+
+   // Select with -Dmal.explanations=<file>, explanations are appended to it.
+   // Standard out when null.
+   public static String  defaultOutput = System.getProperty("mal.explanations");
+   // How many parents deep explanations go.
+   public static int     maxDepth      = 10;
+   // Whether new models are explained, see Model.setExplained(). Select
+   // with -Dmal.explain=false.
+   static final boolean  byDefault     = !"false".equals(System.getProperty("mal.explain"));
+
+   private final Writer                   out;
+   // The number and remaining depth of each step explained.
+   private final Map<AttackStep, int[]> compromises   = new IdentityHashMap<>();
+   private final Map<AttackStep, int[]> uncompromises = new IdentityHashMap<>();
+   private int                          nextNumber    = 1;
+
+   public Explanation(Writer out) {
+      this.out = out;
+   }
+
+   // Explains attackStep to defaultOutput.
+   static void write(AttackStep attackStep, boolean uncompromise, boolean compromise) {
+      if (!attackStep.model.isExplained()) {
+         return;
+      }
+      try {
+         if (defaultOutput == null) {
+            Writer out = new BufferedWriter(new OutputStreamWriter(System.out, Charset.defaultCharset()));
+            new Explanation(out).explain(attackStep, uncompromise, compromise);
+            out.flush();
+         }
+         else {
+            try (Writer out = Files.newBufferedWriter(Paths.get(defaultOutput), StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+               new Explanation(out).explain(attackStep, uncompromise, compromise);
+            }
+            System.out.println("Explanation of " + attackStep.fullName() + " written to " + defaultOutput);
+         }
+      }
+      catch (IOException e) {
+         System.err.printf("Could not write explanation: %s\n", e.getMessage());
+      }
+   }
+
+   public void explain(AttackStep attackStep, boolean uncompromise, boolean compromise) throws IOException {
+      if (uncompromise) {
+         out.write("\nExplaining uncompromise:\n");
+         explainUncompromise(attackStep, "", maxDepth);
+      }
+      if (compromise) {
+         out.write("\nExplaining compromise:\n");
+         explainCompromise(attackStep, "", maxDepth);
+      }
+   }
+
+   private static String describe(AttackStep attackStep) {
+      return attackStep.fullName() + " [" + Double.toString(attackStep.ttc) + "]";
+   }
+
+   private static String type(AttackStep attackStep) {
+      if (attackStep instanceof AttackStepMax) {
+         return " (AND)";
+      }
+      if (attackStep instanceof AttackStepMin) {
+         return " (OR)";
+      }
+      return "";
+   }
+
+   // Numbers attackStep and returns true unless it was explained with at
+   // least remainingDepth, then refers back to that explanation.
+   private boolean first(Map<AttackStep, int[]> explained, AttackStep attackStep, String indent, String verb, int remainingDepth) throws IOException {
+      int[] earlier = explained.get(attackStep);
+      if (earlier != null && earlier[1] >= remainingDepth) {
+         out.write(indent + "  " + verb + " " + attackStep.fullName() + ", see #" + earlier[0] + "\n");
+         return false;
+      }
+      explained.put(attackStep, new int[] { nextNumber, remainingDepth });
+      out.write(indent + "#" + nextNumber++ + " ");
+      return true;
+   }
+
+   private void explainCompromise(AttackStep attackStep, String indent, int remainingDepth) throws IOException {
+      if (remainingDepth < 0 || attackStep.ttc == AttackStep.infinity || !first(compromises, attackStep, indent, "reached", remainingDepth)) {
+         return;
+      }
+      out.write("reached " + describe(attackStep) + type(attackStep) + " because");
+      for (AttackStep parent : attackStep.visitedParents()) {
+         out.write(" parent: " + describe(parent) + ",");
+      }
+      out.write("\n");
+      for (AttackStep parent : attackStep.visitedParents()) {
+         if (parent.ttc <= attackStep.ttc) {
+            explainCompromise(parent, indent + "  ", remainingDepth - 1);
+         }
+      }
+   }
+
+   private void explainUncompromise(AttackStep attackStep, String indent, int remainingDepth) throws IOException {
+      if (remainingDepth < 0) {
+         return;
+      }
+      if (attackStep.ttc != AttackStep.infinity) {
+         out.write(indent + "  but did reach " + describe(attackStep) + ".\n");
+         return;
+      }
+      if (!first(uncompromises, attackStep, indent, "didn't reach", remainingDepth)) {
+         return;
+      }
+      out.write("didn't reach " + describe(attackStep) + type(attackStep) + " because\n");
+      if (attackStep.expectedParents.isEmpty() && attackStep.visitedParents().isEmpty()) {
+         out.write(indent + "  parents were neither expected nor visited, so this step is unreachable.\n");
+      }
+      // An OR step needs only one parent, so its expected parents matter
+      // only if none was visited.
+      if (attackStep instanceof AttackStepMax || (attackStep instanceof AttackStepMin && attackStep.visitedParents().isEmpty())) {
+         for (AttackStep parent : attackStep.expectedParents) {
+            explainUncompromise(parent, indent + "  ", remainingDepth - 1);
+         }
+      }
+      for (AttackStep parent : attackStep.visitedParents()) {
+         explainUncompromise(parent, indent + "  ", remainingDepth - 1);
+      }
+   }
+
+}
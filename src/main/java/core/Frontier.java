@@ -0,0 +1,43 @@
+package core;
+
+import java.util.AbstractSet;
+
+/**
+ * The set of reached but not yet settled attack steps. Generated code only
+ * sees it as a Set and calls add() whenever a step's ttc has been lowered, so
+ * add() doubles as decrease-key. The attacker repeatedly polls the step with
+ * the smallest ttc.
+ */
+public abstract class Frontier extends AbstractSet<AttackStep> {
+
+   // Updates of OR and AND steps from their parents, counted by the steps.
+   long orRelaxations;
+   long andRelaxations;
+
+   public enum Type {
+      LINEAR, BINARY_HEAP, PAIRING_HEAP, RADIX_HEAP
+   }
+
+   public static Frontier create(Type type) {
+      switch (type) {
+         case LINEAR:
+            return new LinearFrontier();
+         case PAIRING_HEAP:
+            return new PairingHeapFrontier();
+         case RADIX_HEAP:
+            return new RadixHeapFrontier();
+         case BINARY_HEAP:
+         default:
+            return new BinaryHeapFrontier();
+      }
+   }
+
+   /**
+    * Removes and returns the step with the smallest ttc, or null if empty.
+    */
+   public abstract AttackStep poll();
+
+   @Override
+   public abstract boolean add(AttackStep attackStep);
+
+}
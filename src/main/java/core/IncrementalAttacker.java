@@ -0,0 +1,98 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Keeps the shortest path state of its latest attack so that what-if
+ * questions about single defenses do not need a new attack. Enabling or
+ * disabling a defense adds or removes its disable step as an entry step and
+ * searches only the steps whose ttc can change. Always uses the compiled
+ * engine. The attack must cover the whole model, so a target or a horizon is
+ * rejected. Listeners hear about the attack as usual, but not about updates,
+ * which return the steps they changed instead. A cancelled attack leaves
+ * nothing to update.
+ */
+public class IncrementalAttacker extends Attacker {
+
+   private AttackGraph        graph;
+   private AttackGraph.Search search;
+   private Set<AttackStep>    attackPoints = new HashSet<>();
+
+   public IncrementalAttacker() {
+      this(Model.current());
+   }
+
+   public IncrementalAttacker(boolean verbose) {
+      super(verbose);
+      setEngine(Engine.COMPILED);
+   }
+
+   public IncrementalAttacker(Model model) {
+      super(model);
+      setEngine(Engine.COMPILED);
+   }
+
+   @Override
+   protected void attackCompiled() {
+      if (horizon < AttackStep.infinity) {
+         throw new IllegalStateException("Incremental updates need an attack without a horizon.");
+      }
+      if (target != null) {
+         throw new IllegalStateException("Incremental updates need an attack without a target.");
+      }
+      search = null;
+      long start = System.nanoTime();
+      AttackGraph graph = new AttackGraph(model);
+      statistics.expectedParentsNanos = System.nanoTime() - start;
+      AttackGraph.Search search = graph.newSearch();
+      search.trackPredecessors = true;
+      search.onSettled = step -> settled(graph.attackSteps[step], search.ttc[step], search.predecessor[step] < 0 ? null : graph.attackSteps[search.predecessor[step]]);
+      attackPoints = new HashSet<>(activeAttackSteps);
+      search.run(graph.indicesOf(takeEntrySteps()), graph.localTtcs());
+      expanded = search.expanded;
+      record(search);
+      graph.writeBack(search);
+      if (!wasCancelled()) {
+         this.graph = graph;
+         this.search = search;
+      }
+   }
+
+   /**
+    * Enables or disables defense and updates the ttcs of the latest attack
+    * to match. Returns the attack steps whose ttc, or critical path, changed.
+    */
+   public List<AttackStep> setDefense(Defense defense, boolean enabled) {
+      if (search == null) {
+         throw new IllegalStateException("No complete attack to update, call attack() first.");
+      }
+      defense.defaultValue = enabled;
+      int disable = graph.indexOf(defense.disable);
+      // Defenses given by existence requirements ignore defaultValue, and an
+      // attack point stays reached whatever its defense says.
+      if (disable < 0 || search.isEntry(disable) != defense.isEnabled() || attackPoints.contains(defense.disable)) {
+         return Collections.emptyList();
+      }
+      if (defense.isEnabled()) {
+         search.removeEntry(disable);
+      }
+      else {
+         search.addEntry(disable);
+      }
+      graph.writeBackChanges(search);
+      List<AttackStep> changed = new ArrayList<>(search.changedCount);
+      for (int j = 0; j < search.changedCount; j++) {
+         changed.add(graph.attackSteps[search.changed[j]]);
+      }
+      return changed;
+   }
+
+   public List<AttackStep> toggleDefense(Defense defense) {
+      return setDefense(defense, !defense.isEnabled());
+   }
+
+}
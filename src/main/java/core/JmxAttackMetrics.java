@@ -0,0 +1,114 @@
+package core;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Sums the statistics of every attack it is told about and publishes the
+ * totals as an MBean, e.g. to follow the simulation cost of a model in
+ * JConsole. Times are totals over all attacks.
+ */
+public class JmxAttackMetrics implements AttackMetrics, JmxAttackMetricsMBean {
+
+   private final LongAdder     attacks               = new LongAdder();
+   private final LongAdder     stepsSettled          = new LongAdder();
+   private final LongAdder     orRelaxations         = new LongAdder();
+   private final LongAdder     andRelaxations        = new LongAdder();
+   private final AtomicInteger frontierHighWaterMark = new AtomicInteger(-1);
+   private final LongAdder     expectedParentsNanos  = new LongAdder();
+   private final LongAdder     profileNanos          = new LongAdder();
+   private final LongAdder     totalNanos            = new LongAdder();
+   private final AtomicLong    lastAttackNanos       = new AtomicLong();
+
+   /**
+    * Registers these metrics with the platform MBean server as
+    * core:type=AttackMetrics,name=name and returns the name used.
+    */
+   public ObjectName register(String name) {
+      try {
+         ObjectName objectName = new ObjectName("core:type=AttackMetrics,name=" + ObjectName.quote(name));
+         ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+         return objectName;
+      }
+      catch (JMException e) {
+         throw new IllegalStateException("Could not register attack metrics " + name, e);
+      }
+   }
+
+   @Override
+   public void attackFinished(AttackStatistics statistics) {
+      attacks.increment();
+      stepsSettled.add(statistics.getSettled());
+      orRelaxations.add(statistics.getOrRelaxations());
+      andRelaxations.add(statistics.getAndRelaxations());
+      frontierHighWaterMark.accumulateAndGet(statistics.getFrontierHighWaterMark(), Math::max);
+      expectedParentsNanos.add(statistics.getExpectedParentsNanos());
+      profileNanos.add(statistics.getProfileNanos());
+      totalNanos.add(statistics.getTotalNanos());
+      lastAttackNanos.set(statistics.getTotalNanos());
+   }
+
+   @Override
+   public long getAttacks() {
+      return attacks.sum();
+   }
+
+   @Override
+   public long getStepsSettled() {
+      return stepsSettled.sum();
+   }
+
+   @Override
+   public long getOrRelaxations() {
+      return orRelaxations.sum();
+   }
+
+   @Override
+   public long getAndRelaxations() {
+      return andRelaxations.sum();
+   }
+
+   @Override
+   public int getFrontierHighWaterMark() {
+      return frontierHighWaterMark.get();
+   }
+
+   @Override
+   public double getExpectedParentsMillis() {
+      return expectedParentsNanos.sum() / 1e6;
+   }
+
+   @Override
+   public double getProfileMillis() {
+      return profileNanos.sum() / 1e6;
+   }
+
+   @Override
+   public double getTotalMillis() {
+      return totalNanos.sum() / 1e6;
+   }
+
+   @Override
+   public double getLastAttackMillis() {
+      return lastAttackNanos.get() / 1e6;
+   }
+
+   @Override
+   public void reset() {
+      attacks.reset();
+      stepsSettled.reset();
+      orRelaxations.reset();
+      andRelaxations.reset();
+      frontierHighWaterMark.set(-1);
+      expectedParentsNanos.reset();
+      profileNanos.reset();
+      totalNanos.reset();
+      lastAttackNanos.set(0);
+   }
+
+}
@@ -0,0 +1,26 @@
+package core;
+
+// The attributes JmxAttackMetrics exposes over JMX.
+public interface JmxAttackMetricsMBean {
+
+   long getAttacks();
+
+   long getStepsSettled();
+
+   long getOrRelaxations();
+
+   long getAndRelaxations();
+
+   int getFrontierHighWaterMark();
+
+   double getExpectedParentsMillis();
+
+   double getProfileMillis();
+
+   double getTotalMillis();
+
+   double getLastAttackMillis();
+
+   void reset();
+
+}
@@ -0,0 +1,59 @@
+package core;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * The original frontier: a plain set scanned for its minimum on every poll.
+ * Kept as a baseline for benchmarking the heap based frontiers.
+ */
+public class LinearFrontier extends Frontier {
+
+   private Set<AttackStep> attackSteps = new HashSet<>();
+
+   @Override
+   public boolean add(AttackStep attackStep) {
+      return attackSteps.add(attackStep);
+   }
+
+   @Override
+   public AttackStep poll() {
+      AttackStep shortestStep = null;
+      double shortestTtc = Double.MAX_VALUE;
+      for (AttackStep attackStep : attackSteps) {
+         if (shortestStep == null || attackStep.ttc < shortestTtc) {
+            shortestTtc = attackStep.ttc;
+            shortestStep = attackStep;
+         }
+      }
+      attackSteps.remove(shortestStep);
+      return shortestStep;
+   }
+
+   @Override
+   public boolean contains(Object o) {
+      return attackSteps.contains(o);
+   }
+
+   @Override
+   public boolean remove(Object o) {
+      return attackSteps.remove(o);
+   }
+
+   @Override
+   public Iterator<AttackStep> iterator() {
+      return attackSteps.iterator();
+   }
+
+   @Override
+   public int size() {
+      return attackSteps.size();
+   }
+
+   @Override
+   public void clear() {
+      attackSteps.clear();
+   }
+
+}
@@ -0,0 +1,350 @@
+package core;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * An instantiated model: the registries that assets, attack steps, defenses
+ * and components add themselves to when constructed. Constructors register
+ * into the current model of the calling thread, which is the default model
+ * unless another one has been made current, so several models can be built
+ * and attacked side by side, e.g. one per task on a thread pool.
+ */
+public class Model {
+
+   private static final Model              defaultModel = new Model();
+   private static final ThreadLocal<Model> currentModel = new ThreadLocal<>();
+
+   public final List<Asset>                assets       = new ArrayList<>();
+   public final List<AttackStep>           attackSteps  = new ArrayList<>();
+   public final Set<Defense>               defenses     = new HashSet<>();
+   public final List<Component>            components   = new ArrayList<>();
+   private SymbolTable                     ttcSymbols;
+   // The first asset of every name, and the assets of every asset class and
+   // its superclasses, by class name. Kept up to date as assets register,
+   // and rebuilt if the assets list was changed directly.
+   private final Map<String, Asset>        assetsByName = new HashMap<>();
+   private final Map<String, List<Asset>>  assetsByType = new HashMap<>();
+   private int                             indexed;
+   // Connected components of the assets, labelled in Asset.component, valid
+   // while no association or asset has been added since they were found.
+   private boolean                         componentIndex;
+   private long                            associationVersion;
+   private long                            componentVersion = -1;
+   private Random                          random       = new Random();
+   // The expected parents of the attack steps were found for this version
+   // of the associations and this many steps.
+   private long                            parentsVersion = -1;
+   private int                             parentsFound;
+   // The attack steps changed since the latest reset, all of them if
+   // allTouched, so that a reset costs only as much as the attack did.
+   private final List<AttackStep>          touched      = new ArrayList<>();
+   private boolean                         allTouched   = true;
+   // The horizon of the latest attack, and the steps it stopped short of,
+   // whose ttc is unknown, see AttackStep.isPastHorizon().
+   double                                  horizon      = AttackStep.infinity;
+   final Set<AttackStep>                   pastHorizon  = new HashSet<>();
+   private boolean                         explained    = Explanation.byDefault;
+
+   // The model behind the static Asset.allAssets, AttackStep.allAttackSteps,
+   // Defense.allDefenses and Component.allComponents.
+   public static Model getDefault() {
+      return defaultModel;
+   }
+
+   public static Model current() {
+      Model model = currentModel.get();
+      return model == null ? defaultModel : model;
+   }
+
+   // Makes model the current model of this thread, null restores the default.
+   public static void setCurrent(Model model) {
+      if (model == null || model == defaultModel) {
+         currentModel.remove();
+      }
+      else {
+         currentModel.set(model);
+      }
+   }
+
+   // Runs action with this as the current model of the calling thread.
+   public <T> T call(Supplier<T> action) {
+      Model previous = currentModel.get();
+      setCurrent(this);
+      try {
+         return action.get();
+      }
+      finally {
+         setCurrent(previous);
+      }
+   }
+
+   public void run(Runnable action) {
+      call(() -> {
+         action.run();
+         return null;
+      });
+   }
+
+   // The profile entries of the language the attack steps were generated from.
+   public SymbolTable ttcSymbols() {
+      if (ttcSymbols == null) {
+         for (AttackStep attackStep : attackSteps) {
+            if (attackStep.ttcId() >= 0) {
+               ttcSymbols = SymbolTable.of(attackStep.getClass());
+               return ttcSymbols;
+            }
+         }
+         return SymbolTable.EMPTY;
+      }
+      return ttcSymbols;
+   }
+
+   // Unregisters a step that a subclass constructor is about to replace. The
+   // step was registered by the same constructor, so search from the end.
+   public void removeAttackStep(AttackStep attackStep) {
+      if (attackStep != null) {
+         int i = attackSteps.lastIndexOf(attackStep);
+         if (i >= 0) {
+            attackSteps.remove(i);
+            associationVersion++;
+         }
+      }
+   }
+
+   /**
+    * Lets every attack step find the parents it expects, unless they were
+    * found since the associations last changed, see associationsChanged().
+    * Their visited state is lost either way. Synchronized so that several
+    * threads may build AttackGraphs, or run compiled attacks, on one model
+    * that nothing changes meanwhile; the parents are left sorted, so that
+    * reading them afterwards writes nothing.
+    */
+   synchronized void setExpectedParents() {
+      if (parentsVersion == associationVersion && parentsFound == attackSteps.size()) {
+         return;
+      }
+      for (AttackStep attackStep : attackSteps) {
+         attackStep.expectedParents.clear();
+         attackStep.setExpectedParents();
+         attackStep.expectedParents.reset();
+      }
+      parentsVersion = associationVersion;
+      parentsFound = attackSteps.size();
+   }
+
+   // Called as an attack first changes attackStep.
+   void touch(AttackStep attackStep) {
+      if (!allTouched) {
+         touched.add(attackStep);
+      }
+   }
+
+   // Called when an attack changes every step.
+   void touchAll() {
+      allTouched = true;
+      touched.clear();
+   }
+
+   /**
+    * Unreaches the attack steps that attacks changed since the latest reset
+    * and makes them expect all their parents again.
+    */
+   public void resetAttack() {
+      for (AttackStep attackStep : allTouched ? attackSteps : touched) {
+         attackStep.reset();
+      }
+      touched.clear();
+      allTouched = false;
+      pastHorizon.clear();
+   }
+
+   // Makes room for a number of assets and attack steps about to be built.
+   void ensureCapacity(int nAssets, int nAttackSteps) {
+      ((ArrayList<Asset>) assets).ensureCapacity(assets.size() + nAssets);
+      ((ArrayList<AttackStep>) attackSteps).ensureCapacity(attackSteps.size() + nAttackSteps);
+   }
+
+   void register(Asset asset) {
+      assets.add(asset);
+      associationVersion++;
+      if (indexed == assets.size() - 1) {
+         index(asset);
+         indexed++;
+      }
+   }
+
+   private void index(Asset asset) {
+      assetsByName.putIfAbsent(asset.name, asset);
+      for (Class<?> type = asset.getClass(); type != Asset.class; type = type.getSuperclass()) {
+         assetsByType.computeIfAbsent(type.getName(), name -> new ArrayList<>()).add(asset);
+      }
+   }
+
+   private void reindex() {
+      if (indexed != assets.size()) {
+         assetsByName.clear();
+         assetsByType.clear();
+         for (Asset asset : assets) {
+            index(asset);
+         }
+         indexed = assets.size();
+      }
+   }
+
+   /**
+    * Makes Asset.isConnected() look up connected components, found with
+    * union-find the first time it is called after the model changed,
+    * instead of searching the model. Pays off when it is called many times
+    * between changes. Associations count in both directions, as add<Role>
+    * links both ways.
+    */
+   public void setComponentIndex(boolean componentIndex) {
+      this.componentIndex = componentIndex;
+      componentVersion = -1;
+   }
+
+   public boolean hasComponentIndex() {
+      return componentIndex;
+   }
+
+   /**
+    * Whether attacks remember which parents reached each OR step, and
+    * parents that were not expected, so that failed assertions can be
+    * explained. Turn it off to save that memory and time on large models.
+    * Defaults to false when run with -Dmal.explain=false, else true.
+    */
+   public void setExplained(boolean explained) {
+      this.explained = explained;
+   }
+
+   public boolean isExplained() {
+      return explained;
+   }
+
+   // Called by the generated add<Role> methods. Call it after changing the
+   // role fields of assets directly.
+   public void associationsChanged() {
+      associationVersion++;
+   }
+
+   boolean isConnected(Asset asset, Asset target) {
+      if (target.getModel() != this) {
+         return false;
+      }
+      if (componentVersion != associationVersion || indexed != assets.size()) {
+         findComponents();
+      }
+      return asset.component == target.component;
+   }
+
+   private void findComponents() {
+      int n = assets.size();
+      int[] parent = new int[n];
+      for (int i = 0; i < n; i++) {
+         parent[i] = i;
+         assets.get(i).component = i;
+      }
+      for (int i = 0; i < n; i++) {
+         int asset = i;
+         assets.get(i).forEachAssociatedAsset(neighbor -> {
+            int j = neighbor.component;
+            if (j < n && assets.get(j) == neighbor) {
+               int a = find(parent, asset);
+               int b = find(parent, j);
+               // Union by index keeps the roots small without a rank array.
+               if (a < b) {
+                  parent[b] = a;
+               }
+               else if (b < a) {
+                  parent[a] = b;
+               }
+            }
+         });
+      }
+      for (int i = 0; i < n; i++) {
+         assets.get(i).component = find(parent, i);
+      }
+      reindex();
+      componentVersion = associationVersion;
+   }
+
+   // With path halving.
+   private static int find(int[] parent, int i) {
+      while (parent[i] != i) {
+         parent[i] = parent[parent[i]];
+         i = parent[i];
+      }
+      return i;
+   }
+
+   // An asset named assetName, or null. Assets may have been renamed
+   // since they were indexed, away from assetName or to it, so a hit of
+   // another name, or a miss, looks again after indexing every asset anew.
+   public Asset getAsset(String assetName) {
+      reindex();
+      Asset asset = assetsByName.get(assetName);
+      if (asset == null || !asset.name.equals(assetName)) {
+         indexed = -1;
+         reindex();
+         asset = assetsByName.get(assetName);
+      }
+      return asset;
+   }
+
+   public List<Asset> getAssets(String className) {
+      reindex();
+      List<Asset> allAssetsOfClass = assetsByType.get("auto." + className);
+      if (allAssetsOfClass != null) {
+         return new ArrayList<>(allAssetsOfClass);
+      }
+      try {
+         Class.forName("auto." + className);
+      }
+      catch (Exception e) {
+         assertTrue("Can't find asset called " + className + ".", false);
+      }
+      return new ArrayList<>();
+   }
+
+   // Makes the picks of randomAsset() and randomAttackStep() reproducible.
+   public void setRandomSeed(long seed) {
+      random = new Random(seed);
+   }
+
+   // A uniformly random asset, null if there are none.
+   public Asset randomAsset() {
+      return assets.isEmpty() ? null : assets.get(random.nextInt(assets.size()));
+   }
+
+   // A uniformly random attack step, null if there are none.
+   public AttackStep randomAttackStep() {
+      return attackSteps.isEmpty() ? null : attackSteps.get(random.nextInt(attackSteps.size()));
+   }
+
+   public void clear() {
+      assets.clear();
+      attackSteps.clear();
+      defenses.clear();
+      components.clear();
+      assetsByName.clear();
+      assetsByType.clear();
+      indexed = 0;
+      componentVersion = -1;
+      parentsVersion = -1;
+      touched.clear();
+      allTouched = true;
+      ttcSymbols = null;
+      horizon = AttackStep.infinity;
+      pastHorizon.clear();
+   }
+
+}
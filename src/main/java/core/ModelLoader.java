@@ -0,0 +1,564 @@
+package core;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Streams instance models from CSV and JSON files into the current model,
+ * see Model, building the assets with the AssetFactory of their language.
+ * <p>
+ * Files ending in .json hold an array of records, or an object whose array
+ * values hold records, e.g. {"assets": [...], "associations": [...]}. An
+ * asset record is {"type": "Machine", "name": "Machine0", "defenses":
+ * ["isPatched"]}, an association record {"asset": "Machine0", "role":
+ * "product", "target": "Product0"}. Other files hold one record per line,
+ * "asset,Machine,Machine0,isPatched;noLogin" or
+ * "association,Machine0,product,Product0", with fields in double quotes
+ * where they contain commas. Blank lines and lines starting with # are
+ * skipped. The listed defenses are enabled, the others disabled.
+ * <p>
+ * Files are parsed in parallel, twice: first for the assets, then for the
+ * associations of the files that have any, so records may come in any order
+ * and across files. Parsed records are handed over in batches through a
+ * bounded queue, so memory beyond the model itself does not grow with the
+ * size of the files.
+ */
+public class ModelLoader {
+
+   private static final int BATCH_SIZE = 4096;
+
+   private AssetFactory     factory;
+   private int              threads = Runtime.getRuntime().availableProcessors();
+
+   public ModelLoader(AssetFactory factory) {
+      this.factory = factory;
+   }
+
+   public ModelLoader setThreads(int threads) {
+      if (threads < 1) {
+         throw new IllegalArgumentException("At least one thread is needed, got " + threads);
+      }
+      this.threads = threads;
+      return this;
+   }
+
+   public Model load(Path... files) throws IOException {
+      return load(Arrays.asList(files));
+   }
+
+   public Model load(List<Path> files) throws IOException {
+      Model model = Model.current();
+      Map<String, Asset> assets = new HashMap<>();
+      boolean[] hasAssociations = new boolean[files.size()];
+      ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, files.size())), runnable -> {
+         Thread thread = new Thread(runnable, "ModelLoader");
+         thread.setDaemon(true);
+         return thread;
+      });
+      try {
+         // Assets.
+         BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(2 * threads);
+         for (int f = 0; f < files.size(); f++) {
+            int file = f;
+            executor.execute(new Parser(files.get(f), queue) {
+               @Override
+               public void asset(String typeName, String name, String defenses) {
+                  addAsset(typeName, name, defenses);
+               }
+
+               @Override
+               public void association(String assetName, String roleName, String targetName) {
+                  hasAssociations[file] = true;
+               }
+            });
+         }
+         consume(queue, files.size(), batch -> {
+            for (int i = 0; i < batch.size; i++) {
+               String name = batch.strings[3 * i + 1];
+               if (assets.containsKey(name)) {
+                  throw new IllegalArgumentException("Duplicate asset " + name);
+               }
+               try {
+                  Asset asset = factory.create(batch.strings[3 * i], name);
+                  assets.put(name, asset);
+                  String defenses = batch.strings[3 * i + 2];
+                  if (defenses != null && !defenses.isEmpty()) {
+                     for (String defense : defenses.split(";")) {
+                        factory.setDefense(asset, defense.trim(), true);
+                     }
+                  }
+               }
+               catch (IllegalArgumentException e) {
+                  throw new IllegalArgumentException("Asset " + name + ": " + e.getMessage(), e);
+               }
+            }
+         });
+
+         // Associations, with the names resolved by the parsers.
+         queue = new ArrayBlockingQueue<>(2 * threads);
+         int nParsers = 0;
+         for (int f = 0; f < files.size(); f++) {
+            if (hasAssociations[f]) {
+               nParsers++;
+               executor.execute(new Parser(files.get(f), queue) {
+                  @Override
+                  public void asset(String typeName, String name, String defenses) {
+                  }
+
+                  @Override
+                  public void association(String assetName, String roleName, String targetName) {
+                     addAssociation(resolve(assets, assetName), roleName, resolve(assets, targetName));
+                  }
+               });
+            }
+         }
+         consume(queue, nParsers, batch -> {
+            for (int i = 0; i < batch.size; i++) {
+               factory.link(batch.ends[2 * i], batch.strings[3 * i + 1], batch.ends[2 * i + 1]);
+            }
+         });
+      }
+      finally {
+         executor.shutdownNow();
+      }
+      return model;
+   }
+
+   private static Asset resolve(Map<String, Asset> assets, String name) {
+      Asset asset = assets.get(name);
+      if (asset == null) {
+         throw new IllegalArgumentException("No asset " + name);
+      }
+      return asset;
+   }
+
+   private interface BatchConsumer {
+      void accept(Batch batch);
+   }
+
+   // Takes batches until every parser has sent its last one.
+   private static void consume(BlockingQueue<Batch> queue, int nParsers, BatchConsumer consumer) throws IOException {
+      while (nParsers > 0) {
+         Batch batch;
+         try {
+            batch = queue.take();
+         }
+         catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading", e);
+         }
+         if (batch.error != null) {
+            if (batch.error instanceof IOException) {
+               throw new IOException(batch.error.getMessage(), batch.error);
+            }
+            throw new IllegalArgumentException(batch.error.getMessage(), batch.error);
+         }
+         consumer.accept(batch);
+         if (batch.last) {
+            nParsers--;
+         }
+      }
+   }
+
+   // Up to BATCH_SIZE records, as three strings each, the asset ends of
+   // associations resolved.
+   private static class Batch {
+      final String[] strings = new String[3 * BATCH_SIZE];
+      final Asset[]  ends    = new Asset[2 * BATCH_SIZE];
+      int            size;
+      boolean        last;
+      Exception      error;
+   }
+
+   interface RecordHandler {
+      void asset(String typeName, String name, String defenses);
+
+      void association(String assetName, String roleName, String targetName);
+   }
+
+   // Parses one file into batches.
+   private abstract static class Parser implements Runnable, RecordHandler {
+      private Path                 file;
+      private BlockingQueue<Batch> queue;
+      private Batch                batch = new Batch();
+
+      Parser(Path file, BlockingQueue<Batch> queue) {
+         this.file = file;
+         this.queue = queue;
+      }
+
+      void addAsset(String typeName, String name, String defenses) {
+         batch.strings[3 * batch.size] = typeName;
+         batch.strings[3 * batch.size + 1] = name;
+         batch.strings[3 * batch.size + 2] = defenses;
+         batch.size++;
+         flush();
+      }
+
+      void addAssociation(Asset asset, String roleName, Asset target) {
+         batch.ends[2 * batch.size] = asset;
+         batch.strings[3 * batch.size + 1] = roleName;
+         batch.ends[2 * batch.size + 1] = target;
+         batch.size++;
+         flush();
+      }
+
+      private void flush() {
+         if (batch.size == BATCH_SIZE) {
+            put(batch);
+            batch = new Batch();
+         }
+      }
+
+      private void put(Batch batch) {
+         try {
+            queue.put(batch);
+         }
+         catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new IOException("Interrupted while loading", e));
+         }
+      }
+
+      @Override
+      public void run() {
+         RecordReader reader = null;
+         try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            reader = file.getFileName().toString().toLowerCase().endsWith(".json") ? new JsonRecordReader(in) : new CsvRecordReader(in);
+            reader.read(this);
+            batch.last = true;
+         }
+         catch (Exception e) {
+            if (Thread.currentThread().isInterrupted()) {
+               // The load failed elsewhere.
+               return;
+            }
+            String where = reader == null ? file.toString() : file + ":" + reader.line;
+            batch = new Batch();
+            batch.error = e instanceof IOException || e instanceof UncheckedIOException ? new IOException(where + ": " + e.getMessage(), e)
+                  : new IllegalArgumentException(where + ": " + e.getMessage(), e);
+            batch.last = true;
+         }
+         try {
+            queue.put(batch);
+         }
+         catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+         }
+      }
+   }
+
+   private abstract static class RecordReader {
+      int line;
+
+      abstract void read(RecordHandler handler) throws IOException;
+   }
+
+   static class CsvRecordReader extends RecordReader {
+      private BufferedReader in;
+      private List<String>   fields = new ArrayList<>();
+      private StringBuilder  field  = new StringBuilder();
+
+      CsvRecordReader(BufferedReader in) {
+         this.in = in;
+      }
+
+      @Override
+      void read(RecordHandler handler) throws IOException {
+         String text;
+         while ((text = in.readLine()) != null) {
+            line++;
+            if (text.trim().isEmpty() || text.startsWith("#")) {
+               continue;
+            }
+            split(text);
+            String kind = fields.get(0).trim();
+            if (kind.equals("asset") && (fields.size() == 3 || fields.size() == 4)) {
+               handler.asset(fields.get(1).trim(), fields.get(2).trim(), fields.size() == 4 ? fields.get(3) : null);
+            }
+            else if (kind.equals("association") && fields.size() == 4) {
+               handler.association(fields.get(1).trim(), fields.get(2).trim(), fields.get(3).trim());
+            }
+            else {
+               throw new IllegalArgumentException("Expected an asset or association record, got: " + text);
+            }
+         }
+      }
+
+      private void split(String text) {
+         fields.clear();
+         field.setLength(0);
+         boolean quoted = false;
+         for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quoted) {
+               if (c == '"' && i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                  field.append('"');
+                  i++;
+               }
+               else if (c == '"') {
+                  quoted = false;
+               }
+               else {
+                  field.append(c);
+               }
+            }
+            else if (c == '"') {
+               quoted = true;
+            }
+            else if (c == ',') {
+               fields.add(field.toString());
+               field.setLength(0);
+            }
+            else {
+               field.append(c);
+            }
+         }
+         fields.add(field.toString());
+      }
+   }
+
+   // Reads one record object at a time, so only the records themselves are
+   // held in memory.
+   static class JsonRecordReader extends RecordReader {
+      private Reader        in;
+      private char[]        buffer     = new char[1 << 16];
+      private int           position;
+      private int           limit;
+      // A character given back by unread, -2 if none.
+      private int           pushedBack = -2;
+      private StringBuilder string     = new StringBuilder();
+
+      JsonRecordReader(Reader in) {
+         this.in = in;
+         line = 1;
+      }
+
+      @Override
+      void read(RecordHandler handler) throws IOException {
+         int c = next();
+         if (c == '[') {
+            records(handler);
+         }
+         else if (c == '{') {
+            c = next();
+            if (c != '}') {
+               unread(c);
+               do {
+                  string(next());
+                  expect(next(), ':');
+                  c = next();
+                  if (c == '[') {
+                     records(handler);
+                  }
+                  else {
+                     unread(c);
+                     value();
+                  }
+               }
+               while (comma('}'));
+            }
+         }
+         else {
+            throw new IllegalArgumentException("Expected an array or object of records");
+         }
+      }
+
+      // The elements of an array of records, after its '['.
+      private void records(RecordHandler handler) throws IOException {
+         int c = next();
+         if (c == ']') {
+            return;
+         }
+         unread(c);
+         do {
+            Object value = value();
+            if (!(value instanceof Map)) {
+               throw new IllegalArgumentException("Expected a record object, got: " + value);
+            }
+            record((Map<?, ?>) value, handler);
+         }
+         while (comma(']'));
+      }
+
+      private void record(Map<?, ?> record, RecordHandler handler) {
+         if (record.containsKey("type")) {
+            Object defenses = record.get("defenses");
+            if (defenses instanceof List) {
+               StringBuilder names = new StringBuilder();
+               for (Object defense : (List<?>) defenses) {
+                  names.append(names.length() == 0 ? "" : ";").append(defense);
+               }
+               defenses = names.toString();
+            }
+            handler.asset(field(record, "type"), field(record, "name"), defenses == null ? null : defenses.toString());
+         }
+         else if (record.containsKey("role")) {
+            handler.association(field(record, "asset"), field(record, "role"), field(record, "target"));
+         }
+         else {
+            throw new IllegalArgumentException("Expected an asset or association record, got: " + record);
+         }
+      }
+
+      private static String field(Map<?, ?> record, String key) {
+         Object value = record.get(key);
+         if (!(value instanceof String)) {
+            throw new IllegalArgumentException("Expected a string " + key + " in " + record);
+         }
+         return (String) value;
+      }
+
+      private Object value() throws IOException {
+         int c = next();
+         if (c == '{') {
+            Map<String, Object> object = new LinkedHashMap<>();
+            c = next();
+            if (c != '}') {
+               unread(c);
+               do {
+                  String key = string(next());
+                  expect(next(), ':');
+                  object.put(key, value());
+               }
+               while (comma('}'));
+            }
+            return object;
+         }
+         if (c == '[') {
+            List<Object> array = new ArrayList<>();
+            c = next();
+            if (c != ']') {
+               unread(c);
+               do {
+                  array.add(value());
+               }
+               while (comma(']'));
+            }
+            return array;
+         }
+         if (c == '"') {
+            return string(c);
+         }
+         // A number, true, false or null, kept as its text.
+         string.setLength(0);
+         while (c >= 0 && c != ',' && c != '}' && c != ']' && !Character.isWhitespace(c)) {
+            string.append((char) c);
+            c = read();
+         }
+         unread(c);
+         if (string.length() == 0) {
+            throw new IllegalArgumentException("Expected a value");
+         }
+         return string.toString().equals("null") ? null : string.toString();
+      }
+
+      // A string, from its opening quote c.
+      private String string(int c) throws IOException {
+         expect(c, '"');
+         string.setLength(0);
+         while ((c = read()) != '"') {
+            if (c < 0) {
+               throw new IllegalArgumentException("Unterminated string");
+            }
+            if (c == '\\') {
+               c = read();
+               if (c == 'b') {
+                  c = '\b';
+               }
+               else if (c == 'f') {
+                  c = '\f';
+               }
+               else if (c == 'n') {
+                  c = '\n';
+               }
+               else if (c == 'r') {
+                  c = '\r';
+               }
+               else if (c == 't') {
+                  c = '\t';
+               }
+               else if (c == 'u') {
+                  c = 0;
+                  for (int i = 0; i < 4; i++) {
+                     int digit = Character.digit(read(), 16);
+                     if (digit < 0) {
+                        throw new IllegalArgumentException("Expected four hexadecimal digits after \\u");
+                     }
+                     c = 16 * c + digit;
+                  }
+               }
+            }
+            string.append((char) c);
+         }
+         return string.toString();
+      }
+
+      // Whether another element follows, or the closing character.
+      private boolean comma(char close) throws IOException {
+         int c = next();
+         if (c == ',') {
+            return true;
+         }
+         expect(c, close);
+         return false;
+      }
+
+      private static void expect(int c, char expected) {
+         if (c != expected) {
+            throw new IllegalArgumentException("Expected '" + expected + "', got " + (c < 0 ? "the end of the file" : "'" + (char) c + "'"));
+         }
+      }
+
+      // The next character that is not whitespace.
+      private int next() throws IOException {
+         int c;
+         do {
+            c = read();
+         }
+         while (c >= 0 && Character.isWhitespace(c));
+         return c;
+      }
+
+      private void unread(int c) {
+         pushedBack = c;
+      }
+
+      private int read() throws IOException {
+         if (pushedBack != -2) {
+            int c = pushedBack;
+            pushedBack = -2;
+            return c;
+         }
+         if (position == limit) {
+            limit = in.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit < 0) {
+               limit = 0;
+               return -1;
+            }
+         }
+         char c = buffer[position++];
+         if (c == '\n') {
+            line++;
+         }
+         return c;
+      }
+   }
+
+}
@@ -0,0 +1,353 @@
+package core;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A binary snapshot of an instantiated model: the type and name of every
+ * asset, the value of each of its defenses and the associations between the
+ * assets. Loading maps the file and constructs the assets in the original
+ * order with their generated constructors, links them with the generated
+ * add<Role> methods and sets the defenses, so the model registries end up
+ * as when the model was first built. Attack state is not part of it.
+ * <p>
+ * The file holds the size of the model, a table of the asset classes with the names of their roles
+ * and defenses, then the assets, then one (asset, role, asset) triple per
+ * association. Each association is stored from one side only.
+ */
+public class ModelSnapshot {
+
+   private static final int MAGIC   = 0x4d414c53;
+   private static final int VERSION = 1;
+
+   // The roles and defenses of an asset class, as its public fields, in
+   // name order.
+   private static class AssetType {
+      final int            id;
+      final Class<?>       assetClass;
+      final Constructor<?> constructor;
+      final Field[]        roles;
+      final Method[]       adders;
+      final Field[]        defenses;
+
+      AssetType(int id, Class<?> assetClass) throws ReflectiveOperationException {
+         this.id = id;
+         this.assetClass = assetClass;
+         this.constructor = assetClass.getConstructor(String.class);
+         List<Field> roles = new ArrayList<>();
+         List<Field> defenses = new ArrayList<>();
+         for (Field field : assetClass.getFields()) {
+            if (Modifier.isStatic(field.getModifiers())) {
+               continue;
+            }
+            if (Defense.class.isAssignableFrom(field.getType())) {
+               defenses.add(field);
+            }
+            else if (Asset.class.isAssignableFrom(field.getType()) || isAssetSet(field.getGenericType())) {
+               roles.add(field);
+            }
+         }
+         roles.sort(Comparator.comparing(Field::getName));
+         defenses.sort(Comparator.comparing(Field::getName));
+         this.roles = roles.toArray(new Field[0]);
+         this.defenses = defenses.toArray(new Field[0]);
+         this.adders = new Method[this.roles.length];
+         for (int r = 0; r < this.roles.length; r++) {
+            String role = this.roles[r].getName();
+            adders[r] = assetClass.getMethod("add" + Character.toUpperCase(role.charAt(0)) + role.substring(1), elementType(this.roles[r]));
+         }
+      }
+
+      int role(String name) {
+         for (int r = 0; r < roles.length; r++) {
+            if (roles[r].getName().equals(name)) {
+               return r;
+            }
+         }
+         throw new IllegalStateException(String.format("%s has no role %s", assetClass.getName(), name));
+      }
+
+      int defense(String name) {
+         for (int d = 0; d < defenses.length; d++) {
+            if (defenses[d].getName().equals(name)) {
+               return d;
+            }
+         }
+         throw new IllegalStateException(String.format("%s has no defense %s", assetClass.getName(), name));
+      }
+   }
+
+   private static boolean isAssetSet(Type type) {
+      if (type instanceof ParameterizedType && ((ParameterizedType) type).getRawType() == Set.class) {
+         Type element = ((ParameterizedType) type).getActualTypeArguments()[0];
+         return element instanceof Class && Asset.class.isAssignableFrom((Class<?>) element);
+      }
+      return false;
+   }
+
+   private static Class<?> elementType(Field role) {
+      if (Asset.class.isAssignableFrom(role.getType())) {
+         return role.getType();
+      }
+      return (Class<?>) ((ParameterizedType) role.getGenericType()).getActualTypeArguments()[0];
+   }
+
+   public static void write(Model model, Path file) throws IOException {
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+         new Writer(channel).write(model);
+      }
+   }
+
+   /**
+    * Loads the snapshot in file into the current model, see Model, and
+    * returns that model. The generated classes of the snapshot must be on
+    * the classpath.
+    */
+   public static Model load(Path file) throws IOException {
+      return load(file, ModelSnapshot.class.getClassLoader());
+   }
+
+   // As load(file), with the generated classes loaded by loader.
+   public static Model load(Path file, ClassLoader loader) throws IOException {
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+         if (channel.size() > Integer.MAX_VALUE) {
+            throw new IOException("Snapshots over 2 GB are not supported: " + file);
+         }
+         ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+         if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+            throw new IOException("Not a model snapshot: " + file);
+         }
+         return new Reader(in, loader).load();
+      }
+   }
+
+   private static class Writer {
+      private FileChannel out;
+      private ByteBuffer  buffer = ByteBuffer.allocateDirect(1 << 16);
+      private long        written;
+
+      Writer(FileChannel out) {
+         this.out = out;
+      }
+
+      void write(Model model) throws IOException {
+         Map<Class<?>, AssetType> types = new HashMap<>();
+         List<AssetType> typeList = new ArrayList<>();
+         Map<Asset, Integer> ids = new IdentityHashMap<>();
+         for (Asset asset : model.assets) {
+            if (!types.containsKey(asset.getClass())) {
+               try {
+                  AssetType type = new AssetType(typeList.size(), asset.getClass());
+                  types.put(asset.getClass(), type);
+                  typeList.add(type);
+               }
+               catch (ReflectiveOperationException e) {
+                  throw new IllegalStateException("Cannot snapshot " + asset.getClass().getName(), e);
+               }
+            }
+            ids.put(asset, ids.size());
+         }
+
+         putInt(MAGIC);
+         putInt(VERSION);
+         putInt(model.assets.size());
+         putInt(model.attackSteps.size());
+         putInt(typeList.size());
+         for (AssetType type : typeList) {
+            putString(type.assetClass.getName());
+            putInt(type.roles.length);
+            for (Field role : type.roles) {
+               putString(role.getName());
+            }
+            putInt(type.defenses.length);
+            for (Field defense : type.defenses) {
+               putString(defense.getName());
+            }
+         }
+
+         putInt(model.assets.size());
+         for (Asset asset : model.assets) {
+            AssetType type = types.get(asset.getClass());
+            putInt(type.id);
+            putString(asset.name);
+            for (int d = 0; d < type.defenses.length; d += 8) {
+               int bits = 0;
+               for (int b = 0; b < 8 && d + b < type.defenses.length; b++) {
+                  Defense defense = (Defense) get(type.defenses[d + b], asset);
+                  if (defense != null && defense.defaultValue) {
+                     bits |= 1 << b;
+                  }
+               }
+               putByte(bits);
+            }
+         }
+
+         // The association count is patched in once known.
+         long countPosition = written;
+         putInt(0);
+         int nLinks = 0;
+         for (Asset asset : model.assets) {
+            AssetType type = types.get(asset.getClass());
+            int id = ids.get(asset);
+            for (int r = 0; r < type.roles.length; r++) {
+               Object value = get(type.roles[r], asset);
+               for (Object target : value instanceof Set ? (Set<?>) value : Arrays.asList(value)) {
+                  Integer targetId = target == null ? null : ids.get(target);
+                  // The other side stores the links to assets before this.
+                  if (targetId != null && targetId >= id) {
+                     putInt(id);
+                     putInt(r);
+                     putInt(targetId);
+                     nLinks++;
+                  }
+               }
+            }
+         }
+         flush();
+         ByteBuffer count = ByteBuffer.allocate(4).putInt(0, nLinks);
+         out.write(count, countPosition);
+      }
+
+      private Object get(Field field, Asset asset) {
+         try {
+            return field.get(asset);
+         }
+         catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+         }
+      }
+
+      private void ensure(int n) throws IOException {
+         if (buffer.remaining() < n) {
+            flush();
+         }
+      }
+
+      private void flush() throws IOException {
+         buffer.flip();
+         while (buffer.hasRemaining()) {
+            out.write(buffer);
+         }
+         buffer.clear();
+      }
+
+      private void putByte(int b) throws IOException {
+         ensure(1);
+         buffer.put((byte) b);
+         written++;
+      }
+
+      private void putInt(int i) throws IOException {
+         ensure(4);
+         buffer.putInt(i);
+         written += 4;
+      }
+
+      private void putString(String s) throws IOException {
+         byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+         putInt(bytes.length);
+         for (int i = 0; i < bytes.length; i += buffer.capacity()) {
+            int n = Math.min(buffer.capacity(), bytes.length - i);
+            ensure(n);
+            buffer.put(bytes, i, n);
+         }
+         written += bytes.length;
+      }
+   }
+
+   private static class Reader {
+      private ByteBuffer  in;
+      private ClassLoader loader;
+      private byte[]      bytes = new byte[64];
+
+      Reader(ByteBuffer in, ClassLoader loader) {
+         this.in = in;
+         this.loader = loader;
+      }
+
+      Model load() throws IOException {
+         Model model = Model.current();
+         model.ensureCapacity(in.getInt(), in.getInt());
+         AssetType[] types = new AssetType[in.getInt()];
+         int[][] roles = new int[types.length][];
+         int[][] defenses = new int[types.length][];
+         for (int t = 0; t < types.length; t++) {
+            String className = getString();
+            try {
+               types[t] = new AssetType(t, Class.forName(className, false, loader));
+            }
+            catch (ReflectiveOperationException e) {
+               throw new IllegalStateException("Cannot load assets of class " + className, e);
+            }
+            roles[t] = new int[in.getInt()];
+            for (int r = 0; r < roles[t].length; r++) {
+               roles[t][r] = types[t].role(getString());
+            }
+            defenses[t] = new int[in.getInt()];
+            for (int d = 0; d < defenses[t].length; d++) {
+               defenses[t][d] = types[t].defense(getString());
+            }
+         }
+
+         Asset[] assets = new Asset[in.getInt()];
+         int[] assetTypes = new int[assets.length];
+         try {
+            for (int a = 0; a < assets.length; a++) {
+               int t = in.getInt();
+               assetTypes[a] = t;
+               assets[a] = (Asset) types[t].constructor.newInstance(getString());
+               int[] typeDefenses = defenses[t];
+               for (int d = 0; d < typeDefenses.length; d += 8) {
+                  int bits = in.get();
+                  for (int b = 0; b < 8 && d + b < typeDefenses.length; b++) {
+                     Defense defense = (Defense) types[t].defenses[typeDefenses[d + b]].get(assets[a]);
+                     if (defense != null) {
+                        defense.defaultValue = (bits & 1 << b) != 0;
+                     }
+                  }
+               }
+            }
+
+            int nLinks = in.getInt();
+            for (int l = 0; l < nLinks; l++) {
+               int a = in.getInt();
+               int r = in.getInt();
+               Asset target = assets[in.getInt()];
+               types[assetTypes[a]].adders[roles[assetTypes[a]][r]].invoke(assets[a], target);
+            }
+         }
+         catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not restore the model", e);
+         }
+         return model;
+      }
+
+      private String getString() {
+         int length = in.getInt();
+         if (bytes.length < length) {
+            bytes = new byte[Math.max(length, 2 * bytes.length)];
+         }
+         in.get(bytes, 0, length);
+         return new String(bytes, 0, length, StandardCharsets.UTF_8);
+      }
+   }
+
+}
@@ -0,0 +1,153 @@
+package core;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Samples the ttc of every attack step from the distributions in the attacker
+ * profile instead of using their means. Each iteration draws a local ttc per
+ * step from its own SplittableRandom stream, split from the seed in iteration
+ * order, so the samples do not depend on how the iterations are spread over
+ * the cores. Only the means do, in their last bits, as the sums of the cores
+ * are added in the order they finish.
+ */
+public class MonteCarloAttacker extends Attacker {
+
+   private Map<String, String> customDistributions = new HashMap<>();
+   private Set<AttackStep>     observedAttackSteps = new LinkedHashSet<>();
+
+   public MonteCarloAttacker() {
+      super();
+   }
+
+   public MonteCarloAttacker(boolean verbose) {
+      super(verbose);
+   }
+
+   public MonteCarloAttacker(Model model) {
+      super(model);
+   }
+
+   @Override
+   public void customizeTtc(String name, String distribution) {
+      customDistributions.put(name, distribution);
+   }
+
+   // Keeps every sample of the step so that its quantiles can be computed.
+   public void observe(AttackStep attackStep) {
+      observedAttackSteps.add(attackStep);
+   }
+
+   public Map<AttackStep, TtcStatistics> sample(String profilePath, int iterations, long seed, double horizon) {
+      return sample(loadProfile(profilePath), iterations, seed, horizon);
+   }
+
+   public Map<AttackStep, TtcStatistics> sample(Properties profile, int iterations, long seed, double horizon) {
+      AttackGraph graph = new AttackGraph(model);
+      TtcDistribution[] distributions = readDistributions(graph, profile);
+      int[] entries = graph.indicesOf(takeEntrySteps());
+      int[] observed = new int[observedAttackSteps.size()];
+      int nObserved = 0;
+      for (AttackStep attackStep : observedAttackSteps) {
+         observed[nObserved++] = graph.indexOf(attackStep);
+      }
+      double[][] samples = new double[nObserved][iterations];
+
+      SplittableRandom root = new SplittableRandom(seed);
+      SplittableRandom[] streams = new SplittableRandom[iterations];
+      for (int i = 0; i < iterations; i++) {
+         streams[i] = root.split();
+      }
+
+      Worker total = IntStream.range(0, iterations).parallel().collect(() -> new Worker(graph, horizon), (worker, i) -> {
+         double[] ttc = worker.run(entries, distributions, streams[i]);
+         for (int j = 0; j < observed.length; j++) {
+            samples[j][i] = ttc[observed[j]];
+         }
+      }, Worker::merge);
+
+      Map<AttackStep, Integer> observedIndices = new HashMap<>();
+      for (int j = 0; j < observed.length; j++) {
+         observedIndices.put(graph.attackSteps[observed[j]], j);
+      }
+      Map<AttackStep, TtcStatistics> statistics = new LinkedHashMap<>();
+      for (int i = 0; i < graph.size(); i++) {
+         AttackStep attackStep = graph.attackSteps[i];
+         Integer j = observedIndices.get(attackStep);
+         statistics.put(attackStep, new TtcStatistics(attackStep, iterations, horizon, total.compromised[i], total.compromisedWithinHorizon[i], total.ttcSum[i], j == null ? null : samples[j]));
+      }
+      return statistics;
+   }
+
+   private TtcDistribution[] readDistributions(AttackGraph graph, Properties profile) {
+      SymbolTable symbols = model.ttcSymbols();
+      TtcDistribution[] parsed = new TtcDistribution[symbols.size()];
+      for (int id = 0; id < symbols.size(); id++) {
+         String name = symbols.name(id);
+         // Local ttc overrides ttcfile
+         String distribution = customDistributions.containsKey(name) ? customDistributions.get(name) : profile.getProperty(name);
+         if (distribution == null) {
+            System.err.printf("No ttc distribution for: %s\n", name);
+         }
+         else {
+            parsed[id] = TtcDistribution.parse(distribution.trim());
+         }
+      }
+      TtcDistribution[] distributions = new TtcDistribution[graph.size()];
+      for (int i = 0; i < graph.size(); i++) {
+         int id = graph.attackSteps[i].ttcId();
+         distributions[i] = id < 0 ? null : parsed[id];
+      }
+      return distributions;
+   }
+
+   private static class Worker {
+      AttackGraph.Search search;
+      double             horizon;
+      double[]           localTtc;
+      int[]              compromised;
+      int[]              compromisedWithinHorizon;
+      double[]           ttcSum;
+
+      Worker(AttackGraph graph, double horizon) {
+         this.search = graph.newSearch();
+         this.horizon = horizon;
+         localTtc = new double[graph.size()];
+         compromised = new int[graph.size()];
+         compromisedWithinHorizon = new int[graph.size()];
+         ttcSum = new double[graph.size()];
+      }
+
+      double[] run(int[] entries, TtcDistribution[] distributions, SplittableRandom random) {
+         for (int i = 0; i < localTtc.length; i++) {
+            localTtc[i] = distributions[i] == null ? AttackStep.oneSecond : distributions[i].sample(random);
+         }
+         double[] ttc = search.run(entries, localTtc);
+         for (int i = 0; i < ttc.length; i++) {
+            if (ttc[i] < AttackStep.infinity) {
+               compromised[i]++;
+               ttcSum[i] += ttc[i];
+               if (ttc[i] <= horizon) {
+                  compromisedWithinHorizon[i]++;
+               }
+            }
+         }
+         return ttc;
+      }
+
+      void merge(Worker other) {
+         for (int i = 0; i < compromised.length; i++) {
+            compromised[i] += other.compromised[i];
+            compromisedWithinHorizon[i] += other.compromisedWithinHorizon[i];
+            ttcSum[i] += other.ttcSum[i];
+         }
+      }
+   }
+
+}
@@ -0,0 +1,163 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pairing heap keyed on ttc. Decrease-key cuts the node from its parent and
+ * melds it with the root, which is O(1); the cost is paid by the two-pass
+ * merge in poll().
+ */
+public class PairingHeapFrontier extends Frontier {
+
+   private static class Node {
+      AttackStep attackStep;
+      double     key;
+      Node       child;
+      Node       sibling;
+      // Parent if this is the leftmost child, otherwise the left sibling.
+      Node       previous;
+
+      Node(AttackStep attackStep) {
+         this.attackStep = attackStep;
+         this.key = attackStep.ttc;
+      }
+   }
+
+   private Node                  root;
+   private Map<AttackStep, Node> nodes = new HashMap<>();
+   private List<Node>            pairs = new ArrayList<>();
+
+   @Override
+   public boolean add(AttackStep attackStep) {
+      Node node = nodes.get(attackStep);
+      if (node != null) {
+         if (attackStep.ttc < node.key) {
+            node.key = attackStep.ttc;
+            if (node != root) {
+               cut(node);
+               root = meld(root, node);
+            }
+         }
+         return false;
+      }
+      node = new Node(attackStep);
+      nodes.put(attackStep, node);
+      root = meld(root, node);
+      return true;
+   }
+
+   @Override
+   public AttackStep poll() {
+      if (root == null) {
+         return null;
+      }
+      Node min = root;
+      nodes.remove(min.attackStep);
+      root = mergePairs(min.child);
+      return min.attackStep;
+   }
+
+   @Override
+   public boolean remove(Object o) {
+      Node node = nodes.remove(o);
+      if (node == null) {
+         return false;
+      }
+      if (node == root) {
+         root = mergePairs(root.child);
+      }
+      else {
+         cut(node);
+         root = meld(root, mergePairs(node.child));
+      }
+      return true;
+   }
+
+   private void cut(Node node) {
+      if (node.previous.child == node) {
+         node.previous.child = node.sibling;
+      }
+      else {
+         node.previous.sibling = node.sibling;
+      }
+      if (node.sibling != null) {
+         node.sibling.previous = node.previous;
+      }
+      node.previous = null;
+      node.sibling = null;
+   }
+
+   private Node meld(Node a, Node b) {
+      if (a == null) {
+         return b;
+      }
+      if (b == null) {
+         return a;
+      }
+      if (b.key < a.key) {
+         Node tmp = a;
+         a = b;
+         b = tmp;
+      }
+      b.previous = a;
+      b.sibling = a.child;
+      if (a.child != null) {
+         a.child.previous = b;
+      }
+      a.child = b;
+      a.sibling = null;
+      a.previous = null;
+      return a;
+   }
+
+   private Node mergePairs(Node first) {
+      if (first == null) {
+         return null;
+      }
+      pairs.clear();
+      while (first != null) {
+         Node a = first;
+         Node b = a.sibling;
+         first = b == null ? null : b.sibling;
+         a.sibling = null;
+         a.previous = null;
+         if (b != null) {
+            b.sibling = null;
+            b.previous = null;
+         }
+         pairs.add(meld(a, b));
+      }
+      Node merged = pairs.get(pairs.size() - 1);
+      for (int i = pairs.size() - 2; i >= 0; i--) {
+         merged = meld(pairs.get(i), merged);
+      }
+      return merged;
+   }
+
+   @Override
+   public boolean contains(Object o) {
+      return nodes.containsKey(o);
+   }
+
+   @Override
+   public Iterator<AttackStep> iterator() {
+      return Collections.unmodifiableSet(nodes.keySet()).iterator();
+   }
+
+   @Override
+   public int size() {
+      return nodes.size();
+   }
+
+   @Override
+   public void clear() {
+      nodes.clear();
+      root = null;
+   }
+
+}
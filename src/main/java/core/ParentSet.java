@@ -0,0 +1,248 @@
+package core;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The parents an attack step expects, as a set of those not yet visited.
+ * All expected parents are kept in one array, ordered by identity hash so
+ * that a parent is found by binary search, with a bit per parent telling
+ * whether it has been visited and a count of those that have not, so an AND
+ * step knows it is reached without a lookup. Parents that visit a step
+ * without being expected are only remembered when their model is explained,
+ * see Model.setExplained().
+ */
+public class ParentSet extends AbstractSet<AttackStep> {
+
+   private static final AttackStep[] none    = new AttackStep[0];
+
+   private AttackStep[]              parents = none;
+   private int                       size;
+   // parents[0..sortedSize) is ordered, the parents added since follow in
+   // the order they were added.
+   private int                       sortedSize;
+   private long[]                    visited;
+   private int                       remaining;
+   private List<AttackStep>          strangers;
+
+   // Expects parent again if it was visited.
+   @Override
+   public boolean add(AttackStep parent) {
+      // The parents added since the latest lookup are searched one by one,
+      // until there are so many that ordering them is cheaper.
+      if (size - sortedSize >= 32) {
+         normalize();
+      }
+      int i = find(parent);
+      if (i >= 0) {
+         if (!isVisited(i)) {
+            return false;
+         }
+         setVisited(i, false);
+         return true;
+      }
+      if (size == parents.length) {
+         parents = Arrays.copyOf(parents, Math.max(2, 2 * size));
+      }
+      parents[size++] = parent;
+      return true;
+   }
+
+   // Marks parent as visited, returns whether it was expected until now.
+   public boolean visit(AttackStep parent) {
+      int i = indexOf(parent);
+      if (i >= 0) {
+         if (isVisited(i)) {
+            return false;
+         }
+         setVisited(i, true);
+         return true;
+      }
+      // A parent belongs to the model of its children.
+      if (parent.model.isExplained()) {
+         if (strangers == null) {
+            strangers = new ArrayList<>(1);
+         }
+         if (!strangers.contains(parent)) {
+            strangers.add(parent);
+         }
+      }
+      return false;
+   }
+
+   // Undoes visit(parent).
+   void unvisit(AttackStep parent) {
+      int i = indexOf(parent);
+      if (i >= 0) {
+         setVisited(i, false);
+      }
+      else if (strangers != null) {
+         strangers.remove(parent);
+      }
+   }
+
+   // Expects every parent again.
+   void reset() {
+      normalize();
+      visited = null;
+      remaining = size;
+      strangers = null;
+   }
+
+   // Whether parent is among the expected parents, visited or not.
+   public boolean expects(AttackStep parent) {
+      return indexOf(parent) >= 0;
+   }
+
+   // Whether nothing was visited since the latest reset.
+   boolean isReset() {
+      return visited == null && strangers == null;
+   }
+
+   @Override
+   public boolean remove(Object parent) {
+      return parent instanceof AttackStep && indexOf((AttackStep) parent) >= 0 && visit((AttackStep) parent);
+   }
+
+   @Override
+   public boolean contains(Object parent) {
+      if (!(parent instanceof AttackStep)) {
+         return false;
+      }
+      int i = indexOf((AttackStep) parent);
+      return i >= 0 && !isVisited(i);
+   }
+
+   @Override
+   public int size() {
+      normalize();
+      return remaining;
+   }
+
+   @Override
+   public boolean isEmpty() {
+      return size() == 0;
+   }
+
+   @Override
+   public void clear() {
+      parents = none;
+      size = 0;
+      sortedSize = 0;
+      visited = null;
+      remaining = 0;
+      strangers = null;
+   }
+
+   // The parents not yet visited.
+   @Override
+   public Iterator<AttackStep> iterator() {
+      return Collections.unmodifiableList(parents(false)).iterator();
+   }
+
+   // The parents that visited the step, expected or not.
+   public List<AttackStep> visited() {
+      List<AttackStep> visitors = parents(true);
+      if (strangers != null) {
+         visitors.addAll(strangers);
+      }
+      return visitors;
+   }
+
+   // Every expected parent, visited or not.
+   public List<AttackStep> all() {
+      normalize();
+      return Collections.unmodifiableList(Arrays.asList(parents).subList(0, size));
+   }
+
+   private List<AttackStep> parents(boolean visitedOnes) {
+      normalize();
+      List<AttackStep> found = new ArrayList<>();
+      for (int i = 0; i < size; i++) {
+         if (isVisited(i) == visitedOnes) {
+            found.add(parents[i]);
+         }
+      }
+      return found;
+   }
+
+   private boolean isVisited(int i) {
+      return visited != null && i >> 6 < visited.length && (visited[i >> 6] & 1L << i) != 0;
+   }
+
+   private void setVisited(int i, boolean visit) {
+      if (isVisited(i) == visit) {
+         return;
+      }
+      if (visited == null || i >> 6 >= visited.length) {
+         visited = visited == null ? new long[(size + 63) >> 6] : Arrays.copyOf(visited, (size + 63) >> 6);
+      }
+      visited[i >> 6] ^= 1L << i;
+      remaining += visit ? -1 : 1;
+   }
+
+   private int indexOf(AttackStep parent) {
+      normalize();
+      return find(parent);
+   }
+
+   // The index of parent, looking through the parents added since the latest
+   // lookup one by one.
+   private int find(AttackStep parent) {
+      for (int i = sortedSize; i < size; i++) {
+         if (parents[i] == parent) {
+            return i;
+         }
+      }
+      int hash = System.identityHashCode(parent);
+      int low = 0;
+      int high = sortedSize;
+      while (low < high) {
+         int middle = (low + high) >>> 1;
+         if (System.identityHashCode(parents[middle]) < hash) {
+            low = middle + 1;
+         }
+         else {
+            high = middle;
+         }
+      }
+      for (int i = low; i < sortedSize && System.identityHashCode(parents[i]) == hash; i++) {
+         if (parents[i] == parent) {
+            return i;
+         }
+      }
+      return -1;
+   }
+
+   // Orders the parents added since the last lookup in among the others,
+   // keeping the visited bits with their parents.
+   private void normalize() {
+      if (sortedSize == size) {
+         return;
+      }
+      sortedSize = size;
+      long[] order = new long[size];
+      for (int i = 0; i < size; i++) {
+         order[i] = (long) System.identityHashCode(parents[i]) << 32 | i;
+      }
+      Arrays.sort(order);
+      AttackStep[] sortedParents = new AttackStep[size];
+      boolean[] sortedVisited = new boolean[size];
+      for (int j = 0; j < size; j++) {
+         int i = (int) order[j];
+         sortedParents[j] = parents[i];
+         sortedVisited[j] = isVisited(i);
+      }
+      parents = sortedParents;
+      visited = null;
+      remaining = size;
+      for (int i = 0; i < size; i++) {
+         setVisited(i, sortedVisited[i]);
+      }
+   }
+
+}
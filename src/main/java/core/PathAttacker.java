@@ -0,0 +1,431 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Finds the k cheapest loop-free attack paths to a target with Yen's
+ * algorithm. Along a path, an OR step is reached its local ttc after the step
+ * before it, while an AND step also waits for its other expected parents,
+ * which are taken at their ttc in the base attack. The cheapest path is thus
+ * the critical path of the base attack.
+ * <p>
+ * The base attack is run once. Every spur search of Yen's algorithm is an A*
+ * search towards the target, guided by the cheapest sum of local ttcs from
+ * each step to the target, so it only leaves the paths already found where
+ * it has to.
+ */
+public class PathAttacker extends Attacker {
+
+   public PathAttacker() {
+      super();
+   }
+
+   public PathAttacker(boolean verbose) {
+      super(verbose);
+   }
+
+   public PathAttacker(Model model) {
+      super(model);
+   }
+
+   public List<AttackPath> shortestPaths(String profilePath, AttackStep target, int k) {
+      return shortestPaths(loadProfile(profilePath), target, k);
+   }
+
+   /**
+    * Attacks from the attack points added so far, leaving the result on the
+    * attack steps as attack() does, and returns up to k cheapest paths to
+    * target, cheapest first. Empty if target is not reached.
+    */
+   public List<AttackPath> shortestPaths(Properties profile, AttackStep target, int k) {
+      bindTtcs(readProfile(profile));
+      AttackGraph graph = new AttackGraph(model);
+      double[] localTtc = graph.localTtcs();
+      int[] entries = graph.indicesOf(takeEntrySteps());
+      AttackGraph.Search search = graph.newSearch();
+      search.trackPredecessors = true;
+      search.run(entries, localTtc);
+      graph.writeBack(search);
+      model.horizon = AttackStep.infinity;
+
+      List<AttackPath> paths = new ArrayList<>();
+      int t = graph.indexOf(target);
+      if (t < 0 || search.ttc[t] == AttackStep.infinity || k <= 0) {
+         return paths;
+      }
+      Yen yen = new Yen(graph, localTtc, search.ttc, entries, t);
+      for (Path path : yen.paths(k)) {
+         List<AttackStep> attackSteps = new ArrayList<>();
+         for (int step : path.steps) {
+            attackSteps.add(graph.attackSteps[step]);
+         }
+         paths.add(new AttackPath(attackSteps, path.ttcs));
+      }
+      if (verbose) {
+         System.out.print("Found " + paths.size() + " paths with " + yen.spurSearches + " spur searches expanding " + yen.expanded + " attack steps.\n");
+      }
+      return paths;
+   }
+
+   private static class Path {
+      final int[]    steps;
+      // edges[i] is the edge from steps[i] to steps[i + 1].
+      final int[]    edges;
+      final double[] ttcs;
+      // Index of the first step this path does not share with the path it
+      // branched off, from where later spur searches start.
+      final int      deviation;
+
+      Path(int[] steps, int[] edges, double[] ttcs, int deviation) {
+         this.steps = steps;
+         this.edges = edges;
+         this.ttcs = ttcs;
+         this.deviation = deviation;
+      }
+
+      double ttc() {
+         return ttcs[ttcs.length - 1];
+      }
+
+      @Override
+      public boolean equals(Object o) {
+         return o instanceof Path && Arrays.equals(steps, ((Path) o).steps);
+      }
+
+      @Override
+      public int hashCode() {
+         return Arrays.hashCode(steps);
+      }
+   }
+
+   private static class Yen {
+      AttackGraph graph;
+      double[]    localTtc;
+      int[]       entries;
+      int         target;
+      // The cheapest sum of local ttcs from each step to target, a lower bound
+      // on the time it takes.
+      double[]    remainingTtc;
+      // For AND steps, the latest ttc among the parents they wait for in the
+      // base attack, the second latest, and the parent the latest belongs to.
+      double[]    latestParent;
+      double[]    secondParent;
+      int[]       latestParentStep;
+
+      // A* state, valid for the steps stamped with the current search.
+      int[]       stamp;
+      int         epoch;
+      boolean[]   settled;
+      double[]    ttc;
+      int[]       from;
+      int[]       fromEdge;
+      int[]       heap;
+      int[]       position;
+      double[]    key;
+      int         heapSize;
+      // Steps and edges stamped with blockEpoch may not be used by a spur.
+      int[]       blockedStep;
+      int[]       blockedEdge;
+      int         blockEpoch;
+
+      int         spurSearches;
+      int         expanded;
+
+      Yen(AttackGraph graph, double[] localTtc, double[] baseTtc, int[] entries, int target) {
+         this.graph = graph;
+         this.localTtc = localTtc;
+         this.entries = entries;
+         this.target = target;
+         int n = graph.size();
+         latestParent = new double[n];
+         secondParent = new double[n];
+         latestParentStep = new int[n];
+         for (int step = 0; step < n; step++) {
+            latestParentStep[step] = -1;
+            if (!waits(step)) {
+               continue;
+            }
+            if (baseTtc[step] == AttackStep.infinity) {
+               latestParent[step] = AttackStep.infinity;
+               continue;
+            }
+            for (int j = graph.parentOffsets[step]; j < graph.parentOffsets[step + 1]; j++) {
+               int parent = graph.parents[j];
+               if (!graph.counts[graph.parentEdges[j]]) {
+                  continue;
+               }
+               if (latestParentStep[step] < 0 || baseTtc[parent] > latestParent[step]) {
+                  secondParent[step] = latestParent[step];
+                  latestParent[step] = baseTtc[parent];
+                  latestParentStep[step] = parent;
+               }
+               else if (baseTtc[parent] > secondParent[step]) {
+                  secondParent[step] = baseTtc[parent];
+               }
+            }
+         }
+         stamp = new int[n];
+         settled = new boolean[n];
+         ttc = new double[n];
+         from = new int[n];
+         fromEdge = new int[n];
+         heap = new int[n];
+         position = new int[n];
+         key = new double[n];
+         blockedStep = new int[n];
+         blockedEdge = new int[graph.children.length];
+         remainingTtc = remainingTtcs();
+      }
+
+      private boolean waits(int step) {
+         return graph.and[step] && graph.parentCounts[step] > 0;
+      }
+
+      // The time at which child is reached over edge k from parent, reached
+      // at parentTtc.
+      private double next(int parent, double parentTtc, int child, int k) {
+         double childTtc = parentTtc;
+         if (waits(child)) {
+            double others = graph.counts[k] && latestParentStep[child] == parent ? secondParent[child] : latestParent[child];
+            if (others == AttackStep.infinity) {
+               return AttackStep.infinity;
+            }
+            childTtc = Math.max(childTtc, others);
+         }
+         childTtc += localTtc[child];
+         return childTtc < AttackStep.infinity ? childTtc : AttackStep.infinity;
+      }
+
+      // Reverse Dijkstra from target over the parent edges.
+      private double[] remainingTtcs() {
+         double[] remaining = new double[graph.size()];
+         Arrays.fill(remaining, AttackStep.infinity);
+         epoch++;
+         remaining[target] = 0;
+         push(target, 0);
+         while (heapSize > 0) {
+            int child = pop();
+            for (int j = graph.parentOffsets[child]; j < graph.parentOffsets[child + 1]; j++) {
+               int parent = graph.parents[j];
+               double parentRemaining = remaining[child] + localTtc[child];
+               if (!settled[parent] && parentRemaining < remaining[parent] && latestParent[child] < AttackStep.infinity) {
+                  remaining[parent] = parentRemaining;
+                  push(parent, parentRemaining);
+               }
+            }
+         }
+         return remaining;
+      }
+
+      List<Path> paths(int k) {
+         List<Path> found = new ArrayList<>();
+         PriorityQueue<Path> candidates = new PriorityQueue<>(Comparator.comparingDouble(Path::ttc).thenComparingInt(path -> path.steps.length));
+         Set<Path> seen = new HashSet<>();
+         blockEpoch++;
+         Path first = spur(null, -1, entries);
+         if (first == null) {
+            return found;
+         }
+         candidates.add(first);
+         seen.add(first);
+         while (found.size() < k && !candidates.isEmpty()) {
+            Path path = candidates.poll();
+            found.add(path);
+            if (found.size() == k) {
+               break;
+            }
+            // Branch off the new path at every step from where it branched off
+            // its own parent path, -1 standing for the choice of entry step.
+            for (int i = path.deviation; i < path.steps.length - 1; i++) {
+               blockEpoch++;
+               for (int j = 0; j < i; j++) {
+                  blockedStep[path.steps[j]] = blockEpoch;
+               }
+               int[] sources;
+               if (i < 0) {
+                  sources = otherEntries(found);
+               }
+               else {
+                  sources = new int[] {path.steps[i]};
+                  for (Path other : found) {
+                     if (other.steps.length > i + 1 && sharesPrefix(other, path, i)) {
+                        blockedEdge[other.edges[i]] = blockEpoch;
+                     }
+                  }
+               }
+               Path candidate = spur(i < 0 ? null : path, i, sources);
+               if (candidate != null && seen.add(candidate)) {
+                  candidates.add(candidate);
+               }
+            }
+         }
+         return found;
+      }
+
+      // The entry steps no path found so far starts at.
+      private int[] otherEntries(List<Path> found) {
+         Set<Integer> used = new HashSet<>();
+         for (Path other : found) {
+            used.add(other.steps[0]);
+         }
+         int[] sources = new int[entries.length];
+         int n = 0;
+         for (int entry : entries) {
+            if (!used.contains(entry)) {
+               sources[n++] = entry;
+            }
+         }
+         return Arrays.copyOf(sources, n);
+      }
+
+      private static boolean sharesPrefix(Path a, Path b, int i) {
+         for (int j = 0; j <= i; j++) {
+            if (a.steps[j] != b.steps[j]) {
+               return false;
+            }
+         }
+         return true;
+      }
+
+      /**
+       * A* from sources to target avoiding the blocked steps and edges, where
+       * the sources are reached when root is, or at time 0 if root is null.
+       * Returns the root up to step i followed by the spur found, or null.
+       */
+      private Path spur(Path root, int i, int[] sources) {
+         spurSearches++;
+         epoch++;
+         heapSize = 0;
+         for (int source : sources) {
+            if (blockedStep[source] == blockEpoch || stamp[source] == epoch || remainingTtc[source] == AttackStep.infinity) {
+               continue;
+            }
+            double sourceTtc = root == null ? 0 : root.ttcs[i];
+            ttc[source] = sourceTtc;
+            from[source] = -1;
+            push(source, sourceTtc + remainingTtc[source]);
+         }
+         while (heapSize > 0) {
+            int parent = pop();
+            expanded++;
+            if (parent == target) {
+               return path(root, i, parent);
+            }
+            for (int k = graph.childOffsets[parent]; k < graph.childOffsets[parent + 1]; k++) {
+               int child = graph.children[k];
+               if (blockedEdge[k] == blockEpoch || blockedStep[child] == blockEpoch || remainingTtc[child] == AttackStep.infinity) {
+                  continue;
+               }
+               if (stamp[child] == epoch && settled[child]) {
+                  continue;
+               }
+               double childTtc = next(parent, ttc[parent], child, k);
+               if (childTtc == AttackStep.infinity || (stamp[child] == epoch && childTtc >= ttc[child])) {
+                  continue;
+               }
+               ttc[child] = childTtc;
+               from[child] = parent;
+               fromEdge[child] = k;
+               push(child, childTtc + remainingTtc[child]);
+            }
+         }
+         return null;
+      }
+
+      private Path path(Path root, int i, int end) {
+         int length = i + 1;
+         for (int step = end; from[step] >= 0; step = from[step]) {
+            length++;
+         }
+         if (root == null) {
+            length++;
+         }
+         int[] steps = new int[length];
+         int[] edges = new int[length - 1];
+         double[] ttcs = new double[length];
+         int j = length - 1;
+         for (int step = end; ; step = from[step]) {
+            steps[j] = step;
+            ttcs[j] = ttc[step];
+            if (from[step] < 0) {
+               break;
+            }
+            edges[--j] = fromEdge[step];
+         }
+         if (root != null) {
+            System.arraycopy(root.steps, 0, steps, 0, i);
+            System.arraycopy(root.edges, 0, edges, 0, i);
+            System.arraycopy(root.ttcs, 0, ttcs, 0, i);
+         }
+         return new Path(steps, edges, ttcs, root == null ? -1 : i);
+      }
+
+      // Queues step with the given key, or lowers its key if already queued.
+      private void push(int step, double stepKey) {
+         if (stamp[step] != epoch) {
+            stamp[step] = epoch;
+            settled[step] = false;
+            position[step] = heapSize;
+            heap[heapSize++] = step;
+         }
+         key[step] = stepKey;
+         siftUp(position[step]);
+      }
+
+      private int pop() {
+         int min = heap[0];
+         settled[min] = true;
+         heapSize--;
+         if (heapSize > 0) {
+            heap[0] = heap[heapSize];
+            position[heap[0]] = 0;
+            siftDown(0);
+         }
+         return min;
+      }
+
+      private void siftUp(int i) {
+         int step = heap[i];
+         double stepKey = key[step];
+         while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (key[heap[parent]] <= stepKey) {
+               break;
+            }
+            heap[i] = heap[parent];
+            position[heap[i]] = i;
+            i = parent;
+         }
+         heap[i] = step;
+         position[step] = i;
+      }
+
+      private void siftDown(int i) {
+         int step = heap[i];
+         double stepKey = key[step];
+         int half = heapSize >>> 1;
+         while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < heapSize && key[heap[child + 1]] < key[heap[child]]) {
+               child++;
+            }
+            if (stepKey <= key[heap[child]]) {
+               break;
+            }
+            heap[i] = heap[child];
+            position[heap[i]] = i;
+            i = child;
+         }
+         heap[i] = step;
+         position[step] = i;
+      }
+   }
+
+}
@@ -0,0 +1,124 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Monotone radix heap. Steps are settled in non-decreasing ttc order, so a
+ * step is only ever added with a ttc at least as large as the last polled one.
+ * Non-negative doubles order the same way as their raw bits, and a step is
+ * kept in the bucket given by the highest bit in which its key differs from
+ * the last polled key. Lowering a ttc adds a second entry; the stale one is
+ * skipped when it surfaces.
+ */
+public class RadixHeapFrontier extends Frontier {
+
+   private static class Entry {
+      AttackStep attackStep;
+      long       key;
+
+      Entry(AttackStep attackStep, long key) {
+         this.attackStep = attackStep;
+         this.key = key;
+      }
+   }
+
+   @SuppressWarnings({ "unchecked", "rawtypes" })
+   private List<Entry>[]         buckets = new List[65];
+   private long                  last    = 0;
+   private Map<AttackStep, Long> keys    = new HashMap<>();
+
+   public RadixHeapFrontier() {
+      for (int i = 0; i < buckets.length; i++) {
+         buckets[i] = new ArrayList<>();
+      }
+   }
+
+   private int bucket(long key) {
+      return 64 - Long.numberOfLeadingZeros(key ^ last);
+   }
+
+   @Override
+   public boolean add(AttackStep attackStep) {
+      if (keys.isEmpty()) {
+         // Nothing is pending, so the run may start over from ttc 0.
+         clear();
+      }
+      long key = Double.doubleToLongBits(attackStep.ttc + 0.0);
+      if (attackStep.ttc < 0 || key < last) {
+         throw new IllegalStateException("Radix heap requires monotone ttcs, but " + attackStep.fullName() + " was added at " + attackStep.ttc + " after " + Double.longBitsToDouble(last) + ".");
+      }
+      Long previousKey = keys.put(attackStep, key);
+      if (previousKey != null && previousKey <= key) {
+         keys.put(attackStep, previousKey);
+         return false;
+      }
+      buckets[bucket(key)].add(new Entry(attackStep, key));
+      return previousKey == null;
+   }
+
+   @Override
+   public AttackStep poll() {
+      while (!keys.isEmpty()) {
+         if (buckets[0].isEmpty()) {
+            int i = 1;
+            while (buckets[i].isEmpty()) {
+               i++;
+            }
+            List<Entry> bucket = buckets[i];
+            long min = Long.MAX_VALUE;
+            for (Entry entry : bucket) {
+               min = Math.min(min, entry.key);
+            }
+            last = min;
+            buckets[i] = new ArrayList<>();
+            for (Entry entry : bucket) {
+               buckets[bucket(entry.key)].add(entry);
+            }
+         }
+         List<Entry> bucket = buckets[0];
+         Entry entry = bucket.remove(bucket.size() - 1);
+         Long key = keys.get(entry.attackStep);
+         if (key != null && key == entry.key) {
+            keys.remove(entry.attackStep);
+            return entry.attackStep;
+         }
+      }
+      clear();
+      return null;
+   }
+
+   @Override
+   public boolean remove(Object o) {
+      return keys.remove(o) != null;
+   }
+
+   @Override
+   public boolean contains(Object o) {
+      return keys.containsKey(o);
+   }
+
+   @Override
+   public Iterator<AttackStep> iterator() {
+      return Collections.unmodifiableSet(keys.keySet()).iterator();
+   }
+
+   @Override
+   public int size() {
+      return keys.size();
+   }
+
+   @Override
+   public void clear() {
+      for (List<Entry> bucket : buckets) {
+         bucket.clear();
+      }
+      keys.clear();
+      last = 0;
+   }
+
+}
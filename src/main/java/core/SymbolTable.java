@@ -0,0 +1,63 @@
+package core;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Dense integer ids for the "Asset.attackStep" entries of a language's
+ * attacker profile. CompilerWriter emits one per language as TtcSymbols.TABLE,
+ * and every generated attack step returns its entry from ttcId(), so a profile
+ * can be resolved into a double[] once and indexed from then on.
+ */
+public class SymbolTable {
+
+   public static final SymbolTable EMPTY = new SymbolTable(new String[0], new boolean[0]);
+
+   private final String[]             names;
+   private final boolean[]            defenses;
+   private final Map<String, Integer> ids = new HashMap<>();
+
+   public SymbolTable(String[] names, boolean[] defenses) {
+      if (names.length != defenses.length) {
+         throw new IllegalArgumentException("Got " + names.length + " names but " + defenses.length + " defense flags.");
+      }
+      this.names = names;
+      this.defenses = defenses;
+      for (int id = 0; id < names.length; id++) {
+         ids.put(names[id], id);
+      }
+   }
+
+   // The table generated next to the attack steps of the given class, by the
+   // class loader of the language, which need not be the one of core.
+   static SymbolTable of(Class<?> attackStepClass) {
+      String className = attackStepClass.getName();
+      String packageName = className.substring(0, className.lastIndexOf('.') + 1);
+      try {
+         return (SymbolTable) Class.forName(packageName + "TtcSymbols", true, attackStepClass.getClassLoader()).getField("TABLE").get(null);
+      }
+      catch (ReflectiveOperationException e) {
+         System.err.printf("Could not load the ttc symbol table of %s\n", className);
+         return EMPTY;
+      }
+   }
+
+   public int size() {
+      return names.length;
+   }
+
+   public String name(int id) {
+      return names[id];
+   }
+
+   public boolean isDefense(int id) {
+      return defenses[id];
+   }
+
+   // The id of name, or -1 if the profile of the language has no such entry.
+   public int id(String name) {
+      Integer id = ids.get(name);
+      return id == null ? -1 : id;
+   }
+
+}
@@ -0,0 +1,165 @@
+package core;
+
+import java.util.SplittableRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A parsed entry of the attacker profile, e.g. "GammaDistribution(0.3,0.25)".
+ * The deterministic attacker only uses its mean, the Monte Carlo attacker
+ * draws samples from it. Parameters follow the conventions of mean(), so
+ * Exponential and Gamma take rates and LogNormal takes the variance of the
+ * underlying normal.
+ */
+public class TtcDistribution {
+
+   private static final Pattern pattern = Pattern.compile("([a-z]+)\\(*([0-9.]+)*,*([0-9.]+)*\\)*", Pattern.CASE_INSENSITIVE);
+
+   public final String          name;
+   public final double          a;
+   public final double          b;
+
+   public TtcDistribution(String name, double a, double b) {
+      this.name = name;
+      this.a = a;
+      this.b = b;
+   }
+
+   public static TtcDistribution parse(String dist) {
+      Matcher matcher = pattern.matcher(dist);
+      matcher.matches();
+      double a = 0;
+      double b = 0;
+      try {
+         a = Double.valueOf(matcher.group(2));
+         b = Double.valueOf(matcher.group(3));
+      }
+      catch (Exception e) {
+      }
+      return new TtcDistribution(matcher.group(1), a, b);
+   }
+
+   public double mean(boolean defense) {
+      switch (name) {
+         case "BernoulliDistribution":
+            if (defense) {
+               return a < 0.5 ? 0 : Double.MAX_VALUE;
+            }
+            else {
+               return a < 0.5 ? Double.MAX_VALUE : 0;
+            }
+         case "BinomialDistribution":
+            return a * b;
+         case "ExponentialDistribution":
+            return 1 / a;
+         case "GammaDistribution":
+            return a / b;
+         case "Infinity":
+            return Double.MAX_VALUE;
+         case "LogNormalDistribution":
+            return Math.exp(a + b / 2);
+         case "NormalDistribution":
+            return a;
+         case "ParetoDistribution":
+            return a <= 1 ? Double.MAX_VALUE : a * b / (a - 1);
+         case "TruncatedNormalDistribution":
+            return a;
+         case "UniformDistribution":
+            return (a + b) / 2;
+         case "Zero":
+            return 0;
+         default:
+            System.err.printf("No matching distribution for: %s\n", name);
+            return 0;
+      }
+   }
+
+   /**
+    * Draws a ttc for an attack step. Negative draws are clamped to zero and an
+    * impossible step is AttackStep.infinity.
+    */
+   public double sample(SplittableRandom random) {
+      switch (name) {
+         case "BernoulliDistribution":
+            return random.nextDouble() < a ? 0 : AttackStep.infinity;
+         case "BinomialDistribution":
+            int successes = 0;
+            for (int i = 0; i < (int) a; i++) {
+               if (random.nextDouble() < b) {
+                  successes++;
+               }
+            }
+            return successes;
+         case "ExponentialDistribution":
+            return -Math.log(1 - random.nextDouble()) / a;
+         case "GammaDistribution":
+            return gamma(random, a) / b;
+         case "Infinity":
+            return AttackStep.infinity;
+         case "LogNormalDistribution":
+            return Math.exp(a + Math.sqrt(b) * gaussian(random));
+         case "NormalDistribution":
+            return Math.max(0, a + b * gaussian(random));
+         case "ParetoDistribution":
+            return b / Math.pow(1 - random.nextDouble(), 1 / a);
+         case "TruncatedNormalDistribution":
+            if (b == 0) {
+               return Math.max(0, a);
+            }
+            double x;
+            do {
+               x = a + b * gaussian(random);
+            } while (x < 0);
+            return x;
+         case "UniformDistribution":
+            return a + (b - a) * random.nextDouble();
+         case "Zero":
+            return 0;
+         default:
+            return 0;
+      }
+   }
+
+   private static double gaussian(SplittableRandom random) {
+      double u;
+      double v;
+      double s;
+      do {
+         u = 2 * random.nextDouble() - 1;
+         v = 2 * random.nextDouble() - 1;
+         s = u * u + v * v;
+      } while (s >= 1 || s == 0);
+      return u * Math.sqrt(-2 * Math.log(s) / s);
+   }
+
+   // Marsaglia and Tsang, with the usual boost for shapes below one.
+   private static double gamma(SplittableRandom random, double shape) {
+      if (shape <= 0) {
+         return 0;
+      }
+      if (shape < 1) {
+         return gamma(random, shape + 1) * Math.pow(random.nextDouble(), 1 / shape);
+      }
+      double d = shape - 1.0 / 3;
+      double c = 1 / Math.sqrt(9 * d);
+      while (true) {
+         double x;
+         double v;
+         do {
+            x = gaussian(random);
+            v = 1 + c * x;
+         } while (v <= 0);
+         v = v * v * v;
+         double u = random.nextDouble();
+         if (u < 1 - 0.0331 * x * x * x * x || Math.log(u) < 0.5 * x * x + d * (1 - v + Math.log(v))) {
+            return d * v;
+         }
+      }
+   }
+
+   @Override
+   public String toString() {
+      return name + "(" + a + "," + b + ")";
+   }
+
+}
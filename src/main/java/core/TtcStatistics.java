@@ -0,0 +1,75 @@
+package core;
+
+import java.util.Arrays;
+
+/**
+ * Sampled ttc of one attack step over the iterations of a Monte Carlo run.
+ * Quantiles are only available for steps that were observed before the run,
+ * since keeping every sample of every step does not fit large models.
+ */
+public class TtcStatistics {
+
+   public final AttackStep attackStep;
+   public final int        iterations;
+   public final double     horizon;
+   final int               compromised;
+   final int               compromisedWithinHorizon;
+   final double            ttcSum;
+   final double[]          samples;
+
+   TtcStatistics(AttackStep attackStep, int iterations, double horizon, int compromised, int compromisedWithinHorizon, double ttcSum, double[] samples) {
+      this.attackStep = attackStep;
+      this.iterations = iterations;
+      this.horizon = horizon;
+      this.compromised = compromised;
+      this.compromisedWithinHorizon = compromisedWithinHorizon;
+      this.ttcSum = ttcSum;
+      if (samples != null) {
+         samples = samples.clone();
+         Arrays.sort(samples);
+      }
+      this.samples = samples;
+   }
+
+   /**
+    * Mean ttc over the iterations in which the step was compromised, or
+    * AttackStep.infinity if it never was.
+    */
+   public double mean() {
+      return compromised == 0 ? AttackStep.infinity : ttcSum / compromised;
+   }
+
+   public double compromiseProbability() {
+      return (double) compromised / iterations;
+   }
+
+   public double probabilityWithinHorizon() {
+      return (double) compromisedWithinHorizon / iterations;
+   }
+
+   /**
+    * The q-quantile of the ttc over all iterations, where iterations that did
+    * not compromise the step count as AttackStep.infinity.
+    */
+   public double quantile(double q) {
+      if (samples == null) {
+         throw new IllegalStateException(attackStep.fullName() + " was not observed, so no quantiles were kept.");
+      }
+      int i = (int) Math.ceil(q * samples.length) - 1;
+      return samples[Math.min(Math.max(i, 0), samples.length - 1)];
+   }
+
+   public boolean isObserved() {
+      return samples != null;
+   }
+
+   @Override
+   public String toString() {
+      String str = attackStep.fullName() + ": mean " + mean() + ", P(compromised) " + compromiseProbability() + ", P(ttc <= " + horizon + ") " + probabilityWithinHorizon();
+      if (samples != null) {
+         str += ", median " + quantile(0.5) + ", 95% " + quantile(0.95);
+      }
+      return str;
+   }
+
+}
@@ -17,6 +17,10 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
@@ -36,6 +40,8 @@ public class CompilerWriter {
 
    PrintWriter          writer;
    public CompilerModel model;
+   // Dense ids of the attacker profile entries, in attackerProfile.ttc order.
+   Map<String, Integer> ttcIds = new LinkedHashMap<>();
 
    private String package2path(String packageName) throws IllegalArgumentException {
       if (!packageName.matches("\\w+(\\.\\w+)*$")) {
@@ -47,6 +53,11 @@ public class CompilerWriter {
 
    public CompilerWriter(File input, File output, String packageName) {
       this.model = new CompilerModel(input);
+      for (Asset asset : this.model.getAssets()) {
+         for (AttackStep attackStep : asset.attackSteps) {
+            ttcIds.put(asset.name + "." + attackStep.name, ttcIds.size());
+         }
+      }
       String name = input.getName().replaceFirst("\\.[^.]+$", ""); // strip .mal
       writeD3(output, name);
       writeJava(output, packageName, package2path(packageName));
@@ -175,6 +186,8 @@ public class CompilerWriter {
 
       File out = new File(output, packagePath);
       out.mkdirs();
+      writeTtcSymbols(out, packageName);
+      writeFactory(out, packageName);
 
       for (Asset asset : model.getAssets()) {
          File file = new File(out, asset.name + ".java");
@@ -191,6 +204,7 @@ public class CompilerWriter {
             printGetAssociatedAssetClassName(asset);
             printGetAssociatedAssets(asset);
             printGetAllAssociatedAssets(asset);
+            printForEachAssociatedAsset(asset);
             writer.println("}");
             writer.close();
 
@@ -206,6 +220,113 @@ public class CompilerWriter {
       }
    }
 
+   private void writeTtcSymbols(File out, String packageName) {
+      File file = new File(out, "TtcSymbols.java");
+      try {
+         writer = new PrintWriter(file.getAbsolutePath(), "UTF-8");
+         printPackage(packageName);
+         writer.println("import core.SymbolTable;\n");
+         writer.println("// Dense ids of the attacker profile entries, returned by AttackStep.ttcId().");
+         writer.println("public class TtcSymbols {");
+         writer.println("   public static final SymbolTable TABLE = new SymbolTable(new String[] {");
+         for (String name : ttcIds.keySet()) {
+            writer.println("      \"" + name + "\",");
+         }
+         writer.println("   }, new boolean[] {");
+         for (Asset asset : model.getAssets()) {
+            for (AttackStep attackStep : asset.attackSteps) {
+               writer.println("      " + attackStep.isDefense() + ",");
+            }
+         }
+         writer.println("   });");
+         writer.println("}");
+         writer.close();
+      }
+      catch (FileNotFoundException | UnsupportedEncodingException e) {
+         e.printStackTrace();
+      }
+   }
+
+   // Builds assets by type, role and defense names for core.ModelLoader. Roles
+   // and defenses are dispatched on the class that declares them.
+   private void writeFactory(File out, String packageName) {
+      File file = new File(out, "ModelFactory.java");
+      try {
+         writer = new PrintWriter(file.getAbsolutePath(), "UTF-8");
+         printPackage(packageName);
+         writer.println("import core.Asset;");
+         writer.println("import core.AssetFactory;\n");
+         writer.println("public class ModelFactory implements AssetFactory {\n");
+
+         writer.println("   @Override");
+         writer.println("   public Asset create(String typeName, String name) {");
+         writer.println("      switch (typeName) {");
+         for (Asset asset : model.getAssets()) {
+            if (!asset.abstractAsset) {
+               writer.println("      case \"" + asset.name + "\":");
+               writer.println("         return new " + asset.name + "(name);");
+            }
+         }
+         writer.println("      default:");
+         writer.println("         throw new IllegalArgumentException(\"No asset type \" + typeName);");
+         writer.println("      }");
+         writer.println("   }\n");
+
+         Map<String, List<Association>> roles = new LinkedHashMap<>();
+         for (Asset asset : model.getAssets()) {
+            for (Association association : model.getAssociations(asset)) {
+               roles.computeIfAbsent(association.rightRoleName, role -> new ArrayList<>()).add(association);
+            }
+         }
+         writer.println("   @Override");
+         writer.println("   public void link(Asset asset, String roleName, Asset target) {");
+         writer.println("      switch (roleName) {");
+         for (Map.Entry<String, List<Association>> role : roles.entrySet()) {
+            writer.println("      case \"" + role.getKey() + "\":");
+            for (Association association : role.getValue()) {
+               writer.println("         if (asset instanceof " + association.leftAssetName + " && target instanceof " + association.rightAssetName + ") {");
+               writer.println("            ((" + association.leftAssetName + ") asset).add" + capitalize(association.rightRoleName) + "((" + association.rightAssetName + ") target);");
+               writer.println("            return;");
+               writer.println("         }");
+            }
+            writer.println("         break;");
+         }
+         writer.println("      }");
+         writer.println("      throw new IllegalArgumentException(asset.name + \" has no role \" + roleName + \" for \" + target.name);");
+         writer.println("   }\n");
+
+         Map<String, List<Asset>> defenses = new LinkedHashMap<>();
+         for (Asset asset : model.getAssets()) {
+            for (AttackStep defense : asset.defensesExcludingExistenceRequirements()) {
+               if (defense.superAttackStepName.equals("")) {
+                  defenses.computeIfAbsent(defense.name, name -> new ArrayList<>()).add(asset);
+               }
+            }
+         }
+         writer.println("   @Override");
+         writer.println("   public void setDefense(Asset asset, String defenseName, boolean enabled) {");
+         writer.println("      switch (defenseName) {");
+         for (Map.Entry<String, List<Asset>> defense : defenses.entrySet()) {
+            writer.println("      case \"" + defense.getKey() + "\":");
+            for (Asset asset : defense.getValue()) {
+               writer.println("         if (asset instanceof " + asset.name + ") {");
+               writer.println("            ((" + asset.name + ") asset)." + defense.getKey() + ".defaultValue = enabled;");
+               writer.println("            return;");
+               writer.println("         }");
+            }
+            writer.println("         break;");
+         }
+         writer.println("      }");
+         writer.println("      throw new IllegalArgumentException(asset.name + \" has no defense \" + defenseName);");
+         writer.println("   }");
+         writer.println("}");
+         writer.close();
+      }
+      catch (FileNotFoundException | UnsupportedEncodingException e) {
+         e.printStackTrace();
+      }
+   }
+
    void printPackage(String packageName) {
       writer.println("package " + packageName + ";\n");
    }
@@ -339,9 +460,9 @@ public class CompilerWriter {
    protected String sprintStepCreation(Asset asset, String constructorString) {
       for (AttackStep defense : asset.defenses()) {
          constructorString += "      if (" + defense.name + " != null) {\n";
-         constructorString += "         AttackStep.allAttackSteps.remove(" + defense.name + ".disable);\n";
+         constructorString += "         getModel().removeAttackStep(" + defense.name + ".disable);\n";
          constructorString += "      }\n";
-         constructorString += "      Defense.allDefenses.remove(" + defense.name + ");\n";
+         constructorString += "      getModel().defenses.remove(" + defense.name + ");\n";
          constructorString += "      " + defense.name + " = new " + capitalize(defense.name) + "(this.name";
          if (!defense.hasExistenceRequirements()) {
             constructorString += ", " + defense.name + "State";
@@ -350,7 +471,7 @@ public class CompilerWriter {
       }
       for (AttackStep attackStep : asset.attackSteps) {
          if (!asset.defenses().contains(attackStep)) {
-            constructorString += "      AttackStep.allAttackSteps.remove(" + attackStep.name + ");\n";
+            constructorString += "      getModel().removeAttackStep(" + attackStep.name + ");\n";
             constructorString += "      " + attackStep.name + " = new " + capitalize(attackStep.name) + "(this.name);\n";
          }
       }
@@ -457,6 +578,11 @@ public class CompilerWriter {
             }
          }
          writer.println("   }");
+         writer.println();
+         writer.println("   @Override");
+         writer.println("   public boolean isConfigurable() {");
+         writer.println("      return false;");
+         writer.println("   }");
       }
 
    }
@@ -482,7 +608,6 @@ public class CompilerWriter {
       writer.println(attackStepTypeString + " {");
       writer.println("   public " + capitalize(attackStep.name) + "(String name) {");
       writer.println("      super(name);");
-      writer.println("      assetClassName = \"" + attackStep.asset.name + "\";");
       writer.println("   }");
 
       printSetExpectedParents(attackStep);
@@ -503,6 +628,15 @@ public class CompilerWriter {
             step.print(writer, "%s.updateTtc(this, ttc, activeAttackSteps);\n");
          }
          writer.println("}");
+         writer.println("@Override");
+         writer.println("public void forEachChild(java.util.function.Consumer<AttackStep> action) {");
+         if (attackStep.isExtension) {
+            writer.println("super.forEachChild(action);");
+         }
+         for (Step step : attackStep.steps) {
+            step.print(writer, "action.accept(%s);\n");
+         }
+         writer.println("}");
       }
    }
 
@@ -533,33 +667,14 @@ public class CompilerWriter {
 
    void printLocalTtc(AttackStep attackStep) {
       if (attackStep.asset.superAssetName.equals("")) {
+         String ttcName = attackStep.asset.name + "." + attackStep.name;
+         writer.println("      @Override");
+         writer.println("      public int ttcId() {");
+         writer.println("         return " + ttcIds.get(ttcName) + ";");
+         writer.println("      }\n");
          writer.println("      @Override");
-         writer.println("      public double localTtc() {");
-         writer.println("         return ttcHashMap.get(\"" + attackStep.asset.name + "." + attackStep.name + "\");");
-         // if (attackStep.ttcFunction.equals("ExponentialDistribution")) {
-         // writer.println(" return " +
-         // attackStep.ttcParameters.get(0).toString() + ";");
-         // }
-         // else {
-         // if (attackStep.ttcFunction.equals("GammaDistribution")) {
-         // writer.println(" return " +
-         // Float.toString((attackStep.ttcParameters.get(0) *
-         // attackStep.ttcParameters.get(1))) + ";");
-         // }
-         // else {
-         // if (attackStep.ttcFunction.equals("BernoulliDistribution")) {
-         // writer.println(" if (" + attackStep.ttcParameters.get(0).toString()
-         // + " > 0.5 ) {");
-         // writer.println(" return oneSecond;\n}");
-         // writer.println(" else {");
-         // writer.println(" return infinity;\n}");
-         // }
-         // else {
-         // assert false : "Unknown distribution for attack step " +
-         // attackStep.asset.name + "." + attackStep.name + ".";
-         // }
-         // }
-         // }
+         writer.println("      public String ttcName() {");
+         writer.println("         return \"" + ttcName + "\";");
          writer.println("      }\n");
       }
    }
@@ -582,6 +697,7 @@ public class CompilerWriter {
          else {
             writer.println("         " + targetRoleName + "." + sourceRoleName + ".add(this);");
          }
+         writer.println("         getModel().associationsChanged();");
          writer.println("      }\n");
       }
    }
@@ -644,4 +760,23 @@ public class CompilerWriter {
       writer.println("   }");
    }
 
+   void printForEachAssociatedAsset(Asset asset) {
+      writer.println("   @Override");
+      writer.println("   public void forEachAssociatedAsset(java.util.function.Consumer<Asset> action) {");
+      for (Association association : asset.getAssociationsIncludingInherited()) {
+         String roleName = (String) association.getTargetRoleNameIncludingInheritance(asset);
+         if (association.targetMultiplicityIncludingInheritance(asset).equals("*") || association.targetMultiplicityIncludingInheritance(asset).equals("1-*")) {
+            writer.println("      for (Asset asset : " + roleName + ") {");
+            writer.println("         action.accept(asset);");
+            writer.println("      }");
+         }
+         else {
+            writer.println("      if (" + roleName + " != null) {");
+            writer.println("         action.accept(" + roleName + ");");
+            writer.println("      }");
+         }
+      }
+      writer.println("   }");
+   }
+
 }
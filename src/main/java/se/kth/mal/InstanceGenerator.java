@@ -0,0 +1,479 @@
+package se.kth.mal;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+/**
+ * Generates seeded random instance models of a compiled language, for scale
+ * testing. The assets are created first, spread evenly over the concrete
+ * asset types unless counts are given per type, then every association of
+ * the language is filled in turn. Multiplicities are kept: a side that
+ * allows one asset gets at most one, and a mandatory side at least one when
+ * there are assets to link to. On a side that allows several, an asset gets
+ * fanOut links on average. Each configurable defense is enabled with
+ * probability defenseRatio.
+ * <p>
+ * The model is streamed to a Sink asset by asset and link by link, either
+ * straight into a core.Model of the generated classes or to a file.
+ */
+public class InstanceGenerator {
+
+   // Receives the generated model. Assets are numbered from 0 in the order
+   // they are created, and all are created before the first association.
+   public interface Sink {
+      // defenseStates follow type.defensesExcludingExistenceRequirements(),
+      // the parameter order of the generated constructors.
+      void asset(int id, Asset type, String name, boolean[] defenseStates);
+
+      // left.add<RightRole>(right) in the generated classes.
+      void association(int left, Association association, int right);
+   }
+
+   private CompilerModel        model;
+   private long                 seed;
+   private int                  size;
+   private Map<String, Integer> counts       = new HashMap<>();
+   private double               fanOut       = 2;
+   private Map<String, Double>  fanOuts      = new HashMap<>();
+   private double               defenseRatio = 0.5;
+
+   private Random               random;
+   private List<Asset>          types;
+   private int[]                starts;
+   private Map<String, int[]>   instances;
+
+   public InstanceGenerator(CompilerModel model, long seed) {
+      this.model = model;
+      this.seed = seed;
+   }
+
+   // The number of assets, spread over the concrete types without a count.
+   public InstanceGenerator setSize(int size) {
+      this.size = size;
+      return this;
+   }
+
+   public InstanceGenerator setCount(String assetName, int count) {
+      model.getAsset(assetName);
+      counts.put(assetName, count);
+      return this;
+   }
+
+   public InstanceGenerator setFanOut(double fanOut) {
+      this.fanOut = fanOut;
+      return this;
+   }
+
+   // Overrides the fan-out of every association called associationName.
+   public InstanceGenerator setFanOut(String associationName, double fanOut) {
+      fanOuts.put(associationName, fanOut);
+      return this;
+   }
+
+   public InstanceGenerator setDefenseRatio(double defenseRatio) {
+      this.defenseRatio = defenseRatio;
+      return this;
+   }
+
+   public void generate(Sink sink) {
+      random = new Random(seed);
+      createAssets(sink);
+      instances = new HashMap<>();
+      for (Association association : model.getAssociations()) {
+         link(sink, association);
+      }
+      instances = null;
+   }
+
+   /**
+    * Instantiates the generated classes of the language in packageName,
+    * which must be on the classpath, into a new model.
+    */
+   public core.Model instantiate(String packageName) {
+      core.Model instance = new core.Model();
+      instance.run(() -> generate(new ModelSink(packageName)));
+      return instance;
+   }
+
+   public void write(File file) throws IOException {
+      try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+         write(writer);
+      }
+   }
+
+   /**
+    * Writes the model as lines of comma separated values, first the assets
+    * as "asset,type,name,enabledDefense;...", then the associations as
+    * "association,leftName,rightRole,rightName".
+    */
+   public void write(Writer writer) {
+      Writer buffered = writer instanceof BufferedWriter ? writer : new BufferedWriter(writer);
+      generate(new CsvSink(buffered));
+      try {
+         buffered.flush();
+      }
+      catch (IOException e) {
+         throw new UncheckedIOException(e);
+      }
+   }
+
+   private void createAssets(Sink sink) {
+      types = new ArrayList<>();
+      int fixed = 0;
+      for (Asset asset : model.getAssets()) {
+         if (!asset.abstractAsset) {
+            types.add(asset);
+            fixed += counts.getOrDefault(asset.name, 0);
+         }
+      }
+      int spread = 0;
+      for (Asset type : types) {
+         if (!counts.containsKey(type.name)) {
+            spread++;
+         }
+      }
+      int remaining = Math.max(0, size - fixed);
+      starts = new int[types.size() + 1];
+      int id = 0;
+      for (int t = 0; t < types.size(); t++) {
+         Asset type = types.get(t);
+         int count;
+         if (counts.containsKey(type.name)) {
+            count = counts.get(type.name);
+         }
+         else {
+            count = remaining / spread + (remaining % spread > 0 ? 1 : 0);
+            remaining -= count;
+            spread--;
+         }
+         starts[t] = id;
+         int nDefenses = type.defensesExcludingExistenceRequirements().size();
+         for (int i = 0; i < count; i++) {
+            boolean[] defenseStates = new boolean[nDefenses];
+            for (int d = 0; d < nDefenses; d++) {
+               defenseStates[d] = random.nextDouble() < defenseRatio;
+            }
+            sink.asset(id++, type, type.name + i, defenseStates);
+         }
+      }
+      starts[types.size()] = id;
+   }
+
+   // The ids of the assets of assetName and its specializations.
+   private int[] instancesOf(String assetName) {
+      int[] ids = instances.get(assetName);
+      if (ids == null) {
+         int n = 0;
+         int[] all = new int[starts[types.size()]];
+         for (int t = 0; t < types.size(); t++) {
+            Asset type = types.get(t);
+            if (type.name.equals(assetName) || type.superAssets().contains(model.getAsset(assetName))) {
+               for (int id = starts[t]; id < starts[t + 1]; id++) {
+                  all[n++] = id;
+               }
+            }
+         }
+         ids = Arrays.copyOf(all, n);
+         instances.put(assetName, ids);
+      }
+      return ids;
+   }
+
+   private static boolean isSingle(String multiplicity) {
+      return multiplicity.equals(Association.ONE) || multiplicity.equals("0-1");
+   }
+
+   private static boolean isMandatory(String multiplicity) {
+      return multiplicity.equals(Association.ONE) || multiplicity.equals(Association.ONE_TO_MANY);
+   }
+
+   // fanOut links on average, as the integer below or above it.
+   private int draw(double fanOut) {
+      int n = (int) fanOut;
+      return random.nextDouble() < fanOut - n ? n + 1 : n;
+   }
+
+   private void link(Sink sink, Association association) {
+      int[] lefts = instancesOf(association.leftAssetName);
+      int[] rights = instancesOf(association.rightAssetName);
+      if (lefts.length == 0 || rights.length == 0) {
+         return;
+      }
+      double fanOut = fanOuts.getOrDefault(association.name, this.fanOut);
+      if (isSingle(association.leftMultiplicity)) {
+         // Every right asset has at most one left asset.
+         linkOwned(sink, association, lefts, rights, false, isSingle(association.rightMultiplicity), isMandatory(association.rightMultiplicity), isMandatory(association.leftMultiplicity),
+               fanOut);
+      }
+      else if (isSingle(association.rightMultiplicity)) {
+         linkOwned(sink, association, rights, lefts, true, false, isMandatory(association.leftMultiplicity), isMandatory(association.rightMultiplicity), fanOut);
+      }
+      else {
+         linkMany(sink, association, lefts, rights, isMandatory(association.rightMultiplicity), isMandatory(association.leftMultiplicity), fanOut);
+      }
+   }
+
+   // Hands out each member to at most one owner. An owner takes up to
+   // fanOut members, or one with probability fanOut if it only takes one.
+   private void linkOwned(Sink sink, Association association, int[] owners, int[] members, boolean ownersAreRight, boolean ownerSingle, boolean ownerMandatory, boolean memberMandatory,
+         double fanOut) {
+      int[] pool = members.clone();
+      int nPool = pool.length;
+      boolean[] hasMember = new boolean[owners.length];
+      for (int o = 0; o < owners.length && nPool > 0; o++) {
+         int k = ownerSingle ? (random.nextDouble() < fanOut ? 1 : 0) : draw(fanOut);
+         if (ownerMandatory) {
+            k = Math.max(k, 1);
+         }
+         for (int i = 0; i < k && nPool > 0; i++) {
+            int p = random.nextInt(nPool);
+            emit(sink, association, owners[o], pool[p], ownersAreRight);
+            pool[p] = pool[--nPool];
+            hasMember[o] = true;
+         }
+      }
+      if (memberMandatory) {
+         // An owner that takes one member is drawn from those still free.
+         int[] free = new int[owners.length];
+         int nFree = 0;
+         for (int o = 0; o < owners.length; o++) {
+            if (!hasMember[o]) {
+               free[nFree++] = o;
+            }
+         }
+         for (int p = 0; p < nPool; p++) {
+            int o;
+            if (ownerSingle) {
+               if (nFree == 0) {
+                  break;
+               }
+               int f = random.nextInt(nFree);
+               o = free[f];
+               free[f] = free[--nFree];
+            }
+            else {
+               o = random.nextInt(owners.length);
+            }
+            emit(sink, association, owners[o], pool[p], ownersAreRight);
+         }
+      }
+   }
+
+   private void linkMany(Sink sink, Association association, int[] lefts, int[] rights, boolean leftMandatory, boolean rightMandatory, double fanOut) {
+      boolean[] hasLeft = new boolean[rights.length];
+      Set<Integer> chosen = new HashSet<>();
+      for (int left : lefts) {
+         int k = Math.min(rights.length, leftMandatory ? Math.max(1, draw(fanOut)) : draw(fanOut));
+         // Floyd's sampling of k distinct rights.
+         chosen.clear();
+         for (int j = rights.length - k; j < rights.length; j++) {
+            int r = random.nextInt(j + 1);
+            if (!chosen.add(r)) {
+               r = j;
+               chosen.add(r);
+            }
+            sink.association(left, association, rights[r]);
+            hasLeft[r] = true;
+         }
+      }
+      if (rightMandatory) {
+         for (int r = 0; r < rights.length; r++) {
+            if (!hasLeft[r]) {
+               sink.association(lefts[random.nextInt(lefts.length)], association, rights[r]);
+            }
+         }
+      }
+   }
+
+   private static void emit(Sink sink, Association association, int owner, int member, boolean ownersAreRight) {
+      if (ownersAreRight) {
+         sink.association(member, association, owner);
+      }
+      else {
+         sink.association(owner, association, member);
+      }
+   }
+
+   // Constructs the generated classes by reflection into the current model.
+   static class ModelSink implements Sink {
+      private String                     packageName;
+      private List<core.Asset>           assets       = new ArrayList<>();
+      private Map<Asset, Constructor<?>> constructors = new HashMap<>();
+      private Map<Association, Method>   adders       = new HashMap<>();
+
+      ModelSink(String packageName) {
+         this.packageName = packageName;
+      }
+
+      @Override
+      public void asset(int id, Asset type, String name, boolean[] defenseStates) {
+         Object[] arguments = new Object[defenseStates.length + 1];
+         arguments[0] = name;
+         for (int d = 0; d < defenseStates.length; d++) {
+            arguments[d + 1] = defenseStates[d];
+         }
+         try {
+            Constructor<?> constructor = constructors.get(type);
+            if (constructor == null) {
+               Class<?>[] parameterTypes = new Class<?>[arguments.length];
+               Arrays.fill(parameterTypes, Boolean.class);
+               parameterTypes[0] = String.class;
+               constructor = Class.forName(packageName + "." + type.name).getConstructor(parameterTypes);
+               constructors.put(type, constructor);
+            }
+            assets.add((core.Asset) constructor.newInstance(arguments));
+         }
+         catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not instantiate " + packageName + "." + type.name, e);
+         }
+      }
+
+      @Override
+      public void association(int left, Association association, int right) {
+         try {
+            Method adder = adders.get(association);
+            if (adder == null) {
+               String adderName = "add" + CompilerModel.capitalize(association.rightRoleName);
+               for (Method method : Class.forName(packageName + "." + association.leftAssetName).getMethods()) {
+                  if (method.getName().equals(adderName) && method.getParameterCount() == 1) {
+                     adder = method;
+                  }
+               }
+               if (adder == null) {
+                  throw new IllegalStateException("No " + adderName + " in " + packageName + "." + association.leftAssetName);
+               }
+               adders.put(association, adder);
+            }
+            adder.invoke(assets.get(left), assets.get(right));
+         }
+         catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not link " + association.leftAssetName + "." + association.rightRoleName, e);
+         }
+      }
+   }
+
+   static class CsvSink implements Sink {
+      private Writer       writer;
+      private List<String> names = new ArrayList<>();
+
+      CsvSink(Writer writer) {
+         this.writer = writer;
+      }
+
+      @Override
+      public void asset(int id, Asset type, String name, boolean[] defenseStates) {
+         names.add(name);
+         StringBuilder line = new StringBuilder("asset,").append(type.name).append(',').append(name).append(',');
+         List<AttackStep> defenses = type.defensesExcludingExistenceRequirements();
+         boolean first = true;
+         for (int d = 0; d < defenseStates.length; d++) {
+            if (defenseStates[d]) {
+               line.append(first ? "" : ";").append(defenses.get(d).name);
+               first = false;
+            }
+         }
+         print(line.append('\n').toString());
+      }
+
+      @Override
+      public void association(int left, Association association, int right) {
+         print("association," + names.get(left) + "," + association.rightRoleName + "," + names.get(right) + "\n");
+      }
+
+      private void print(String line) {
+         try {
+            writer.write(line);
+         }
+         catch (IOException e) {
+            throw new UncheckedIOException(e);
+         }
+      }
+   }
+
+   public static void main(String[] args) throws Exception {
+      Options options = new Options();
+
+      Option input = new Option("i", "input", true, "input mal file path");
+      input.setRequired(true);
+      options.addOption(input);
+
+      Option output = new Option("o", "output", true, "output file for the generated model");
+      output.setRequired(true);
+      options.addOption(output);
+
+      Option size = new Option("n", "size", true, "number of assets");
+      size.setRequired(true);
+      options.addOption(size);
+
+      options.addOption(new Option("s", "seed", true, "random seed, 0 by default"));
+      options.addOption(new Option("f", "fanout", true, "average number of links per asset and association, 2 by default"));
+      options.addOption(new Option("d", "defenses", true, "share of configurable defenses to enable, 0.5 by default"));
+      Option counts = new Option("c", "count", true, "number of assets of one type, as Type=count");
+      counts.setArgs(Option.UNLIMITED_VALUES);
+      options.addOption(counts);
+      Option fanOuts = new Option("a", "association", true, "fan-out of one association, as Association=fanout");
+      fanOuts.setArgs(Option.UNLIMITED_VALUES);
+      options.addOption(fanOuts);
+
+      CommandLineParser parser = new DefaultParser();
+      HelpFormatter formatter = new HelpFormatter();
+      try {
+         CommandLine cmd = parser.parse(options, args);
+         InstanceGenerator generator = new InstanceGenerator(new CompilerModel(new File(cmd.getOptionValue("input").trim())), Long.parseLong(cmd.getOptionValue("seed", "0")));
+         generator.setSize(Integer.parseInt(cmd.getOptionValue("size")));
+         generator.setFanOut(Double.parseDouble(cmd.getOptionValue("fanout", "2")));
+         generator.setDefenseRatio(Double.parseDouble(cmd.getOptionValue("defenses", "0.5")));
+         for (Map.Entry<String, String> count : pairs(cmd.getOptionValues("count")).entrySet()) {
+            generator.setCount(count.getKey(), Integer.parseInt(count.getValue()));
+         }
+         for (Map.Entry<String, String> fanOut : pairs(cmd.getOptionValues("association")).entrySet()) {
+            generator.setFanOut(fanOut.getKey(), Double.parseDouble(fanOut.getValue()));
+         }
+         generator.write(new File(cmd.getOptionValue("output").trim()));
+      }
+      catch (ParseException | IllegalArgumentException e) {
+         System.err.println(e.getMessage());
+         formatter.printHelp("InstanceGenerator", options);
+         System.exit(1);
+      }
+   }
+
+   private static Map<String, String> pairs(String[] values) {
+      Map<String, String> pairs = new LinkedHashMap<>();
+      if (values != null) {
+         for (String value : values) {
+            int eq = value.indexOf('=');
+            if (eq < 0) {
+               throw new IllegalArgumentException("Expected name=value, got: " + value);
+            }
+            pairs.put(value.substring(0, eq), value.substring(eq + 1));
+         }
+      }
+      return pairs;
+   }
+
+}
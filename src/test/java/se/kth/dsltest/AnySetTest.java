@@ -0,0 +1,157 @@
+package se.kth.dsltest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import core.AnySet;
+
+/**
+ * Picks from, adds to and removes from AnySets, also while iterating, and
+ * checks them against sets of the same elements, that any() picks every
+ * element, and that the same seed picks the same ones.
+ */
+public class AnySetTest {
+
+   @Test
+   public void sameSeedSamePicks() {
+      List<List<Integer>> picks = new ArrayList<>();
+      for (long seed : new long[] { 1, 1, 2 }) {
+         AnySet<Integer> set = new AnySet<>(seed);
+         picks.add(pick(set, new Random(3)));
+      }
+      assertEquals(picks.get(0), picks.get(1));
+      assertNotEquals(picks.get(0), picks.get(2));
+
+      AnySet<Integer> set = new AnySet<>(2);
+      set.setSeed(1);
+      assertEquals(picks.get(0), pick(set, new Random(3)));
+   }
+
+   // Picks from set between the same random changes.
+   private static List<Integer> pick(AnySet<Integer> set, Random changes) {
+      List<Integer> picks = new ArrayList<>();
+      for (int n = 0; n < 1000; n++) {
+         if (changes.nextInt(3) == 0) {
+            set.remove(changes.nextInt(100));
+         }
+         else {
+            set.add(changes.nextInt(100));
+         }
+         picks.add(set.any());
+      }
+      return picks;
+   }
+
+   @Test
+   public void anyPicksEveryElement() {
+      AnySet<Integer> set = new AnySet<>(4);
+      assertNull(set.any());
+      for (int i = 0; i < 100; i++) {
+         set.add(i);
+      }
+      // Removed ones are replaced by the last, which must still be picked.
+      for (int i = 0; i < 100; i += 3) {
+         set.remove(i);
+      }
+      int[] counts = new int[100];
+      for (int n = 0; n < 100 * set.size(); n++) {
+         counts[set.any()]++;
+      }
+      for (int i = 0; i < 100; i++) {
+         if (i % 3 == 0) {
+            assertEquals(0, counts[i]);
+         }
+         else {
+            // 100 expected, six standard deviations apart.
+            assertTrue(i + " picked " + counts[i] + " times", counts[i] > 40 && counts[i] < 160);
+         }
+      }
+   }
+
+   @Test
+   public void changesKeepPositions() {
+      Random random = new Random(5);
+      AnySet<Integer> set = new AnySet<>(6);
+      Set<Integer> expected = new HashSet<>();
+      for (int n = 0; n < 2000; n++) {
+         int element = random.nextInt(200);
+         switch (random.nextInt(5)) {
+            case 0:
+            case 1:
+               assertEquals(expected.add(element), set.add(element));
+               break;
+            case 2:
+               assertEquals(expected.remove(element), set.remove(element));
+               break;
+            case 3:
+               // Removes about a quarter while iterating, and visits every
+               // element once.
+               Set<Integer> before = new HashSet<>(expected);
+               List<Integer> visited = new ArrayList<>();
+               for (Iterator<Integer> i = set.iterator(); i.hasNext();) {
+                  Integer next = i.next();
+                  visited.add(next);
+                  if (random.nextInt(4) == 0) {
+                     i.remove();
+                     expected.remove(next);
+                  }
+               }
+               assertEquals(before.size(), visited.size());
+               assertEquals(before, new HashSet<>(visited));
+               break;
+            default:
+               assertEquals(expected.contains(element), set.contains(element));
+         }
+         assertEquals(expected.size(), set.size());
+         Set<Integer> positioned = new HashSet<>();
+         for (int i = 0; i < set.size(); i++) {
+            positioned.add(set.get(i));
+         }
+         assertEquals(expected, positioned);
+      }
+      // Every element is removed from where it is.
+      for (Integer element : new ArrayList<>(expected)) {
+         assertTrue(set.remove(element));
+         assertTrue(!set.contains(element));
+      }
+      assertTrue(set.isEmpty());
+   }
+
+   @Test
+   public void iteratorsFailOnChanges() {
+      AnySet<Integer> set = new AnySet<>(7);
+      for (int i = 0; i < 10; i++) {
+         set.add(i);
+      }
+      Iterator<Integer> iterator = set.iterator();
+      iterator.next();
+      iterator.remove();
+      try {
+         iterator.remove();
+         fail("Removed twice");
+      }
+      catch (IllegalStateException e) {
+      }
+      set.add(10);
+      try {
+         iterator.next();
+         fail("Iterated past a change");
+      }
+      catch (ConcurrentModificationException e) {
+      }
+   }
+
+}
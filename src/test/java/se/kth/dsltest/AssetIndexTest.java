@@ -0,0 +1,109 @@
+package se.kth.dsltest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import core.Asset;
+import core.Model;
+
+/**
+ * Looks up the assets of random securiLang models by name and by type, also
+ * after assets are added and renamed, and checks that the indexes of the
+ * model find what searching its assets finds.
+ */
+public class AssetIndexTest {
+
+   @Test
+   public void assetsOfEveryType() throws Exception {
+      Model model = SecuriLang.build(300, 1);
+      Set<Class<?>> types = new HashSet<>();
+      for (Class<? extends Asset> type : SecuriLang.assetTypes()) {
+         for (Class<?> c = type; c != Asset.class; c = c.getSuperclass()) {
+            types.add(c);
+         }
+      }
+      assertTrue("No subtypes among the asset types", types.stream().anyMatch(type -> type.getSuperclass() != Asset.class));
+      for (Class<?> type : types) {
+         assertEquals(type.getSimpleName(), ofType(model, type), model.getAssets(type.getSimpleName()));
+      }
+
+      // Copies, which changes do not reach.
+      List<Asset> machines = model.getAssets("Machine");
+      machines.clear();
+      assertEquals(ofType(model, types.stream().filter(type -> type.getSimpleName().equals("Machine")).findFirst().get()), model.getAssets("Machine"));
+
+      try {
+         model.getAssets("Nothing");
+         fail("No asset type Nothing");
+      }
+      catch (AssertionError e) {
+      }
+   }
+
+   @Test
+   public void assetsAddedAfterLookups() throws Exception {
+      Model model = SecuriLang.build(100, 2);
+      Asset first = model.assets.get(0);
+      assertSame(first, model.getAsset(first.name));
+      int routers = model.getAssets("Router").size();
+      Model.setCurrent(model);
+      Asset router;
+      try {
+         router = (Asset) first.getClass().getClassLoader().loadClass("auto.WifiRouter").getConstructor(String.class).newInstance("added");
+      }
+      finally {
+         Model.setCurrent(null);
+      }
+      assertSame(router, model.getAsset("added"));
+      assertEquals(routers + 1, model.getAssets("Router").size());
+      assertSame(router, model.getAssets("WifiRouter").get(model.getAssets("WifiRouter").size() - 1));
+   }
+
+   @Test
+   public void renamedAssets() throws Exception {
+      Model model = SecuriLang.build(100, 3);
+      for (Asset asset : model.assets) {
+         assertSame(asset, model.getAsset(asset.name));
+      }
+      assertNull(model.getAsset("unknown"));
+
+      // Away from a name, to a new one and to the name of another.
+      Asset a = model.assets.get(10);
+      Asset b = model.assets.get(20);
+      String aName = a.name;
+      String bName = b.name;
+      a.name = "renamed";
+      assertNull(model.getAsset(aName));
+      assertSame(a, model.getAsset("renamed"));
+      b.name = aName;
+      assertSame(b, model.getAsset(aName));
+      assertNull(model.getAsset(bName));
+      a.name = bName;
+      assertSame(a, model.getAsset(bName));
+      assertNull(model.getAsset("renamed"));
+      for (Asset asset : model.assets) {
+         assertSame(asset, model.getAsset(asset.name));
+      }
+   }
+
+   private static List<Asset> ofType(Model model, Class<?> type) {
+      List<Asset> assets = new ArrayList<>();
+      for (Asset asset : model.assets) {
+         if (type.isInstance(asset)) {
+            assets.add(asset);
+         }
+      }
+      return assets;
+   }
+
+}
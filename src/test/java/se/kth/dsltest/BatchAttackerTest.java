@@ -0,0 +1,73 @@
+package se.kth.dsltest;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import core.AttackStep;
+import core.Attacker;
+import core.BatchAttacker;
+import core.Defense;
+import core.Model;
+
+/**
+ * Evaluates random defense configurations of a securiLang model in one batch
+ * and compares them with full attacks of an identical model.
+ */
+public class BatchAttackerTest {
+
+   @Test
+   public void batchesMatchFullAttacks() throws Exception {
+      long seed = 3;
+      List<AttackStep> attackPoints = new ArrayList<>();
+      Model model = EngineTest.model(seed, attackPoints);
+      List<AttackStep> freshAttackPoints = new ArrayList<>();
+      Model fresh = EngineTest.model(seed, freshAttackPoints);
+
+      BatchAttacker batch = new BatchAttacker(model);
+      for (AttackStep attackPoint : attackPoints) {
+         batch.addAttackPoint(attackPoint);
+      }
+      List<Defense> defenses = batch.defenses();
+      List<Defense> freshDefenses = new BatchAttacker(fresh).defenses();
+      List<Integer> registered = new ArrayList<>();
+      for (Defense defense : defenses) {
+         registered.add(model.attackSteps.indexOf(defense.disable));
+      }
+      for (int d = 0; d < freshDefenses.size(); d++) {
+         assertEquals("defense order", (int) registered.get(d), fresh.attackSteps.indexOf(freshDefenses.get(d).disable));
+      }
+
+      Random random = new Random(seed);
+      List<BitSet> configurations = new ArrayList<>();
+      for (int c = 0; c < 8; c++) {
+         BitSet configuration = new BitSet(defenses.size());
+         for (int d = 0; d < defenses.size(); d++) {
+            configuration.set(d, random.nextBoolean());
+         }
+         configurations.add(configuration);
+      }
+      List<AttackStep> targets = new ArrayList<>(model.attackSteps.subList(0, 200));
+      double[][] results = batch.evaluate(SecuriLang.profile(), configurations, targets);
+
+      for (AttackStep attackStep : model.attackSteps) {
+         assertEquals("batches bind no local ttc", AttackStep.oneSecond, attackStep.localTtc(), 0);
+      }
+      Attacker full = new Attacker(fresh);
+      for (int c = 0; c < configurations.size(); c++) {
+         for (int d = 0; d < freshDefenses.size(); d++) {
+            freshDefenses.get(d).defaultValue = configurations.get(c).get(d);
+         }
+         EngineTest.attack(full, freshAttackPoints);
+         for (int t = 0; t < targets.size(); t++) {
+            assertEquals("configuration " + c + ": " + targets.get(t).fullName(), fresh.attackSteps.get(t).ttc, results[c][t], 0);
+         }
+      }
+   }
+
+}
@@ -0,0 +1,43 @@
+package se.kth.dsltest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import core.AttackStep;
+import core.Attacker;
+import core.Model;
+
+/**
+ * Cancels attacks of a securiLang model before they start, and checks that
+ * they stop at the first settled step and that the next attack runs in full.
+ */
+public class CancelTest {
+
+   @Test
+   public void pendingCancelStopsTheNextAttack() throws Exception {
+      List<AttackStep> attackPoints = new ArrayList<>();
+      Model model = EngineTest.model(17, attackPoints);
+      for (Attacker.Engine engine : Attacker.Engine.values()) {
+         Attacker attacker = new Attacker(model);
+         attacker.setEngine(engine);
+         int[] settled = new int[1];
+         attacker.addListener((attackStep, ttc, parent) -> settled[0]++);
+         attacker.cancel();
+         EngineTest.attack(attacker, attackPoints);
+         assertTrue(engine + " attack was not cancelled", attacker.wasCancelled());
+         assertEquals(engine.toString(), 1, settled[0]);
+
+         settled[0] = 0;
+         EngineTest.attack(attacker, attackPoints);
+         assertFalse(engine + " attack was cancelled twice", attacker.wasCancelled());
+         assertTrue(engine.toString(), settled[0] > 1);
+      }
+   }
+
+}
@@ -0,0 +1,96 @@
+package se.kth.dsltest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import core.Asset;
+import core.Model;
+
+/**
+ * Checks that the component index of a securiLang model connects the same
+ * assets as the closures searched without it, and that adding assets and
+ * associations invalidates it.
+ */
+public class ComponentTest {
+
+   @Test
+   public void componentsMatchClosures() throws Exception {
+      Model model = SecuriLang.build(100, 5);
+      // One unassociated asset of each type, to have more than one component.
+      List<Asset> loners = new ArrayList<>();
+      for (Class<? extends Asset> type : SecuriLang.assetTypes()) {
+         loners.add(create(model, type, "loner"));
+      }
+      Map<Asset, Set<Asset>> closures = new HashMap<>();
+      for (Asset asset : model.assets) {
+         closures.put(asset, asset.getClosure());
+      }
+      assertPairsAgree(model, closures);
+      model.setComponentIndex(true);
+      assertPairsAgree(model, closures);
+      for (Asset loner : loners) {
+         assertEquals(1, closures.get(loner).size());
+      }
+
+      // Associate two loners.
+      Asset from = null;
+      Asset to = null;
+      Method addRole = null;
+      for (Asset loner : loners) {
+         for (Method method : loner.getClass().getMethods()) {
+            if (addRole == null && method.getName().startsWith("add") && method.getParameterCount() == 1) {
+               for (Asset other : loners) {
+                  if (other != loner && method.getParameterTypes()[0].isInstance(other)) {
+                     from = loner;
+                     to = other;
+                     addRole = method;
+                     break;
+                  }
+               }
+            }
+         }
+      }
+      assertFalse(from.isConnected(to));
+      addRole.invoke(from, to);
+      assertTrue(addRole.getName() + " connects", from.isConnected(to));
+      assertTrue(to.isConnected(from));
+
+      // A new asset is in a component of its own.
+      Asset late = create(model, to.getClass(), "late");
+      assertTrue(late.isConnected(late));
+      assertFalse(late.isConnected(to));
+      addRole.invoke(from, late);
+      assertTrue(late.isConnected(to));
+   }
+
+   // Whether every pair of assets of model is connected exactly when one
+   // is in the closure of the other.
+   private static void assertPairsAgree(Model model, Map<Asset, Set<Asset>> closures) {
+      for (Asset asset : model.assets) {
+         for (Asset target : model.assets) {
+            assertEquals(asset.name + " to " + target.name, closures.get(asset).contains(target), asset.isConnected(target));
+         }
+      }
+   }
+
+   private static Asset create(Model model, Class<? extends Asset> type, String name) throws Exception {
+      Model.setCurrent(model);
+      try {
+         return type.getConstructor(String.class).newInstance(name + type.getSimpleName());
+      }
+      finally {
+         Model.setCurrent(null);
+      }
+   }
+
+}
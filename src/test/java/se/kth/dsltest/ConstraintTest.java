@@ -0,0 +1,193 @@
+package se.kth.dsltest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import core.Asset;
+import core.Constraint;
+import core.ConstraintChecker;
+import core.Model;
+
+/**
+ * Checks small securiLang models against each kind of constraint, and
+ * checks that a checker that does not enforce constraints prints every
+ * violation and still fails on the enforced Account cycle, once all assets
+ * are checked.
+ */
+public class ConstraintTest {
+
+   private Model       model;
+   private PrintStream out;
+
+   @Before
+   public void setModel() throws Exception {
+      SecuriLang.assetTypes();
+      model = new Model();
+      Model.setCurrent(model);
+      out = System.out;
+   }
+
+   @After
+   public void unsetModel() {
+      System.setOut(out);
+      Model.setCurrent(null);
+   }
+
+   private static Asset asset(String type, String name) throws Exception {
+      for (Class<? extends Asset> assetType : SecuriLang.assetTypes()) {
+         if (assetType.getSimpleName().equals(type)) {
+            return assetType.getConstructor(String.class).newInstance(name);
+         }
+      }
+      // Abstract in the language, so not among the asset types.
+      Class<?> assetType = SecuriLang.assetTypes().get(0).getClassLoader().loadClass("auto." + type);
+      return (Asset) assetType.getConstructor(String.class).newInstance(name);
+   }
+
+   // Associates asset with target through the role of asset, with add<Role>.
+   private static void link(Asset asset, String role, Asset target) throws Exception {
+      String adder = "add" + Character.toUpperCase(role.charAt(0)) + role.substring(1);
+      for (Method method : asset.getClass().getMethods()) {
+         if (method.getName().equals(adder)) {
+            method.invoke(asset, target);
+            return;
+         }
+      }
+      fail(asset.getClass().getSimpleName() + " has no role " + role);
+   }
+
+   private List<String> check(Boolean enforce, Constraint... constraints) {
+      return new ConstraintChecker(model, Arrays.asList(constraints), enforce).violations();
+   }
+
+   @Test
+   public void counterpartsOfTheTypeOnly() throws Exception {
+      Asset none = asset("Software", "none");
+      Asset physical = asset("Software", "physical");
+      link(physical, "executor", asset("PhysicalMachine", "host"));
+      Asset virtual = asset("Software", "virtual");
+      link(virtual, "executor", asset("VirtualMachine", "guest"));
+      // Not checked, as counterparts are not required of subclasses.
+      asset("Application", "application");
+
+      List<String> violations = check(false, Constraint.requireCounterpart("Software", "executor", "PhysicalMachine"));
+      assertEquals(2, violations.size());
+      assertTrue(violations.get(0), violations.get(0).contains(none + " required a executor among [PhysicalMachine] but found none"));
+      assertTrue(violations.get(1), violations.get(1).contains(virtual + " required a executor among [PhysicalMachine] but found "));
+
+      // Subclasses of the target types are counterparts.
+      assertEquals(1, check(false, Constraint.requireCounterpart("Software", "executor", "Machine")).size());
+   }
+
+   @Test
+   public void prohibitionsOfTheTypeOnly() throws Exception {
+      Asset routed = asset("Network", "routed");
+      link(routed, "trafficRouters", asset("Router", "router"));
+      asset("Network", "unrouted");
+      // Not checked, as prohibitions do not apply to subclasses.
+      link(asset("Ethernet", "ethernet"), "trafficRouters", asset("Router", "ethernetRouter"));
+
+      List<String> violations = check(false, Constraint.prohibit("Network", "trafficRouters"));
+      assertEquals(Collections.singletonList("Constraint violation: Network is not allowed a trafficRouters association, but " + routed + " has one."), violations);
+   }
+
+   @Test
+   public void cyclesOfSubclassesToo() throws Exception {
+      // host runs both, but only application is assigned to its root
+      // account.
+      Asset host = asset("PhysicalMachine", "host");
+      Asset root = asset("Account", "root");
+      link(host, "rootAccount", root);
+      Asset application = asset("Application", "application");
+      link(application, "executor", host);
+      link(root, "assignedSoftwares", application);
+      Asset system = asset("OperatingSystem", "system");
+      link(system, "executor", host);
+      // Not checked, as it has no executor to start the cycle from.
+      asset("Software", "unexecuted");
+
+      List<String> violations = check(false, Constraint.requireCycle("Software", roles("executor"), roles("rootAccount"), roles("assignedSoftwares")));
+      assertEquals(Collections.singletonList("Constraint violation: " + system + ".executor.rootAccount.assignedSoftwares should contain " + system + ", thus creating a cycle."), violations);
+
+      // One of alternative roles closes the cycle.
+      Asset data = asset("Data", "data");
+      Asset reader = asset("Account", "reader");
+      link(reader, "readData", data);
+      link(data, "machines", host);
+      assertEquals(1, check(false, Constraint.requireCycle("Account", roles("readData"), roles("machines"), roles("rootAccounts", "userAccounts"))).size());
+      link(host, "userAccounts", reader);
+      assertEquals(0, check(false, Constraint.requireCycle("Account", roles("readData"), roles("machines"), roles("rootAccounts", "userAccounts"))).size());
+   }
+
+   @Test
+   public void unenforcedViolationsAreAllPrinted() throws Exception {
+      List<Asset> violating = new ArrayList<>();
+      for (int i = 0; i < 20; i++) {
+         violating.add(asset(i % 2 == 0 ? "OperatingSystem" : "Wifi", "asset" + i));
+         if (i % 2 == 1) {
+            link(violating.get(i), "trafficRouters", asset("Router", "router" + i));
+         }
+      }
+      ByteArrayOutputStream printed = new ByteArrayOutputStream();
+      System.setOut(new PrintStream(printed, true));
+      List<String> violations = new ConstraintChecker(model, false).violations();
+      System.setOut(out);
+
+      assertEquals(20, violations.size());
+      for (int i = 0; i < 20; i++) {
+         assertTrue(violations.get(i), violations.get(i).contains(violating.get(i).toString()));
+         assertTrue(violations.get(i), printed.toString().contains(violations.get(i)));
+      }
+
+      try {
+         new ConstraintChecker(model, true);
+         fail("Violations enforced");
+      }
+      catch (AssertionError e) {
+         assertEquals(String.join("\n", violations), e.getMessage());
+      }
+   }
+
+   @Test
+   public void accountCyclesFailOnceAllAreChecked() throws Exception {
+      Asset account = asset("Account", "account");
+      Asset data = asset("Data", "data");
+      link(account, "readData", data);
+      link(data, "machines", asset("PhysicalMachine", "host"));
+      Asset system = asset("OperatingSystem", "system");
+
+      ByteArrayOutputStream printed = new ByteArrayOutputStream();
+      System.setOut(new PrintStream(printed, true));
+      try {
+         new ConstraintChecker(model, false);
+         fail("The Account cycle is enforced");
+      }
+      catch (AssertionError e) {
+         System.setOut(out);
+         assertTrue(e.getMessage(), e.getMessage().startsWith("Constraint violation: " + account + ".readData.machines."));
+         assertEquals(1, e.getMessage().split("\n").length);
+         // The asset after the account was checked and printed too.
+         assertTrue(printed.toString(), printed.toString().contains(e.getMessage()));
+         assertTrue(printed.toString(), printed.toString().contains(system + " required a executor"));
+      }
+   }
+
+   private static HashSet<String> roles(String... names) {
+      return new HashSet<>(Arrays.asList(names));
+   }
+
+}
@@ -0,0 +1,108 @@
+package se.kth.dsltest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import core.AttackStep;
+import core.Attacker;
+import core.CutSetAttacker;
+import core.Defense;
+import core.Model;
+
+/**
+ * Finds cut sets for random reached targets of a securiLang model and checks
+ * with full attacks that each stops the attack and has no defense to spare.
+ */
+public class CutSetTest {
+
+   @Test
+   public void defensesKnowWhetherTheyAreConfigurable() throws Exception {
+      Model model = SecuriLang.build(400, 1);
+      int fixed = 0;
+      for (Defense defense : model.defenses) {
+         boolean value = defense.defaultValue;
+         defense.defaultValue = !value;
+         boolean flipped = defense.isEnabled();
+         defense.defaultValue = value;
+         assertEquals(defense.disable.fullName(), flipped != defense.isEnabled(), defense.isConfigurable());
+         fixed += defense.isConfigurable() ? 0 : 1;
+      }
+      assertTrue("No defense given by existence requirements", fixed > 0);
+   }
+
+   @Test
+   public void cutSetsStopTheAttack() throws Exception {
+      long seed = 1;
+      List<AttackStep> attackPoints = new ArrayList<>();
+      Model model = EngineTest.model(seed, attackPoints);
+      Attacker attacker = new Attacker(model);
+      EngineTest.attack(attacker, attackPoints);
+      List<AttackStep> reached = new ArrayList<>();
+      for (AttackStep attackStep : model.attackSteps) {
+         if (attackStep.ttc > 0 && attackStep.ttc < AttackStep.infinity) {
+            reached.add(attackStep);
+         }
+      }
+      int n = model.attackSteps.size();
+      double[] ttc = new double[n];
+      for (int i = 0; i < n; i++) {
+         ttc[i] = model.attackSteps.get(i).ttc;
+      }
+
+      Random random = new Random(seed);
+      int cut = 0;
+      for (int j = 0; j < 20; j++) {
+         AttackStep target = reached.get(random.nextInt(reached.size()));
+         CutSetAttacker cutSetAttacker = new CutSetAttacker(model);
+         for (AttackStep attackPoint : attackPoints) {
+            cutSetAttacker.addAttackPoint(attackPoint);
+         }
+         List<Defense> cutSet = cutSetAttacker.minimalCutSet(SecuriLang.profile(), target);
+         for (int i = 0; i < n; i++) {
+            assertEquals("cut sets leave the steps alone", ttc[i], model.attackSteps.get(i).ttc, 0);
+         }
+         if (cutSet == null) {
+            List<Defense> all = new ArrayList<>();
+            for (Defense defense : model.defenses) {
+               if (defense.isConfigurable() && !defense.defaultValue) {
+                  all.add(defense);
+               }
+            }
+            assertTrue(target.fullName() + " has a cut set", reaches(attacker, attackPoints, all, target));
+            continue;
+         }
+         cut++;
+         assertTrue(target.fullName() + " is reached", !cutSet.isEmpty());
+         assertTrue(target.fullName() + " is still reached", !reaches(attacker, attackPoints, cutSet, target));
+         for (Defense spare : cutSet) {
+            List<Defense> smaller = new ArrayList<>(cutSet);
+            smaller.remove(spare);
+            assertTrue(target.fullName() + " does not need " + spare.disable.fullName(), reaches(attacker, attackPoints, smaller, target));
+         }
+      }
+      assertNotEquals("No cut set found", 0, cut);
+   }
+
+   // Whether target is reached with defenses enabled, which are disabled
+   // again afterwards.
+   private static boolean reaches(Attacker attacker, List<AttackStep> attackPoints, List<Defense> defenses, AttackStep target) throws Exception {
+      for (Defense defense : defenses) {
+         defense.defaultValue = true;
+      }
+      EngineTest.attack(attacker, attackPoints);
+      boolean reached = target.ttc < AttackStep.infinity;
+      for (Defense defense : defenses) {
+         defense.defaultValue = false;
+      }
+      EngineTest.attack(attacker, attackPoints);
+      return reached;
+   }
+
+}
@@ -0,0 +1,100 @@
+package se.kth.dsltest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import core.AttackStep;
+import core.Attacker;
+import core.Defense;
+import core.Frontier;
+import core.Model;
+
+/**
+ * Attacks random securiLang models with every engine and frontier, and
+ * checks that they agree with the object engine on a binary heap about the
+ * ttc and predecessor of every attack step.
+ */
+public class EngineTest {
+
+   // A random model with half of its defenses enabled, and the attack points
+   // to attack it from.
+   static Model model(long seed, List<AttackStep> attackPoints) throws Exception {
+      Model model = SecuriLang.build(400, seed);
+      Random random = new Random(seed);
+      for (Defense defense : SecuriLang.defenses(model)) {
+         defense.defaultValue = random.nextBoolean();
+      }
+      for (int i = 0; i < 3; i++) {
+         attackPoints.add(model.attackSteps.get(random.nextInt(model.attackSteps.size())));
+      }
+      return model;
+   }
+
+   static void attack(Attacker attacker, List<AttackStep> attackPoints) throws Exception {
+      for (AttackStep attackPoint : attackPoints) {
+         attacker.addAttackPoint(attackPoint);
+      }
+      attacker.attack(SecuriLang.profile());
+   }
+
+   @Test
+   public void enginesAgree() throws Exception {
+      for (long seed = 1; seed <= 3; seed++) {
+         List<AttackStep> attackPoints = new ArrayList<>();
+         Model model = model(seed, attackPoints);
+         Attacker reference = new Attacker(model, false, Frontier.Type.BINARY_HEAP);
+         reference.setEngine(Attacker.Engine.OBJECTS);
+         attack(reference, attackPoints);
+         int n = model.attackSteps.size();
+         double[] ttc = new double[n];
+         AttackStep[] predecessor = new AttackStep[n];
+         int reached = 0;
+         for (int i = 0; i < n; i++) {
+            ttc[i] = model.attackSteps.get(i).ttc;
+            predecessor[i] = model.attackSteps.get(i).predecessor;
+            if (ttc[i] < AttackStep.infinity) {
+               reached++;
+            }
+         }
+         assertTrue("Too few steps reached to compare", reached > n / 10);
+
+         // Frontiers break ties in ttc in their own order, so only the
+         // compiled engine, which also uses a binary heap, settles steps of
+         // equal ttc in the same order and picks the same predecessors.
+         for (Frontier.Type frontier : Frontier.Type.values()) {
+            Attacker attacker = new Attacker(model, false, frontier);
+            attacker.setEngine(Attacker.Engine.OBJECTS);
+            attack(attacker, attackPoints);
+            assertAgree(model, ttc, predecessor, false);
+         }
+         Attacker compiled = new Attacker(model);
+         compiled.setEngine(Attacker.Engine.COMPILED);
+         attack(compiled, attackPoints);
+         assertAgree(model, ttc, predecessor, true);
+      }
+   }
+
+   static void assertAgree(Model model, double[] ttc, AttackStep[] predecessor, boolean samePredecessors) {
+      for (int i = 0; i < ttc.length; i++) {
+         AttackStep attackStep = model.attackSteps.get(i);
+         assertEquals(attackStep.fullName(), ttc[i], attackStep.ttc, 0);
+         if (samePredecessors) {
+            assertSame(attackStep.fullName(), predecessor[i], attackStep.predecessor);
+         }
+         else if (attackStep.predecessor == null) {
+            assertSame(attackStep.fullName(), null, predecessor[i]);
+         }
+         else {
+            assertEquals(attackStep.fullName(), ttc[i], attackStep.predecessor.ttc + attackStep.localTtc(), 0);
+         }
+      }
+   }
+
+}
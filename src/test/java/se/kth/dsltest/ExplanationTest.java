@@ -0,0 +1,56 @@
+package se.kth.dsltest;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+import core.AttackStep;
+import core.AttackStepMax;
+import core.Explanation;
+import core.Model;
+
+/**
+ * Explains why a step was not reached when a parent of it is met first at
+ * the depth limit and then closer to the step, and checks that the parent
+ * is explained again in full rather than referred back to.
+ */
+public class ExplanationTest {
+
+   @Test
+   public void deeperMentionsAreExplainedAgain() throws Exception {
+      int maxDepth = Explanation.maxDepth;
+      Explanation.maxDepth = 2;
+      Model.setCurrent(new Model());
+      try {
+         // target expects shallow and x, and shallow expects x, so x is met
+         // at depth 0 and 1. Ordered by identity hash, the parents are met
+         // in the order that explains x at depth 0 first only for some
+         // steps, so make steps until they are.
+         for (int i = 0; i < 100; i++) {
+            AttackStep target = new AttackStepMax("target" + i);
+            AttackStep shallow = new AttackStepMax("shallow" + i);
+            AttackStep x = new AttackStepMax("x" + i);
+            AttackStep y = new AttackStepMax("y" + i);
+            target.expectedParents.add(shallow);
+            target.expectedParents.add(x);
+            shallow.expectedParents.add(x);
+            x.expectedParents.add(y);
+            if (target.expectedParents.iterator().next() != shallow) {
+               continue;
+            }
+            StringWriter out = new StringWriter();
+            new Explanation(out).explain(target, true, false);
+            assertTrue(out.toString(), out.toString().contains("didn't reach " + y.fullName()));
+            return;
+         }
+         assertTrue("Parents never met in the order to test", false);
+      }
+      finally {
+         Model.setCurrent(null);
+         Explanation.maxDepth = maxDepth;
+      }
+   }
+
+}
@@ -0,0 +1,115 @@
+package se.kth.dsltest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import core.AttackStep;
+import core.Attacker;
+import core.Model;
+
+/**
+ * Attacks a securiLang model within horizons and checks which steps are past
+ * the horizon against a full attack.
+ */
+public class HorizonTest {
+
+   private static double[] fullTtcs(Model model, List<AttackStep> attackPoints) throws Exception {
+      EngineTest.attack(new Attacker(model), attackPoints);
+      double[] ttc = new double[model.attackSteps.size()];
+      for (int i = 0; i < ttc.length; i++) {
+         ttc[i] = model.attackSteps.get(i).ttc;
+      }
+      return ttc;
+   }
+
+   private static void attack(Model model, Attacker.Engine engine, List<AttackStep> attackPoints, double horizon) throws Exception {
+      Attacker attacker = new Attacker(model);
+      attacker.setEngine(engine);
+      for (AttackStep attackPoint : attackPoints) {
+         attacker.addAttackPoint(attackPoint);
+      }
+      attacker.attack(SecuriLang.profile(), horizon);
+   }
+
+   @Test
+   public void unreachableStepsAreNotPastAHorizonNeverMet() throws Exception {
+      List<AttackStep> attackPoints = new ArrayList<>();
+      Model model = EngineTest.model(2, attackPoints);
+      double[] ttc = fullTtcs(model, attackPoints);
+      double latest = 0;
+      for (double stepTtc : ttc) {
+         if (stepTtc < AttackStep.infinity) {
+            latest = Math.max(latest, stepTtc);
+         }
+      }
+      for (Attacker.Engine engine : Attacker.Engine.values()) {
+         attack(model, engine, attackPoints, latest + 1);
+         int unreachable = 0;
+         for (int i = 0; i < ttc.length; i++) {
+            AttackStep attackStep = model.attackSteps.get(i);
+            assertEquals(engine + ": " + attackStep.fullName(), ttc[i], attackStep.ttc, 0);
+            assertFalse(engine + ": " + attackStep.fullName(), attackStep.isPastHorizon());
+            if (ttc[i] == AttackStep.infinity && unreachable++ < 10) {
+               attackStep.assertUncompromised();
+            }
+         }
+         assertTrue(unreachable > 0);
+      }
+   }
+
+   @Test
+   public void stepsBeyondTheHorizonArePastIt() throws Exception {
+      List<AttackStep> attackPoints = new ArrayList<>();
+      Model model = EngineTest.model(2, attackPoints);
+      double[] ttc = fullTtcs(model, attackPoints);
+      // The median of the ttcs reached, so that some steps lie beyond.
+      double[] reached = Arrays.stream(ttc).filter(stepTtc -> stepTtc < AttackStep.infinity).sorted().toArray();
+      double horizon = reached[reached.length / 2];
+      boolean[] objectsPastHorizon = null;
+      for (Attacker.Engine engine : Attacker.Engine.values()) {
+         attack(model, engine, attackPoints, horizon);
+         boolean[] pastHorizon = new boolean[ttc.length];
+         int beyond = 0;
+         for (int i = 0; i < ttc.length; i++) {
+            AttackStep attackStep = model.attackSteps.get(i);
+            String name = engine + ": " + attackStep.fullName();
+            pastHorizon[i] = attackStep.isPastHorizon();
+            if (ttc[i] <= horizon) {
+               assertEquals(name, ttc[i], attackStep.ttc, 0);
+               assertFalse(name, pastHorizon[i]);
+            }
+            else if (ttc[i] < AttackStep.infinity) {
+               assertTrue(name + " is not past the horizon", pastHorizon[i]);
+               beyond++;
+            }
+         }
+         assertTrue("Nothing beyond the horizon", beyond > 0);
+         if (objectsPastHorizon == null) {
+            objectsPastHorizon = pastHorizon;
+         }
+         for (int i = 0; i < ttc.length; i++) {
+            assertEquals(model.attackSteps.get(i).fullName(), objectsPastHorizon[i], pastHorizon[i]);
+         }
+      }
+      for (int i = 0; i < ttc.length; i++) {
+         if (objectsPastHorizon[i]) {
+            try {
+               model.attackSteps.get(i).assertUncompromised();
+            }
+            catch (AssertionError e) {
+               return;
+            }
+            fail(model.attackSteps.get(i).fullName() + " is past the horizon but passed assertUncompromised()");
+         }
+      }
+   }
+
+}
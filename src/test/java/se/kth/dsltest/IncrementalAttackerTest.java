@@ -0,0 +1,96 @@
+package se.kth.dsltest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import core.AttackStep;
+import core.Attacker;
+import core.Defense;
+import core.IncrementalAttacker;
+import core.Model;
+
+/**
+ * Toggles random defenses of a securiLang model with an IncrementalAttacker
+ * and compares every update with a full attack of an identical model.
+ */
+public class IncrementalAttackerTest {
+
+   @Test
+   public void updatesMatchFullAttacks() throws Exception {
+      long seed = 7;
+      List<AttackStep> attackPoints = new ArrayList<>();
+      Model model = EngineTest.model(seed, attackPoints);
+      List<AttackStep> freshAttackPoints = new ArrayList<>();
+      Model fresh = EngineTest.model(seed, freshAttackPoints);
+      List<Defense> defenses = SecuriLang.defenses(model);
+      List<Defense> freshDefenses = SecuriLang.defenses(fresh);
+      int n = model.attackSteps.size();
+      assertEquals(n, fresh.attackSteps.size());
+
+      IncrementalAttacker attacker = new IncrementalAttacker(model);
+      int[] settled = new int[1];
+      attacker.addListener((attackStep, ttc, parent) -> settled[0]++);
+      EngineTest.attack(attacker, attackPoints);
+      int reached = 0;
+      for (AttackStep attackStep : model.attackSteps) {
+         if (attackStep.ttc < AttackStep.infinity) {
+            reached++;
+         }
+      }
+      assertEquals(reached, settled[0]);
+
+      Random random = new Random(seed);
+      double[] before = new double[n];
+      Attacker full = new Attacker(fresh);
+      for (int toggle = 0; toggle < 500; toggle++) {
+         for (int i = 0; i < n; i++) {
+            before[i] = model.attackSteps.get(i).ttc;
+         }
+         int d = random.nextInt(defenses.size());
+         List<AttackStep> changed = attacker.toggleDefense(defenses.get(d));
+         freshDefenses.get(d).defaultValue = defenses.get(d).defaultValue;
+         EngineTest.attack(full, freshAttackPoints);
+
+         Set<AttackStep> changedSet = new HashSet<>(changed);
+         for (int i = 0; i < n; i++) {
+            AttackStep attackStep = model.attackSteps.get(i);
+            AttackStep freshStep = fresh.attackSteps.get(i);
+            String name = "toggle " + toggle + ": " + attackStep.fullName();
+            assertEquals(name, freshStep.ttc, attackStep.ttc, 0);
+            assertEquals(name, freshStep.expectedParents.size(), attackStep.expectedParents.size());
+            if (attackStep.ttc != before[i]) {
+               assertTrue(name + " changed but was not reported", changedSet.contains(attackStep));
+            }
+         }
+      }
+   }
+
+   @Test(expected = IllegalStateException.class)
+   public void rejectsTargets() throws Exception {
+      List<AttackStep> attackPoints = new ArrayList<>();
+      Model model = EngineTest.model(1, attackPoints);
+      IncrementalAttacker attacker = new IncrementalAttacker(model);
+      attacker.setTarget(model.attackSteps.get(0));
+      EngineTest.attack(attacker, attackPoints);
+   }
+
+   @Test(expected = IllegalStateException.class)
+   public void cancelledAttacksCannotBeUpdated() throws Exception {
+      List<AttackStep> attackPoints = new ArrayList<>();
+      Model model = EngineTest.model(1, attackPoints);
+      IncrementalAttacker attacker = new IncrementalAttacker(model);
+      attacker.addListener((attackStep, ttc, parent) -> attacker.cancel());
+      EngineTest.attack(attacker, attackPoints);
+      assertTrue(attacker.wasCancelled());
+      attacker.toggleDefense(SecuriLang.defenses(model).get(0));
+   }
+
+}
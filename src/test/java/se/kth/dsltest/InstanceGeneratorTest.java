@@ -0,0 +1,154 @@
+package se.kth.dsltest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import se.kth.mal.Asset;
+import se.kth.mal.Association;
+import se.kth.mal.CompilerModel;
+import se.kth.mal.InstanceGenerator;
+
+/**
+ * Generates seeded instance models of securiLang and of a small language of
+ * one-to-one associations, and checks that they keep the multiplicities of
+ * the associations and that the same seed gives the same model.
+ */
+public class InstanceGeneratorTest {
+
+   // The assets and associations generated.
+   private static class Recorder implements InstanceGenerator.Sink {
+      final List<Asset>                   types = new ArrayList<>();
+      final Map<Association, List<int[]>> links = new HashMap<>();
+
+      @Override
+      public void asset(int id, Asset type, String name, boolean[] defenseStates) {
+         assertEquals(types.size(), id);
+         types.add(type);
+      }
+
+      @Override
+      public void association(int left, Association association, int right) {
+         links.computeIfAbsent(association, a -> new ArrayList<>()).add(new int[] { left, right });
+      }
+   }
+
+   @Test
+   public void securiLangKeepsMultiplicities() {
+      CompilerModel model = new CompilerModel(new File("src/test/resources/securiLang.slng"));
+      for (long seed = 1; seed <= 3; seed++) {
+         Recorder recorder = new Recorder();
+         new InstanceGenerator(model, seed).setSize(500).generate(recorder);
+         assertEquals(500, recorder.types.size());
+         assertMultiplicities(model, recorder);
+      }
+   }
+
+   @Test
+   public void mandatoryMembersTakeFreeOwners() {
+      CompilerModel model = new CompilerModel(new File("src/test/resources/multiplicities.mal"));
+      for (long seed = 1; seed <= 20; seed++) {
+         Recorder recorder = new Recorder();
+         // Without fan-out, every key is linked by the pass that gives the
+         // mandatory side its host, and there are hosts enough for all.
+         new InstanceGenerator(model, seed).setCount("Host", 12).setCount("Key", 5).setCount("Lock", 5).setFanOut("Binding", 0).generate(recorder);
+         assertMultiplicities(model, recorder);
+         for (Association association : model.getAssociations()) {
+            if (association.getName().equals("Binding")) {
+               assertEquals(10, recorder.links.get(association).size());
+            }
+         }
+      }
+   }
+
+   @Test
+   public void sameSeedSameModel() {
+      CompilerModel model = new CompilerModel(new File("src/test/resources/securiLang.slng"));
+      String first = write(model, 7);
+      Recorder recorder = new Recorder();
+      new InstanceGenerator(model, 7).setSize(300).generate(recorder);
+      int lines = recorder.types.size();
+      for (List<int[]> links : recorder.links.values()) {
+         lines += links.size();
+      }
+      assertEquals("every asset and association written", lines, first.split("\n").length);
+      assertEquals(first, write(model, 7));
+      assertNotEquals(first, write(model, 8));
+   }
+
+   private static String write(CompilerModel model, long seed) {
+      StringWriter out = new StringWriter();
+      new InstanceGenerator(model, seed).setSize(300).write(out);
+      return out.toString();
+   }
+
+   // A side that allows one asset has at most one, and a mandatory side at
+   // least one unless every asset it could link to already has its one.
+   private static void assertMultiplicities(CompilerModel model, Recorder recorder) {
+      for (Association association : model.getAssociations()) {
+         List<Integer> lefts = instancesOf(recorder, association.getLeftAssetName());
+         List<Integer> rights = instancesOf(recorder, association.getRightAssetName());
+         Map<Integer, Set<Integer>> rightsOf = new HashMap<>();
+         Map<Integer, Set<Integer>> leftsOf = new HashMap<>();
+         for (int[] link : recorder.links.getOrDefault(association, new ArrayList<>())) {
+            assertTrue(lefts.contains(link[0]) && rights.contains(link[1]));
+            rightsOf.computeIfAbsent(link[0], id -> new HashSet<>()).add(link[1]);
+            leftsOf.computeIfAbsent(link[1], id -> new HashSet<>()).add(link[0]);
+         }
+         assertSide(association, lefts, rightsOf, rights, leftsOf, association.getRightMultiplicity(), association.getLeftMultiplicity());
+         assertSide(association, rights, leftsOf, lefts, rightsOf, association.getLeftMultiplicity(), association.getRightMultiplicity());
+      }
+   }
+
+   // The links of each of assets, of the multiplicity given, to others.
+   private static void assertSide(Association association, List<Integer> assets, Map<Integer, Set<Integer>> linksOf, List<Integer> others, Map<Integer, Set<Integer>> othersLinks,
+         String multiplicity, String otherMultiplicity) {
+      for (int asset : assets) {
+         int n = linksOf.getOrDefault(asset, new HashSet<>()).size();
+         String message = association.getName() + " of asset " + asset;
+         if (isSingle(multiplicity)) {
+            assertTrue(message + " has " + n, n <= 1);
+         }
+         if (isMandatory(multiplicity) && n == 0) {
+            for (int other : others) {
+               assertTrue(message + " is unlinked while " + other + " is free", isSingle(otherMultiplicity) && othersLinks.containsKey(other));
+            }
+         }
+      }
+   }
+
+   private static List<Integer> instancesOf(Recorder recorder, String assetName) {
+      List<Integer> ids = new ArrayList<>();
+      for (int id = 0; id < recorder.types.size(); id++) {
+         Asset type = recorder.types.get(id);
+         boolean of = type.name.equals(assetName);
+         for (Asset superAsset : type.superAssets()) {
+            of |= superAsset.name.equals(assetName);
+         }
+         if (of) {
+            ids.add(id);
+         }
+      }
+      return ids;
+   }
+
+   private static boolean isSingle(String multiplicity) {
+      return multiplicity.equals(Association.ONE) || multiplicity.equals("0-1");
+   }
+
+   private static boolean isMandatory(String multiplicity) {
+      return multiplicity.equals(Association.ONE) || multiplicity.equals(Association.ONE_TO_MANY);
+   }
+
+}
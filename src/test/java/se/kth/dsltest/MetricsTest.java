@@ -0,0 +1,108 @@
+package se.kth.dsltest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import core.AttackStatistics;
+import core.AttackStep;
+import core.Attacker;
+import core.JmxAttackMetrics;
+import core.Model;
+
+/**
+ * Attacks random securiLang models with every engine, with and without
+ * metrics, and checks that the statistics of each attack are filled in and
+ * summed by JmxAttackMetrics, and that the frontier is only tracked for
+ * attackers with metrics.
+ */
+public class MetricsTest {
+
+   @Test
+   public void metricsSumTheStatistics() throws Exception {
+      for (Attacker.Engine engine : Attacker.Engine.values()) {
+         List<AttackStep> attackPoints = new ArrayList<>();
+         Model model = EngineTest.model(1, attackPoints);
+         Attacker attacker = new Attacker(model);
+         attacker.setEngine(engine);
+         JmxAttackMetrics metrics = new JmxAttackMetrics();
+         attacker.setMetrics(metrics);
+
+         EngineTest.attack(attacker, attackPoints);
+         AttackStatistics statistics = attacker.statistics();
+         assertSame(engine, statistics.getEngine());
+         assertEquals(model.attackSteps.size(), statistics.getAttackSteps());
+         assertTrue(engine + ": " + statistics, statistics.getSettled() > model.attackSteps.size() / 10);
+         assertTrue(engine + ": " + statistics, statistics.getOrRelaxations() > 0 && statistics.getAndRelaxations() > 0);
+         assertTrue(engine + ": " + statistics, statistics.getFrontierHighWaterMark() > 0);
+         assertTrue(engine + ": " + statistics, statistics.getExpectedParentsNanos() > 0 && statistics.getProfileNanos() > 0);
+         assertTrue(engine + ": " + statistics, statistics.getTotalNanos() >= statistics.getExpectedParentsNanos() + statistics.getProfileNanos());
+
+         EngineTest.attack(attacker, attackPoints);
+         assertEquals(2, metrics.getAttacks());
+         assertEquals(2L * statistics.getSettled(), metrics.getStepsSettled());
+         assertEquals(2 * statistics.getOrRelaxations(), metrics.getOrRelaxations());
+         assertEquals(2 * statistics.getAndRelaxations(), metrics.getAndRelaxations());
+         assertEquals(statistics.getFrontierHighWaterMark(), metrics.getFrontierHighWaterMark());
+         assertEquals((statistics.getTotalNanos() + attacker.statistics().getTotalNanos()) / 1e6, metrics.getTotalMillis(), 1e-6);
+         assertEquals(attacker.statistics().getTotalNanos() / 1e6, metrics.getLastAttackMillis(), 1e-6);
+
+         metrics.reset();
+         assertEquals(0, metrics.getAttacks());
+         assertEquals(0, metrics.getStepsSettled());
+         assertEquals(-1, metrics.getFrontierHighWaterMark());
+      }
+   }
+
+   @Test
+   public void frontiersAreOnlyTrackedWithMetrics() throws Exception {
+      for (Attacker.Engine engine : Attacker.Engine.values()) {
+         List<AttackStep> attackPoints = new ArrayList<>();
+         Model model = EngineTest.model(2, attackPoints);
+         Attacker attacker = new Attacker(model);
+         attacker.setEngine(engine);
+         EngineTest.attack(attacker, attackPoints);
+         AttackStatistics statistics = attacker.statistics();
+         assertEquals(engine + ": " + statistics, -1, statistics.getFrontierHighWaterMark());
+         assertTrue(engine + ": " + statistics, statistics.getSettled() > 0);
+
+         attacker.setMetrics(new JmxAttackMetrics());
+         EngineTest.attack(attacker, attackPoints);
+         assertTrue(engine + ": " + attacker.statistics(), attacker.statistics().getFrontierHighWaterMark() > 0);
+         assertEquals(statistics.getSettled(), attacker.statistics().getSettled());
+
+         attacker.setMetrics(null);
+         EngineTest.attack(attacker, attackPoints);
+         assertEquals(engine + ": " + attacker.statistics(), -1, attacker.statistics().getFrontierHighWaterMark());
+      }
+   }
+
+   @Test
+   public void metricsArePublished() throws Exception {
+      List<AttackStep> attackPoints = new ArrayList<>();
+      Model model = EngineTest.model(3, attackPoints);
+      Attacker attacker = new Attacker(model);
+      JmxAttackMetrics metrics = new JmxAttackMetrics();
+      attacker.setMetrics(metrics);
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = metrics.register("MetricsTest");
+      try {
+         EngineTest.attack(attacker, attackPoints);
+         assertEquals(1L, server.getAttribute(name, "Attacks"));
+         assertEquals((long) attacker.statistics().getSettled(), server.getAttribute(name, "StepsSettled"));
+      }
+      finally {
+         server.unregisterMBean(name);
+      }
+   }
+
+}
@@ -0,0 +1,302 @@
+package se.kth.dsltest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import core.Asset;
+import core.AssetFactory;
+import core.AttackStep;
+import core.Attacker;
+import core.Defense;
+import core.Model;
+import core.ModelLoader;
+
+/**
+ * Loads random securiLang models from CSV and JSON files with the generated
+ * ModelFactory, and checks that they are the models built with add<Role>,
+ * and that bad files fail with where they are bad.
+ */
+public class ModelLoaderTest {
+
+   private Path directory;
+
+   @Before
+   public void createDirectory() throws IOException {
+      directory = Files.createTempDirectory(new File("target").toPath(), "models");
+   }
+
+   @After
+   public void deleteDirectory() throws IOException {
+      for (File file : directory.toFile().listFiles()) {
+         Files.delete(file.toPath());
+      }
+      Files.delete(directory);
+   }
+
+   // A random model of the asset types the factory creates, which are
+   // those not abstract in the language, with a random half of its
+   // configurable defenses enabled.
+   private static Model model(long seed) throws Exception {
+      AssetFactory factory = SecuriLang.factory();
+      List<Class<? extends Asset>> types = new ArrayList<>();
+      Model.setCurrent(new Model());
+      try {
+         for (Class<? extends Asset> type : SecuriLang.assetTypes()) {
+            try {
+               factory.create(type.getSimpleName(), type.getSimpleName());
+               types.add(type);
+            }
+            catch (IllegalArgumentException e) {
+               // Abstract.
+            }
+         }
+      }
+      finally {
+         Model.setCurrent(null);
+      }
+      Model model = SecuriLang.build(200, seed, types);
+      Random random = new Random(seed);
+      for (Defense defense : SecuriLang.defenses(model)) {
+         if (defense.isConfigurable()) {
+            defense.defaultValue = random.nextBoolean();
+         }
+      }
+      return model;
+   }
+
+   @Test
+   public void csvLoadsAsBuilt() throws Exception {
+      Model model = model(1);
+      // The associations come before their assets.
+      List<String> lines = new ArrayList<>(Arrays.asList("# a securiLang model", ""));
+      for (String[] association : associations(model)) {
+         lines.add(csv("association", association[0], association[1], association[2]));
+      }
+      for (Asset asset : model.assets) {
+         lines.add(csv("asset", asset.getClass().getSimpleName(), asset.name, String.join(";", enabledDefenses(asset))));
+      }
+      assertSameModel(model, load(write("model.csv", lines)));
+   }
+
+   @Test
+   public void jsonLoadsAsBuilt() throws Exception {
+      Model model = model(2);
+      // The associations are in a file of their own, read first.
+      List<String> records = new ArrayList<>();
+      for (String[] association : associations(model)) {
+         records.add(String.format("{\"asset\": %s, \"role\": %s, \"target\": %s}", json(association[0]), json(association[1]), json(association[2])));
+      }
+      Path associations = write("associations.json", Arrays.asList("[", String.join(",\n", records), "]"));
+      records.clear();
+      for (Asset asset : model.assets) {
+         List<String> defenses = new ArrayList<>();
+         for (String defense : enabledDefenses(asset)) {
+            defenses.add(json(defense));
+         }
+         records.add(String.format("{\"type\": %s, \"name\": %s, \"defenses\": [%s]}", json(asset.getClass().getSimpleName()), json(asset.name), String.join(", ", defenses)));
+      }
+      Path assets = write("assets.json", Arrays.asList("{\"assets\": [", String.join(",\n", records), "], \"version\": 1}"));
+      assertSameModel(model, load(associations, assets));
+   }
+
+   @Test
+   public void escapedNamesAreRead() throws Exception {
+      Path file = write("escaped.json", Arrays.asList("[{\"type\": \"Network\", \"name\": \"N\\u00e9t \\\"1\\\"\"}]"));
+      assertEquals("N\u00e9t \"1\"", load(file).assets.get(0).name);
+   }
+
+   @Test
+   public void duplicateAssetsFail() throws Exception {
+      Path file = write("duplicate.csv", Arrays.asList("asset,Network,Network0", "asset,Router,Network0"));
+      assertFails("Duplicate asset Network0", file);
+   }
+
+   @Test
+   public void unknownAssetsFailWhereTheyAreNamed() throws Exception {
+      Path assets = write("assets.csv", Arrays.asList("asset,Network,Network0", "asset,Router,Router0"));
+      Path associations = write("associations.csv", Arrays.asList("association,Network0,trafficRouters,Router0", "association,Network0,trafficRouters,Router1"));
+      assertFails("associations.csv:2: No asset Router1", assets, associations);
+   }
+
+   @Test
+   public void malformedRecordsFailWhereTheyAre() throws Exception {
+      Path file = write("malformed.csv", Arrays.asList("asset,Network,Network0", "# a comment", "asset,Network"));
+      assertFails("malformed.csv:3: Expected an asset or association record", file);
+   }
+
+   @Test
+   public void badEscapesFail() throws Exception {
+      Path file = write("escape.json", Arrays.asList("[", "{\"type\": \"Network\", \"name\": \"N\\u00g9\"}]"));
+      assertFails("escape.json:2: Expected four hexadecimal digits", file);
+   }
+
+   @Test(expected = IllegalArgumentException.class)
+   public void threadsMustBePositive() throws Exception {
+      new ModelLoader(SecuriLang.factory()).setThreads(0);
+   }
+
+   private Path write(String name, List<String> lines) throws IOException {
+      return Files.write(directory.resolve(name), lines, StandardCharsets.UTF_8);
+   }
+
+   private static Model load(Path... files) throws Exception {
+      Model model = new Model();
+      Model.setCurrent(model);
+      try {
+         return new ModelLoader(SecuriLang.factory()).setThreads(2).load(files);
+      }
+      finally {
+         Model.setCurrent(null);
+      }
+   }
+
+   private static void assertFails(String message, Path... files) throws Exception {
+      try {
+         load(files);
+         fail("Loaded " + Arrays.toString(files));
+      }
+      catch (IllegalArgumentException e) {
+         assertTrue(e.getMessage(), e.getMessage().contains(message));
+      }
+   }
+
+   private static String csv(String... fields) {
+      List<String> quoted = new ArrayList<>();
+      for (String field : fields) {
+         quoted.add(field.contains(",") || field.contains("\"") ? "\"" + field.replace("\"", "\"\"") + "\"" : field);
+      }
+      return String.join(",", quoted);
+   }
+
+   private static String json(String string) {
+      return "\"" + string.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+   }
+
+   // Every association of model from the side of the asset created first,
+   // as (asset, role, target) names.
+   private static List<String[]> associations(Model model) throws IllegalAccessException {
+      Map<Asset, Integer> ids = new IdentityHashMap<>();
+      for (Asset asset : model.assets) {
+         ids.put(asset, ids.size());
+      }
+      List<String[]> associations = new ArrayList<>();
+      for (Asset asset : model.assets) {
+         for (Map.Entry<String, List<Asset>> role : roles(asset).entrySet()) {
+            for (Asset target : role.getValue()) {
+               if (ids.get(target) >= ids.get(asset)) {
+                  associations.add(new String[] { asset.name, role.getKey(), target.name });
+               }
+            }
+         }
+      }
+      return associations;
+   }
+
+   // The assets in each role of asset, by role name.
+   private static Map<String, List<Asset>> roles(Asset asset) throws IllegalAccessException {
+      Map<String, List<Asset>> roles = new TreeMap<>();
+      for (Field field : asset.getClass().getFields()) {
+         if (Modifier.isStatic(field.getModifiers())) {
+            continue;
+         }
+         Object value = field.get(asset);
+         for (Object target : value instanceof Set ? (Set<?>) value : Arrays.asList(value)) {
+            if (target instanceof Asset) {
+               roles.computeIfAbsent(field.getName(), name -> new ArrayList<>()).add((Asset) target);
+            }
+         }
+      }
+      return roles;
+   }
+
+   // The defenses of asset, by name.
+   private static Map<String, Defense> defenses(Asset asset) throws IllegalAccessException {
+      Map<String, Defense> defenses = new TreeMap<>();
+      for (Field field : asset.getClass().getFields()) {
+         if (!Modifier.isStatic(field.getModifiers()) && Defense.class.isAssignableFrom(field.getType()) && field.get(asset) != null) {
+            defenses.put(field.getName(), (Defense) field.get(asset));
+         }
+      }
+      return defenses;
+   }
+
+   private static List<String> enabledDefenses(Asset asset) throws IllegalAccessException {
+      List<String> enabled = new ArrayList<>();
+      for (Map.Entry<String, Defense> defense : defenses(asset).entrySet()) {
+         if (defense.getValue().isConfigurable() && defense.getValue().defaultValue) {
+            enabled.add(defense.getKey());
+         }
+      }
+      return enabled;
+   }
+
+   // The same assets by name, of the same types, with the same defenses and
+   // associations, and attacked to the same ttcs.
+   private static void assertSameModel(Model built, Model loaded) throws Exception {
+      assertEquals(built.assets.size(), loaded.assets.size());
+      Map<String, Asset> loadedAssets = new HashMap<>();
+      for (Asset asset : loaded.assets) {
+         loadedAssets.put(asset.name, asset);
+      }
+      for (Asset asset : built.assets) {
+         Asset loadedAsset = loadedAssets.get(asset.name);
+         assertEquals(asset.name, asset.getClass(), loadedAsset.getClass());
+         Map<String, Defense> defenses = defenses(asset);
+         Map<String, Defense> loadedDefenses = defenses(loadedAsset);
+         assertEquals(defenses.keySet(), loadedDefenses.keySet());
+         for (String defense : defenses.keySet()) {
+            assertEquals(asset.name + "." + defense, defenses.get(defense).isEnabled(), loadedDefenses.get(defense).isEnabled());
+         }
+         assertEquals(asset.name, names(roles(asset)), names(roles(loadedAsset)));
+      }
+
+      // The assets were created in the same order, and so their steps.
+      assertEquals(built.attackSteps.size(), loaded.attackSteps.size());
+      for (Model model : Arrays.asList(built, loaded)) {
+         Attacker attacker = new Attacker(model);
+         attacker.addAttackPoint(model.attackSteps.get(0));
+         attacker.attack(SecuriLang.profile());
+      }
+      for (int i = 0; i < built.attackSteps.size(); i++) {
+         AttackStep attackStep = built.attackSteps.get(i);
+         assertEquals(attackStep.fullName(), loaded.attackSteps.get(i).fullName());
+         assertEquals(attackStep.fullName(), attackStep.ttc, loaded.attackSteps.get(i).ttc, 0);
+      }
+   }
+
+   private static Map<String, List<String>> names(Map<String, List<Asset>> roles) {
+      Map<String, List<String>> names = new TreeMap<>();
+      for (Map.Entry<String, List<Asset>> role : roles.entrySet()) {
+         List<String> targets = new ArrayList<>();
+         for (Asset target : role.getValue()) {
+            targets.add(target.name);
+         }
+         targets.sort(null);
+         names.put(role.getKey(), targets);
+      }
+      return names;
+   }
+
+}
@@ -0,0 +1,200 @@
+package se.kth.dsltest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import core.AttackStep;
+import core.Attacker;
+import core.Model;
+import core.MonteCarloAttacker;
+import core.TtcDistribution;
+import core.TtcStatistics;
+
+/**
+ * Samples random securiLang models with the Monte Carlo attacker, and checks
+ * that the same seed gives the same statistics however many threads sample,
+ * that a profile of constant distributions gives the ttcs of the
+ * deterministic attacker, and that distributions sample their means.
+ */
+public class MonteCarloTest {
+
+   @Test
+   public void sameSeedSameStatistics() throws Exception {
+      List<AttackStep> attackPoints = new ArrayList<>();
+      Model model = EngineTest.model(1, attackPoints);
+      List<Map<AttackStep, TtcStatistics>> runs = new ArrayList<>();
+      for (int threads : new int[] { 1, 4 }) {
+         ForkJoinPool pool = new ForkJoinPool(threads);
+         try {
+            runs.add(pool.submit(() -> sample(model, attackPoints, SecuriLang.profile(), 200, 7)).get());
+         }
+         finally {
+            pool.shutdown();
+         }
+      }
+      runs.add(sample(model, attackPoints, SecuriLang.profile(), 200, 7));
+
+      Map<AttackStep, TtcStatistics> first = runs.get(0);
+      int sampled = 0;
+      for (Map<AttackStep, TtcStatistics> run : runs) {
+         assertEquals(first.keySet(), run.keySet());
+         for (TtcStatistics statistics : run.values()) {
+            TtcStatistics expected = first.get(statistics.attackStep);
+            String name = statistics.attackStep.fullName();
+            assertEquals(name, expected.compromiseProbability(), statistics.compromiseProbability(), 0);
+            assertEquals(name, expected.probabilityWithinHorizon(), statistics.probabilityWithinHorizon(), 0);
+            // The sums of the threads are added in the order they finish.
+            assertEquals(name, expected.mean(), statistics.mean(), 1e-9 * expected.mean());
+            assertEquals(name, expected.isObserved(), statistics.isObserved());
+            if (statistics.isObserved()) {
+               for (double q = 0.05; q < 1; q += 0.05) {
+                  assertEquals(name, expected.quantile(q), statistics.quantile(q), 0);
+               }
+            }
+         }
+      }
+      for (TtcStatistics statistics : first.values()) {
+         if (statistics.probabilityWithinHorizon() > 0 && statistics.probabilityWithinHorizon() < 1) {
+            sampled++;
+         }
+      }
+      assertTrue("No step sampled within the horizon only sometimes", sampled > 0);
+      assertFalse("Another seed gives the same quantiles", quantiles(first).equals(quantiles(sample(model, attackPoints, SecuriLang.profile(), 200, 8))));
+   }
+
+   @Test
+   public void constantProfileSamplesTheDeterministicTtcs() throws Exception {
+      // Every distribution replaced by the uniform one from its mean to its
+      // mean, which samples only that mean.
+      Properties profile = new Properties();
+      for (String name : SecuriLang.profile().stringPropertyNames()) {
+         double mean = TtcDistribution.parse(SecuriLang.profile().getProperty(name).trim()).mean(false);
+         String constant = BigDecimal.valueOf(mean).toPlainString();
+         profile.setProperty(name, "UniformDistribution(" + constant + "," + constant + ")");
+      }
+      List<AttackStep> attackPoints = new ArrayList<>();
+      Model model = EngineTest.model(2, attackPoints);
+      Attacker attacker = new Attacker(model);
+      for (AttackStep attackPoint : attackPoints) {
+         attacker.addAttackPoint(attackPoint);
+      }
+      attacker.attack(profile);
+      double[] ttc = new double[model.attackSteps.size()];
+      List<Double> reached = new ArrayList<>();
+      for (int i = 0; i < ttc.length; i++) {
+         ttc[i] = model.attackSteps.get(i).ttc;
+         if (ttc[i] < AttackStep.infinity) {
+            reached.add(ttc[i]);
+         }
+      }
+      assertTrue("Too few steps reached to compare", reached.size() > ttc.length / 10);
+      reached.sort(null);
+      double horizon = reached.get(reached.size() / 2);
+
+      MonteCarloAttacker monteCarlo = new MonteCarloAttacker(model);
+      AttackStep unobserved = model.attackSteps.get(0);
+      for (AttackStep attackStep : model.attackSteps.subList(1, model.attackSteps.size())) {
+         monteCarlo.observe(attackStep);
+      }
+      for (AttackStep attackPoint : attackPoints) {
+         monteCarlo.addAttackPoint(attackPoint);
+      }
+      Map<AttackStep, TtcStatistics> statistics = monteCarlo.sample(profile, 20, 3, horizon);
+      for (int i = 0; i < ttc.length; i++) {
+         TtcStatistics step = statistics.get(model.attackSteps.get(i));
+         String name = step.attackStep.fullName();
+         assertEquals(name, 20, step.iterations);
+         if (ttc[i] < AttackStep.infinity) {
+            assertEquals(name, ttc[i], step.mean(), 1e-12 * ttc[i]);
+            assertEquals(name, 1, step.compromiseProbability(), 0);
+            assertEquals(name, ttc[i] <= horizon ? 1 : 0, step.probabilityWithinHorizon(), 0);
+         }
+         else {
+            assertEquals(name, AttackStep.infinity, step.mean(), 0);
+            assertEquals(name, 0, step.compromiseProbability(), 0);
+            assertEquals(name, 0, step.probabilityWithinHorizon(), 0);
+         }
+         if (step.attackStep != unobserved) {
+            assertEquals(name, ttc[i], step.quantile(0.5), 0);
+            assertEquals(name, ttc[i], step.quantile(1), 0);
+         }
+      }
+      try {
+         statistics.get(unobserved).quantile(0.5);
+         fail("Quantiles of a step not observed");
+      }
+      catch (IllegalStateException e) {
+      }
+   }
+
+   @Test
+   public void bernoulliSamplesItsProbability() {
+      for (double p : new double[] { 0.1, 0.5, 0.9 }) {
+         TtcDistribution distribution = TtcDistribution.parse("BernoulliDistribution(" + p + ")");
+         SplittableRandom random = new SplittableRandom(5);
+         int n = 100000;
+         int zeros = 0;
+         for (int i = 0; i < n; i++) {
+            double ttc = distribution.sample(random);
+            if (ttc == 0) {
+               zeros++;
+            }
+            else {
+               assertEquals(AttackStep.infinity, ttc, 0);
+            }
+         }
+         assertEquals(distribution.toString(), p, (double) zeros / n, 0.01);
+      }
+   }
+
+   @Test
+   public void exponentialSamplesItsMean() {
+      for (double rate : new double[] { 0.2, 1, 25 }) {
+         TtcDistribution distribution = TtcDistribution.parse("ExponentialDistribution(" + rate + ")");
+         SplittableRandom random = new SplittableRandom(6);
+         int n = 100000;
+         double sum = 0;
+         for (int i = 0; i < n; i++) {
+            double ttc = distribution.sample(random);
+            assertTrue(ttc >= 0);
+            sum += ttc;
+         }
+         // The standard error is a third of a percent of the mean.
+         assertEquals(distribution.toString(), distribution.mean(false), sum / n, 0.015 * distribution.mean(false));
+      }
+   }
+
+   // Samples model from attackPoints, observing every step, within a horizon
+   // that the sampled ttcs of some steps fall on both sides of.
+   private static Map<AttackStep, TtcStatistics> sample(Model model, List<AttackStep> attackPoints, Properties profile, int iterations, long seed) {
+      MonteCarloAttacker attacker = new MonteCarloAttacker(model);
+      for (AttackStep attackStep : model.attackSteps) {
+         attacker.observe(attackStep);
+      }
+      for (AttackStep attackPoint : attackPoints) {
+         attacker.addAttackPoint(attackPoint);
+      }
+      return attacker.sample(profile, iterations, seed, 0.1);
+   }
+
+   private static List<Double> quantiles(Map<AttackStep, TtcStatistics> statistics) {
+      List<Double> quantiles = new ArrayList<>();
+      for (TtcStatistics step : statistics.values()) {
+         quantiles.add(step.quantile(0.5));
+      }
+      return quantiles;
+   }
+
+}
@@ -0,0 +1,197 @@
+package se.kth.dsltest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import core.AttackGraph;
+import core.AttackStep;
+import core.AttackStepMax;
+import core.AttackStepMin;
+import core.Model;
+import core.ParentSet;
+
+/**
+ * Adds and visits the parents of ParentSets in every order, and checks them
+ * against sets of the parents expected and visited, also past the 64 parents
+ * of one word of visited bits and past the parents added since a lookup
+ * that are searched one by one.
+ */
+public class ParentSetTest {
+
+   private Model model;
+
+   @Before
+   public void setModel() {
+      model = new Model();
+      Model.setCurrent(model);
+   }
+
+   @After
+   public void unsetModel() {
+      Model.setCurrent(null);
+   }
+
+   private static List<AttackStep> steps(int n) {
+      List<AttackStep> steps = new ArrayList<>();
+      for (int i = 0; i < n; i++) {
+         steps.add(new AttackStepMin("step" + i));
+      }
+      return steps;
+   }
+
+   @Test
+   public void duplicatesAreAddedOnce() {
+      for (int n : new int[] { 5, 100 }) {
+         List<AttackStep> steps = steps(n);
+         ParentSet parents = new ParentSet();
+         for (AttackStep step : steps) {
+            assertTrue(parents.add(step));
+         }
+         // Before and after the parents are looked up.
+         for (AttackStep step : steps) {
+            assertFalse(parents.add(step));
+         }
+         assertTrue(parents.contains(steps.get(0)));
+         for (AttackStep step : steps) {
+            assertFalse(parents.add(step));
+         }
+         assertEquals(n, parents.size());
+         assertEquals(n, parents.all().size());
+         assertEquals(new HashSet<>(steps), new HashSet<>(parents.all()));
+      }
+   }
+
+   @Test
+   public void addsAfterLookupsKeepTheVisits() {
+      List<AttackStep> steps = steps(20);
+      ParentSet parents = new ParentSet();
+      for (AttackStep step : steps.subList(0, 10)) {
+         parents.add(step);
+      }
+      for (int i = 0; i < 10; i += 2) {
+         assertTrue(parents.visit(steps.get(i)));
+      }
+      for (AttackStep step : steps.subList(10, 20)) {
+         parents.add(step);
+      }
+      // Expected again, and added again while unordered.
+      assertTrue(parents.add(steps.get(4)));
+      assertFalse(parents.add(steps.get(15)));
+      for (int i = 0; i < 20; i++) {
+         assertEquals(steps.get(i).assetName, i >= 10 || i % 2 == 1 || i == 4, parents.contains(steps.get(i)));
+      }
+      assertEquals(16, parents.size());
+      assertEquals(new HashSet<>(Arrays.asList(steps.get(0), steps.get(2), steps.get(6), steps.get(8))), new HashSet<>(parents.visited()));
+   }
+
+   @Test
+   public void randomChangesMatchSets() {
+      Random random = new Random(1);
+      List<AttackStep> steps = steps(300);
+      for (int round = 0; round < 20; round++) {
+         ParentSet parents = new ParentSet();
+         Set<AttackStep> expected = new HashSet<>();
+         Set<AttackStep> visited = new HashSet<>();
+         for (int n = 0; n < 1000; n++) {
+            AttackStep step = steps.get(random.nextInt(steps.size()));
+            switch (random.nextInt(4)) {
+               case 0:
+               case 1:
+                  boolean expecting = !expected.contains(step) || visited.contains(step);
+                  assertEquals(expecting, parents.add(step));
+                  expected.add(step);
+                  visited.remove(step);
+                  break;
+               case 2:
+                  // Visits by parents that are not expected are not
+                  // counted.
+                  assertEquals(expected.contains(step) && !visited.contains(step), parents.visit(step));
+                  if (expected.contains(step)) {
+                     visited.add(step);
+                  }
+                  break;
+               default:
+                  assertEquals(expected.contains(step) && !visited.contains(step), parents.contains(step));
+                  assertEquals(expected.contains(step), parents.expects(step));
+            }
+         }
+         Set<AttackStep> remaining = new HashSet<>(expected);
+         remaining.removeAll(visited);
+         assertTrue(expected.size() > 64);
+         assertEquals(remaining.size(), parents.size());
+         assertEquals(remaining, new HashSet<>(parents));
+         assertEquals(expected, new HashSet<>(parents.all()));
+      }
+   }
+
+   @Test
+   public void visitsAreUndoneAndReset() {
+      // A child expecting 100 parents, and a stranger that reaches it
+      // without being expected.
+      List<AttackStep> steps = new ArrayList<>();
+      AttackStep child = new AttackStepMax("child") {
+         @Override
+         protected void setExpectedParents() {
+            for (AttackStep parent : steps.subList(0, 100)) {
+               addExpectedParent(parent);
+            }
+         }
+      };
+      for (int i = 0; i <= 100; i++) {
+         steps.add(new AttackStepMin(i == 100 ? "stranger" : "parent" + i) {
+            @Override
+            public void forEachChild(Consumer<AttackStep> action) {
+               action.accept(child);
+            }
+         });
+      }
+      AttackStep stranger = steps.get(100);
+      AttackGraph graph = new AttackGraph(model);
+      double[] ttc = new double[graph.size()];
+      Arrays.fill(ttc, 1);
+      graph.writeBack(ttc);
+      assertTrue(child.expectedParents.isEmpty());
+      assertEquals(new HashSet<>(steps), new HashSet<>(child.expectedParents.visited()));
+
+      // Parents no longer reached are expected again.
+      int[] changed = { graph.indexOf(steps.get(3)), graph.indexOf(steps.get(70)), graph.indexOf(stranger) };
+      for (int i : changed) {
+         ttc[i] = AttackStep.infinity;
+      }
+      graph.writeBack(ttc, changed, changed.length);
+      assertEquals(new HashSet<>(Arrays.asList(steps.get(3), steps.get(70))), new HashSet<>(child.expectedParents));
+      assertFalse(child.expectedParents.visited().contains(stranger));
+      assertEquals(98, child.expectedParents.visited().size());
+
+      model.resetAttack();
+      assertEquals(100, child.expectedParents.size());
+      assertTrue(child.expectedParents.visited().isEmpty());
+   }
+
+   @Test
+   public void strangersAreOnlyRememberedWhenExplained() {
+      List<AttackStep> steps = steps(2);
+      for (boolean explained : new boolean[] { true, false }) {
+         model.setExplained(explained);
+         ParentSet parents = new ParentSet();
+         parents.add(steps.get(0));
+         assertFalse(parents.visit(steps.get(1)));
+         assertEquals(explained, parents.visited().contains(steps.get(1)));
+         assertEquals(1, parents.size());
+      }
+   }
+
+}
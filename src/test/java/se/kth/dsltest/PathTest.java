@@ -0,0 +1,85 @@
+package se.kth.dsltest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import core.AttackGraph;
+import core.AttackPath;
+import core.AttackStep;
+import core.AttackStepMin;
+import core.Model;
+import core.PathAttacker;
+
+/**
+ * Finds the cheapest attack paths to random reached targets of a securiLang
+ * model and checks that they are loop-free chains of parents and children
+ * from an entry step, cheapest first, and that fewer paths asked for are the
+ * cheapest of more.
+ */
+public class PathTest {
+
+   @Test
+   public void pathsAreCheapestFirst() throws Exception {
+      long seed = 13;
+      List<AttackStep> attackPoints = new ArrayList<>();
+      Model model = EngineTest.model(seed, attackPoints);
+      AttackGraph graph = new AttackGraph(model);
+      Random random = new Random(seed);
+      int several = 0;
+      for (int j = 0; j < 20; j++) {
+         AttackStep target = model.attackSteps.get(random.nextInt(model.attackSteps.size()));
+         List<AttackPath> paths = paths(model, attackPoints, target, 8);
+         if (target.ttc == AttackStep.infinity) {
+            assertTrue(target.fullName() + " is not reached", paths.isEmpty());
+            continue;
+         }
+         assertEquals(target.fullName(), target.ttc, paths.get(0).ttc, 0);
+         Set<List<AttackStep>> distinct = new HashSet<>();
+         for (int p = 0; p < paths.size(); p++) {
+            AttackPath path = paths.get(p);
+            String name = target.fullName() + " path " + p;
+            assertTrue(name + " is a duplicate", distinct.add(path.attackSteps));
+            assertTrue(name + " has a loop", new HashSet<>(path.attackSteps).size() == path.size());
+            assertEquals(name, target, path.attackSteps.get(path.size() - 1));
+            assertEquals(name, 0, path.ttc(0), 0);
+            assertTrue(name + " is cheaper than the one before", p == 0 || path.ttc >= paths.get(p - 1).ttc);
+            for (int i = 1; i < path.size(); i++) {
+               AttackStep parent = path.attackSteps.get(i - 1);
+               AttackStep child = path.attackSteps.get(i);
+               assertTrue(name + ": " + child.fullName() + " is no child of " + parent.fullName(), graph.childrenOf(parent).contains(child));
+               if (child instanceof AttackStepMin) {
+                  assertEquals(name + ": " + child.fullName(), path.ttc(i - 1) + child.localTtc(), path.ttc(i), 0);
+               }
+               else {
+                  assertTrue(name + ": " + child.fullName(), path.ttc(i) >= path.ttc(i - 1) + child.localTtc());
+               }
+            }
+         }
+         if (paths.size() > 1) {
+            several++;
+         }
+         List<AttackPath> fewer = paths(model, attackPoints, target, 3);
+         for (int p = 0; p < fewer.size(); p++) {
+            assertEquals(target.fullName() + " path " + p, paths.get(p).ttc, fewer.get(p).ttc, 0);
+         }
+      }
+      assertTrue("No target with several paths", several > 0);
+   }
+
+   private static List<AttackPath> paths(Model model, List<AttackStep> attackPoints, AttackStep target, int k) throws Exception {
+      PathAttacker attacker = new PathAttacker(model);
+      for (AttackStep attackPoint : attackPoints) {
+         attacker.addAttackPoint(attackPoint);
+      }
+      return attacker.shortestPaths(SecuriLang.profile(), target, k);
+   }
+
+}
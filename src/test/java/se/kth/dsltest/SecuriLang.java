@@ -0,0 +1,194 @@
+package se.kth.dsltest;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import core.Asset;
+import core.AssetFactory;
+import core.AttackStep;
+import core.Defense;
+import core.Model;
+import se.kth.mal.Master;
+
+/**
+ * The securiLang test language, generated into target/securiLang and compiled
+ * against the core classes of this build once per test run, so that tests
+ * can attack models of it. Random models spread their assets evenly over the
+ * concrete asset types, and fill each role of every asset with a random asset
+ * of the right type with probability one half. A role that holds one asset
+ * is never filled twice, since the generated add<Role> methods leave the
+ * replaced asset linked back, so every association is seen from both sides.
+ */
+public class SecuriLang {
+
+   private static final File                   output = new File("target/securiLang");
+   private static final String                 pkg    = "auto";
+   private static List<Class<? extends Asset>> types;
+   private static Properties                   profile;
+
+   public static synchronized List<Class<? extends Asset>> assetTypes() throws Exception {
+      if (types == null) {
+         new Master("./src/test/resources/securiLang.slng", output.getPath(), pkg, false, null);
+         File classes = new File(output, "classes");
+         classes.mkdirs();
+         List<String> arguments = new ArrayList<>(Arrays.asList("-nowarn", "-d", classes.getPath(), "-cp", classPath()));
+         File[] sources = new File(output, pkg).listFiles((dir, name) -> name.endsWith(".java"));
+         for (File source : sources) {
+            arguments.add(source.getPath());
+         }
+         JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+         if (javac.run(null, null, null, arguments.toArray(new String[0])) != 0) {
+            throw new IllegalStateException("Could not compile the generated securiLang code in " + output);
+         }
+         // Parent first, so that the generated code links to the core
+         // classes the tests use.
+         ClassLoader loader = new URLClassLoader(new URL[] { classes.toURI().toURL() }, SecuriLang.class.getClassLoader());
+         List<Class<? extends Asset>> found = new ArrayList<>();
+         for (File source : sources) {
+            Class<?> type = loader.loadClass(pkg + "." + source.getName().replace(".java", ""));
+            if (Asset.class.isAssignableFrom(type) && !Modifier.isAbstract(type.getModifiers())) {
+               found.add(type.asSubclass(Asset.class));
+            }
+         }
+         found.sort(Comparator.comparing(Class::getName));
+         types = found;
+      }
+      return types;
+   }
+
+   // The generated ModelFactory.
+   public static AssetFactory factory() throws Exception {
+      return (AssetFactory) assetTypes().get(0).getClassLoader().loadClass(pkg + ".ModelFactory").getConstructor().newInstance();
+   }
+
+   public static synchronized Properties profile() throws Exception {
+      assetTypes();
+      if (profile == null) {
+         profile = new Properties();
+         try (InputStream in = new FileInputStream(new File(output, "attackerProfile.ttc"))) {
+            profile.load(in);
+         }
+      }
+      return profile;
+   }
+
+   // The core classes of this build, which the generated code must use
+   // rather than its own copy.
+   private static String classPath() throws Exception {
+      List<String> path = new ArrayList<>();
+      for (Class<?> type : Arrays.asList(Model.class, org.junit.Assert.class)) {
+         path.add(new File(type.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath());
+      }
+      return String.join(File.pathSeparator, path);
+   }
+
+   public static Model build(int assets, long seed) throws Exception {
+      return build(assets, seed, assetTypes());
+   }
+
+   // A random model of assets of types only.
+   public static Model build(int assets, long seed, List<Class<? extends Asset>> types) throws Exception {
+      Random random = new Random(seed);
+      Model model = new Model();
+      List<Asset> instances = new ArrayList<>(assets);
+      Model.setCurrent(model);
+      try {
+         for (int i = 0; i < assets; i++) {
+            Class<? extends Asset> type = types.get(i % types.size());
+            instances.add(type.getConstructor(String.class).newInstance(type.getSimpleName() + i));
+         }
+      }
+      finally {
+         Model.setCurrent(null);
+      }
+      Map<Class<?>, List<Asset>> candidates = new HashMap<>();
+      for (Asset asset : instances) {
+         for (Method addRole : roleAdders(asset.getClass())) {
+            if (random.nextBoolean()) {
+               continue;
+            }
+            List<Asset> targets = candidates.computeIfAbsent(addRole.getParameterTypes()[0], type -> ofType(instances, type));
+            if (!targets.isEmpty()) {
+               Asset target = targets.get(random.nextInt(targets.size()));
+               if (!isFilled(asset, role(addRole)) && !hasFilledRole(target, asset.getClass())) {
+                  addRole.invoke(asset, target);
+               }
+            }
+         }
+      }
+      return model;
+   }
+
+   // The defenses of model in the order their disable steps registered, the
+   // same for models built from the same seed.
+   public static List<Defense> defenses(Model model) {
+      Map<AttackStep, Integer> order = new HashMap<>();
+      for (int i = 0; i < model.attackSteps.size(); i++) {
+         order.put(model.attackSteps.get(i), i);
+      }
+      List<Defense> defenses = new ArrayList<>(model.defenses);
+      defenses.sort(Comparator.comparing(defense -> order.get(defense.disable)));
+      return defenses;
+   }
+
+   private static Field role(Method addRole) throws NoSuchFieldException {
+      String role = addRole.getName().substring(3);
+      return addRole.getDeclaringClass().getField(Character.toLowerCase(role.charAt(0)) + role.substring(1));
+   }
+
+   // Whether role holds one asset and is filled.
+   private static boolean isFilled(Asset asset, Field role) throws IllegalAccessException {
+      return Asset.class.isAssignableFrom(role.getType()) && role.get(asset) != null;
+   }
+
+   // Whether asset has a filled role that holds one asset of type, which
+   // may be the role an association with an asset of type would fill.
+   private static boolean hasFilledRole(Asset asset, Class<?> type) throws IllegalAccessException {
+      for (Field role : asset.getClass().getFields()) {
+         if (!Modifier.isStatic(role.getModifiers()) && role.getType().isAssignableFrom(type) && Asset.class.isAssignableFrom(role.getType()) && role.get(asset) != null) {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   private static List<Asset> ofType(List<Asset> assets, Class<?> type) {
+      List<Asset> ofType = new ArrayList<>();
+      for (Asset asset : assets) {
+         if (type.isInstance(asset)) {
+            ofType.add(asset);
+         }
+      }
+      return ofType;
+   }
+
+   // The add<Role> methods of type, in a fixed order.
+   static List<Method> roleAdders(Class<?> type) {
+      List<Method> adders = new ArrayList<>();
+      for (Method method : type.getMethods()) {
+         if (method.getName().startsWith("add") && method.getParameterCount() == 1 && Asset.class.isAssignableFrom(method.getParameterTypes()[0])) {
+            adders.add(method);
+         }
+      }
+      adders.sort(Comparator.comparing(Method::toString));
+      return adders;
+   }
+
+}
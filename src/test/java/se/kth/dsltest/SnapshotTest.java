@@ -0,0 +1,113 @@
+package se.kth.dsltest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import core.Asset;
+import core.AttackStep;
+import core.Attacker;
+import core.Defense;
+import core.Model;
+import core.ModelSnapshot;
+
+/**
+ * Writes snapshots of random securiLang models and loads them again, and
+ * checks that the loaded model has the same assets, defenses, associations
+ * and attack steps, in the same order, and is attacked the same.
+ */
+public class SnapshotTest {
+
+   @Test
+   public void snapshotsRoundTrip() throws Exception {
+      Path file = Files.createTempFile(new File("target").toPath(), "model", ".snapshot");
+      try {
+         for (long seed = 1; seed <= 3; seed++) {
+            List<AttackStep> attackPoints = new ArrayList<>();
+            Model model = EngineTest.model(seed, attackPoints);
+            ModelSnapshot.write(model, file);
+            Model loaded = new Model();
+            Model.setCurrent(loaded);
+            try {
+               assertSame(loaded, ModelSnapshot.load(file, model.assets.get(0).getClass().getClassLoader()));
+            }
+            finally {
+               Model.setCurrent(null);
+            }
+            assertNotSame(model, loaded);
+
+            assertEquals(model.assets.size(), loaded.assets.size());
+            for (int i = 0; i < model.assets.size(); i++) {
+               assertEquals(model.assets.get(i).getClass(), loaded.assets.get(i).getClass());
+               assertEquals(model.assets.get(i).name, loaded.assets.get(i).name);
+            }
+            assertEquals(links(model), links(loaded));
+            List<Defense> defenses = SecuriLang.defenses(model);
+            List<Defense> loadedDefenses = SecuriLang.defenses(loaded);
+            assertEquals(defenses.size(), loadedDefenses.size());
+            for (int i = 0; i < defenses.size(); i++) {
+               assertEquals(defenses.get(i).disable.fullName(), loadedDefenses.get(i).disable.fullName());
+               assertEquals(defenses.get(i).defaultValue, loadedDefenses.get(i).defaultValue);
+            }
+
+            assertEquals(model.attackSteps.size(), loaded.attackSteps.size());
+            List<AttackStep> loadedAttackPoints = new ArrayList<>();
+            for (AttackStep attackPoint : attackPoints) {
+               loadedAttackPoints.add(loaded.attackSteps.get(model.attackSteps.indexOf(attackPoint)));
+            }
+            EngineTest.attack(new Attacker(model), attackPoints);
+            EngineTest.attack(new Attacker(loaded), loadedAttackPoints);
+            for (int i = 0; i < model.attackSteps.size(); i++) {
+               AttackStep attackStep = model.attackSteps.get(i);
+               assertEquals(attackStep.fullName(), loaded.attackSteps.get(i).fullName());
+               assertEquals(attackStep.fullName(), attackStep.ttc, loaded.attackSteps.get(i).ttc, 0);
+            }
+         }
+      }
+      finally {
+         Files.delete(file);
+      }
+   }
+
+   // Every association of the assets of model, as "asset.role -> asset" by
+   // asset index, in a fixed order.
+   private static List<String> links(Model model) throws IllegalAccessException {
+      Map<Asset, Integer> ids = new IdentityHashMap<>();
+      for (Asset asset : model.assets) {
+         ids.put(asset, ids.size());
+      }
+      List<String> links = new ArrayList<>();
+      for (Asset asset : model.assets) {
+         for (Field field : asset.getClass().getFields()) {
+            if (Modifier.isStatic(field.getModifiers())) {
+               continue;
+            }
+            Object value = field.get(asset);
+            List<String> targets = new ArrayList<>();
+            for (Object target : value instanceof Set ? (Set<?>) value : Arrays.asList(value)) {
+               if (target instanceof Asset) {
+                  targets.add(ids.get(asset) + "." + field.getName() + " -> " + ids.get(target));
+               }
+            }
+            targets.sort(null);
+            links.addAll(targets);
+         }
+      }
+      return links;
+   }
+
+}
@@ -0,0 +1,56 @@
+package se.kth.dsltest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import core.AttackStep;
+import core.Attacker;
+import core.Model;
+
+/**
+ * Attacks random targets of a securiLang model with both engines, stopping
+ * at the target, and compares their ttcs with those of a full attack.
+ */
+public class TargetTest {
+
+   @Test
+   public void targetedAttacksFindTheFullTtc() throws Exception {
+      long seed = 5;
+      List<AttackStep> attackPoints = new ArrayList<>();
+      Model model = EngineTest.model(seed, attackPoints);
+      Attacker full = new Attacker(model);
+      EngineTest.attack(full, attackPoints);
+      int n = model.attackSteps.size();
+      double[] ttc = new double[n];
+      for (int i = 0; i < n; i++) {
+         ttc[i] = model.attackSteps.get(i).ttc;
+      }
+      int fullExpanded = full.expandedCount();
+
+      Random random = new Random(seed);
+      int stoppedEarly = 0;
+      for (int j = 0; j < 50; j++) {
+         int t = random.nextInt(n);
+         AttackStep target = model.attackSteps.get(t);
+         for (Attacker.Engine engine : Attacker.Engine.values()) {
+            Attacker attacker = new Attacker(model);
+            attacker.setEngine(engine);
+            attacker.setTarget(target);
+            EngineTest.attack(attacker, attackPoints);
+            assertEquals(engine + ": " + target.fullName(), ttc[t], target.ttc, 0);
+            assertTrue(engine + " expanded more than a full attack", attacker.expandedCount() <= fullExpanded);
+            if (attacker.expandedCount() < fullExpanded) {
+               stoppedEarly++;
+            }
+         }
+      }
+      assertTrue("No targeted attack stopped early", stoppedEarly > 0);
+   }
+
+}